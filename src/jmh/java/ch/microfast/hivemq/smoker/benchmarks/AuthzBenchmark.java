@@ -0,0 +1,113 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.audit.AuditLog;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionCache;
+import ch.microfast.hivemq.smoker.authz.services.AuthzService;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The authorization of publishes and subscriptions by the {@link AuthzService}. Lookups hit claimed topics by the hit
+ * ratio, half of the checks on claimed topics are done by a whitelisted client. A decision cache of 0 entries evaluates
+ * every check against the claims, the permission tables are cached by the default size. With the audit log enabled every decision is recorded, the allocation rate
+ * (-prof gc) must not change.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthzBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int storeSize;
+
+    @Param({"1", "16", "256"})
+    public int aclSize;
+
+    @Param({"1.0", "0.5", "0.0"})
+    public double hitRatio;
+
+    @Param({"100000", "0"})
+    public long decisionCacheSize;
+
+    @Param({"false", "true"})
+    public boolean auditEnabled;
+
+    private ScheduledExecutorService executorService;
+
+    private Path indexDirectory;
+
+    private AuthzWarmStartIndex warmStartIndex;
+
+    private AuditLog auditLog;
+
+    private AuthzService authzService;
+
+    private String[] lookupTopics;
+
+    private String[] lookupClients;
+
+    @Setup
+    public void setUp() throws Exception {
+        MemoryClaimStore claimStore = new MemoryClaimStore(BenchmarkClaims.NO_VALIDATION);
+        for (int i = 0; i < storeSize; i++) {
+            claimStore.upsert(BenchmarkClaims.claim(BenchmarkClaims.topic(BenchmarkClaims.OWNER, i), aclSize));
+        }
+
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        indexDirectory = Files.createTempDirectory("smoker-benchmark");
+        String indexFilePath = indexDirectory.resolve("authz.idx").toString();
+        warmStartIndex = new AuthzWarmStartIndex(indexFilePath, TimeUnit.HOURS.toSeconds(1), 100, claimStore, executorService);
+        auditLog = new AuditLog(auditEnabled, indexDirectory.resolve("audit").toString(), 64L << 20, 4, 1 << 16, 1_000_000, 1, 1, new MetricRegistry());
+        authzService = new AuthzService(claimStore, new AuthzDecisionCache(decisionCacheSize, new MetricRegistry()), warmStartIndex, auditLog, 100_000, new MetricRegistry());
+
+        lookupTopics = BenchmarkClaims.lookupTopics(storeSize, hitRatio);
+        Random random = new Random(7);
+        lookupClients = new String[BenchmarkClaims.LOOKUP_COUNT];
+        for (int i = 0; i < lookupClients.length; i++) {
+            lookupClients[i] = BenchmarkClaims.client(random.nextInt(2 * aclSize));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        warmStartIndex.close();
+        auditLog.close();
+        executorService.shutdownNow();
+        try (Stream<Path> files = Files.walk(indexDirectory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public boolean checkPublish(BenchmarkClaims.Cursor cursor) {
+        int next = cursor.next();
+        return authzService.checkAccess(lookupClients[next], lookupTopics[next], TopicPermission.MqttActivity.PUBLISH, true);
+    }
+}
@@ -0,0 +1,121 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH result (JSON) against a stored baseline and fails if a benchmark regressed by more than the allowed
+ * percentage. Compared are the score, the 99th percentile of sampled benchmarks and the allocated bytes per operation
+ * if the run was profiled with {@code -prof gc}. A higher score is better for the throughput mode, lower is better for
+ * all others. Benchmarks are matched by name, mode, thread count and parameters, benchmarks without a baseline are
+ * listed but never fail the comparison.
+ *
+ * <p>
+ * Usage: {@code BaselineComparison <baseline.json> <result.json> <max regression in percent>}
+ * </p>
+ */
+public final class BaselineComparison {
+
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    private static final String SAMPLE_MODE = "sample";
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> <max regression in percent>");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[0]);
+        if (!baselineFile.isFile()) {
+            System.err.println("No baseline at " + baselineFile + ", store one by copying a result there");
+            System.exit(2);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(objectMapper.readTree(baselineFile));
+        Map<String, JsonNode> result = index(objectMapper.readTree(new File(args[1])));
+        double maxRegression = Double.parseDouble(args[2]);
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : result.entrySet()) {
+            JsonNode current = entry.getValue();
+            JsonNode previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.printf("%-100s no baseline%n", entry.getKey());
+                continue;
+            }
+
+            boolean isHigherBetter = THROUGHPUT_MODE.equals(current.path("mode").asText());
+            regressions += compare(entry.getKey(), current.path("primaryMetric").path("scoreUnit").asText(),
+                    previous.path("primaryMetric").path("score"), current.path("primaryMetric").path("score"), isHigherBetter, maxRegression);
+            if (SAMPLE_MODE.equals(current.path("mode").asText())) {
+                regressions += compare(entry.getKey() + " p99", current.path("primaryMetric").path("scoreUnit").asText(),
+                        previous.path("primaryMetric").path("scorePercentiles").path("99.0"),
+                        current.path("primaryMetric").path("scorePercentiles").path("99.0"), false, maxRegression);
+            }
+            regressions += compare(entry.getKey() + " alloc", "B/op",
+                    findAllocation(previous), findAllocation(current), false, maxRegression);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d regression(s) of more than %.1f%%%n", regressions, maxRegression);
+            System.exit(1);
+        }
+        System.out.printf("No regression of more than %.1f%%%n", maxRegression);
+    }
+
+    /**
+     * @return 1 if the metric regressed by more than the allowed percentage, 0 otherwise
+     */
+    private static int compare(String name, String unit, JsonNode previous, JsonNode current, boolean isHigherBetter, double maxRegression) {
+        if (!previous.isNumber() || !current.isNumber()) {
+            return 0;
+        }
+        double previousValue = previous.asDouble();
+        double currentValue = current.asDouble();
+        double change = previousValue == 0 ? 0 : (currentValue - previousValue) / previousValue * 100;
+        double regression = isHigherBetter ? -change : change;
+        boolean isRegression = regression > maxRegression;
+
+        System.out.printf("%-100s %14.3f -> %14.3f %-10s %+8.1f%%%s%n", name, previousValue, currentValue, unit, change, isRegression ? "  REGRESSION" : "");
+        return isRegression ? 1 : 0;
+    }
+
+    private static JsonNode findAllocation(JsonNode benchmark) {
+        Iterator<Map.Entry<String, JsonNode>> metrics = benchmark.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            if (metric.getKey().endsWith(ALLOCATION_METRIC)) {
+                return metric.getValue().path("score");
+            }
+        }
+        return benchmark.path("secondaryMetrics").path(ALLOCATION_METRIC);
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> benchmarks = new LinkedHashMap<>();
+        for (JsonNode benchmark : results) {
+            StringBuilder key = new StringBuilder(benchmark.path("benchmark").asText())
+                    .append(" [").append(benchmark.path("mode").asText())
+                    .append(", ").append(benchmark.path("threads").asInt()).append(" threads");
+            Iterator<Map.Entry<String, JsonNode>> params = benchmark.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(", ").append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            benchmarks.put(key.append(']').toString(), benchmark);
+        }
+        return benchmarks;
+    }
+}
@@ -0,0 +1,68 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.SignatureVerification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification of a batch of signatures, one by one versus {@link ICryptoProvider#verifyBatch}. Scores are the time
+ * per batch, divide by the batch size for the time per signature.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchVerifyBenchmark {
+
+    @Param({"8", "16", "64", "256", "1024"})
+    public int batchSize;
+
+    private ICryptoProvider cryptoProvider;
+
+    private List<SignatureVerification> verifications;
+
+    @Setup
+    public void setUp() throws Exception {
+        cryptoProvider = new EddsaCryptoProvider();
+        verifications = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            KeyPair keyPair = cryptoProvider.generateKeyPair();
+            byte[] message = ("{\"topicName\":\"restricted/OWNER/topic/" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+            verifications.add(new SignatureVerification(keyPair.getPublic(), cryptoProvider.sign(keyPair.getPrivate(), message), message));
+        }
+    }
+
+    @Benchmark
+    public boolean[] verifyOneByOne() throws Exception {
+        boolean[] results = new boolean[verifications.size()];
+        for (int i = 0; i < results.length; i++) {
+            SignatureVerification verification = verifications.get(i);
+            results[i] = cryptoProvider.verify(verification.getPublicKey(), verification.getSignature(), verification.getExpectedMessage());
+        }
+        return results;
+    }
+
+    @Benchmark
+    public boolean[] verifyBatch() {
+        return cryptoProvider.verifyBatch(verifications);
+    }
+}
@@ -0,0 +1,122 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.Restriction;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Claims and lookups shared by the benchmarks. Claims of the stores are not signed, signing millions of claims would
+ * dominate the setup, the stores are benchmarked without validation.
+ */
+public final class BenchmarkClaims {
+
+    /**
+     * Lookups are drawn from a fixed set of keys, large enough to not fit in the CPU caches
+     */
+    public static final int LOOKUP_COUNT = 1 << 16;
+
+    public static final String OWNER = "OWNER";
+
+    /**
+     * A signature of the size of a real one, the stores do not verify it
+     */
+    private static final String UNSIGNED = Base64.encodeBase64String(new byte[64]);
+
+    public static final IClaimValidator NO_VALIDATION = new IClaimValidator() {
+        @Override
+        public void validateClaim(Claim claim) throws InvalidClaimException {
+        }
+
+        @Override
+        public Map<Claim, InvalidClaimException> validateClaims(List<Claim> claims) {
+            return Collections.emptyMap();
+        }
+    };
+
+    private BenchmarkClaims() {
+    }
+
+    public static String topic(String owner, int index) {
+        return "restricted/" + owner + "/sensors/" + index + "/value";
+    }
+
+    public static String client(int index) {
+        return "CLIENT-" + index;
+    }
+
+    /**
+     * @param aclSize the number of clients in the whitelist of the claim
+     */
+    public static Claim claim(String topic, int aclSize) {
+        Restriction restriction = new Restriction();
+        restriction.setTopicName(topic);
+        restriction.setRestrictionType(RestrictionType.WHITELIST);
+        for (int i = 0; i < aclSize; i++) {
+            Permission permission = new Permission();
+            permission.setClientId(client(i));
+            permission.setActivity(TopicPermission.MqttActivity.ALL);
+            restriction.addPermission(permission);
+        }
+
+        Claim claim = new Claim();
+        claim.setSignature(UNSIGNED);
+        claim.setRestriction(restriction);
+        return claim;
+    }
+
+    /**
+     * @param keyPair the key pair of the owner, the topic must be restricted to the owner
+     */
+    public static Claim signedClaim(ICryptoProvider cryptoProvider, KeyPair keyPair, String topic, int aclSize) throws Exception {
+        Claim claim = claim(topic, aclSize);
+        byte[] signaturePayload = new SmokerJsonSerializer().writeValueAsString(claim.getRestriction()).getBytes(StandardCharsets.UTF_8);
+        claim.setSignature(Base64.encodeBase64String(cryptoProvider.sign(keyPair.getPrivate(), signaturePayload)));
+        return claim;
+    }
+
+    /**
+     * @param storeSize the number of claimed topics, topics 0 to storeSize - 1 are claimed
+     * @param hitRatio  the share of lookups of claimed topics, all others look up unclaimed topics
+     * @return the topics to look up in random order
+     */
+    public static String[] lookupTopics(int storeSize, double hitRatio) {
+        Random random = new Random(42);
+        String[] topics = new String[LOOKUP_COUNT];
+        for (int i = 0; i < topics.length; i++) {
+            int index = random.nextInt(storeSize);
+            topics[i] = topic(OWNER, random.nextDouble() < hitRatio ? index : storeSize + index);
+        }
+        return topics;
+    }
+
+    /**
+     * Walks through the lookups, every thread on its own
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next = new Random().nextInt(LOOKUP_COUNT);
+
+        public int next() {
+            next = (next + 1) & (LOOKUP_COUNT - 1);
+            return next;
+        }
+    }
+}
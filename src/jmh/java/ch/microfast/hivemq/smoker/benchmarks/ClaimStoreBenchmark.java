@@ -0,0 +1,109 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.persistance.ChronicleMapDiskClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.IClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import com.codahale.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lookups and upserts of the {@link MemoryClaimStore} versus the {@link ChronicleMapDiskClaimStore} with up to 10
+ * million claims. Upserts replace claims of claimed topics, so the store size stays the same. The largest stores need
+ * a large heap (memory) or disk space (chronicle), pass e.g. {@code -jvmArgsAppend -Xmx16g} or narrow the sizes with
+ * {@code -p storeSize=1000,100000}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ClaimStoreBenchmark {
+
+    @Param({"memory", "chronicle"})
+    public String store;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int storeSize;
+
+    @Param({"1", "16"})
+    public int aclSize;
+
+    @Param({"1.0", "0.5"})
+    public double hitRatio;
+
+    private ScheduledExecutorService executorService;
+
+    private Path storeDirectory;
+
+    private IClaimStore claimStore;
+
+    private String[] lookupTopics;
+
+    private Claim[] upsertClaims;
+
+    @Setup
+    public void setUp() throws Exception {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        storeDirectory = Files.createTempDirectory("smoker-benchmark");
+        if ("chronicle".equals(store)) {
+            String storeFilePath = storeDirectory.resolve("claims.db").toString();
+            claimStore = new ChronicleMapDiskClaimStore(BenchmarkClaims.NO_VALIDATION, storeSize, storeFilePath, executorService, new MetricRegistry());
+        } else {
+            claimStore = new MemoryClaimStore(BenchmarkClaims.NO_VALIDATION);
+        }
+
+        for (int i = 0; i < storeSize; i++) {
+            claimStore.upsert(BenchmarkClaims.claim(BenchmarkClaims.topic(BenchmarkClaims.OWNER, i), aclSize));
+        }
+        claimStore.whenReady().join();
+
+        lookupTopics = BenchmarkClaims.lookupTopics(storeSize, hitRatio);
+        String[] claimedTopics = BenchmarkClaims.lookupTopics(storeSize, 1.0);
+        upsertClaims = new Claim[claimedTopics.length];
+        for (int i = 0; i < claimedTopics.length; i++) {
+            upsertClaims[i] = BenchmarkClaims.claim(claimedTopics[i], aclSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        claimStore.close();
+        executorService.shutdownNow();
+        try (Stream<Path> files = Files.walk(storeDirectory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Optional<Claim> findByTopic(BenchmarkClaims.Cursor cursor) {
+        return claimStore.findByTopic(lookupTopics[cursor.next()]);
+    }
+
+    @Benchmark
+    public void upsert(BenchmarkClaims.Cursor cursor) throws Exception {
+        claimStore.upsert(upsertClaims[cursor.next()]);
+    }
+}
@@ -0,0 +1,76 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.authz.validation.ClaimValidator;
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
+import com.codahale.metrics.MetricRegistry;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.apache.commons.codec.binary.Base32;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The validation of a signed claim by the {@link ClaimValidator}: the bean validation, the serialization of the
+ * restriction and the signature verification. A received claim is read from the payload with the bytes of its
+ * restriction, which are verified without the serialization. The public key of the owner is cached, as it is for a
+ * client which claims repeatedly.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ClaimValidationBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int aclSize;
+
+    private ClaimValidator claimValidator;
+
+    private Claim claim;
+
+    private Claim receivedClaim;
+
+    @Setup
+    public void setUp() throws Exception {
+        ICryptoProvider cryptoProvider = new EddsaCryptoProvider();
+        SmokerJsonSerializer serializer = new SmokerJsonSerializer();
+        claimValidator = new ClaimValidator(cryptoProvider, new PublicKeyCache(cryptoProvider, 1000, 1000, new MetricRegistry()), serializer, new MetricRegistry());
+
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+        String owner = new Base32().encodeAsString(((EdDSAPublicKey) keyPair.getPublic()).getAbyte());
+        claim = BenchmarkClaims.signedClaim(cryptoProvider, keyPair, BenchmarkClaims.topic(owner, 0), aclSize);
+        claimValidator.validateClaim(claim);
+        receivedClaim = serializer.readClaim(ByteBuffer.wrap(serializer.writeValueAsBytes(claim)));
+        claimValidator.validateClaim(receivedClaim);
+    }
+
+    @Benchmark
+    public Claim validateClaim() throws Exception {
+        claimValidator.validateClaim(claim);
+        return claim;
+    }
+
+    @Benchmark
+    public Claim validateReceivedClaim() throws Exception {
+        claimValidator.validateClaim(receivedClaim);
+        return receivedClaim;
+    }
+}
@@ -0,0 +1,99 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.SignatureVerification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification throughput of one {@link EddsaCryptoProvider} shared by an increasing number of threads, as it is
+ * bound in the extension. Scores are the verifications per second summed over all threads and should grow linearly
+ * with the threads up to the number of cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrentVerifyBenchmark {
+
+    private static final int SIGNATURE_COUNT = 256;
+
+    @State(Scope.Benchmark)
+    public static class SharedProvider {
+
+        private ICryptoProvider cryptoProvider;
+
+        private List<SignatureVerification> verifications;
+
+        @Setup
+        public void setUp() throws Exception {
+            cryptoProvider = new EddsaCryptoProvider();
+            verifications = new ArrayList<>(SIGNATURE_COUNT);
+            for (int i = 0; i < SIGNATURE_COUNT; i++) {
+                KeyPair keyPair = cryptoProvider.generateKeyPair();
+                byte[] message = ("{\"topicName\":\"restricted/OWNER/topic/" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+                verifications.add(new SignatureVerification(keyPair.getPublic(), cryptoProvider.sign(keyPair.getPrivate(), message), message));
+            }
+        }
+    }
+
+    /**
+     * Every thread walks through the signatures on its own, so threads don't verify the same signature in lockstep
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        private SignatureVerification next(SharedProvider sharedProvider) {
+            next = (next + 1) % SIGNATURE_COUNT;
+            return sharedProvider.verifications.get(next);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean verify1Thread(SharedProvider sharedProvider, Cursor cursor) throws Exception {
+        return verify(sharedProvider, cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public boolean verify2Threads(SharedProvider sharedProvider, Cursor cursor) throws Exception {
+        return verify(sharedProvider, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean verify4Threads(SharedProvider sharedProvider, Cursor cursor) throws Exception {
+        return verify(sharedProvider, cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyAllCores(SharedProvider sharedProvider, Cursor cursor) throws Exception {
+        return verify(sharedProvider, cursor);
+    }
+
+    private static boolean verify(SharedProvider sharedProvider, Cursor cursor) throws Exception {
+        SignatureVerification verification = cursor.next(sharedProvider);
+        return sharedProvider.cryptoProvider.verify(verification.getPublicKey(), verification.getSignature(), verification.getExpectedMessage());
+    }
+}
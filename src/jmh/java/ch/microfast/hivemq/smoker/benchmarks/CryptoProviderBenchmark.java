@@ -0,0 +1,73 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.JdkEd25519CryptoProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the crypto providers selectable with the {@code crypto.provider} property on the running JVM. Both providers
+ * work on the same keys and signatures: signature verification (the claims and the authentication) and the decoding of
+ * a public key from a client id (on misses of the public key cache).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CryptoProviderBenchmark {
+
+    @Param({"eddsa", "jdk"})
+    public String provider;
+
+    private ICryptoProvider cryptoProvider;
+
+    private byte[] publicKeyBytes;
+
+    private PublicKey publicKey;
+
+    private byte[] signature;
+
+    private byte[] message;
+
+    @Setup
+    public void setUp() throws Exception {
+        cryptoProvider = "jdk".equals(provider) ? new JdkEd25519CryptoProvider() : new EddsaCryptoProvider();
+
+        // signed with the eddsa provider, as the clients do today
+        ICryptoProvider clientCryptoProvider = new EddsaCryptoProvider();
+        KeyPair keyPair = clientCryptoProvider.generateKeyPair();
+        byte[] encoded = keyPair.getPublic().getEncoded();
+        message = "{\"topicName\":\"restricted/OWNER/topic\"}".getBytes(StandardCharsets.UTF_8);
+        signature = clientCryptoProvider.sign(keyPair.getPrivate(), message);
+        publicKeyBytes = Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length);
+        publicKey = cryptoProvider.convertByteArrayToPublicKey(publicKeyBytes);
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        return cryptoProvider.verify(publicKey, signature, message);
+    }
+
+    @Benchmark
+    public PublicKey convertByteArrayToPublicKey() {
+        return cryptoProvider.convertByteArrayToPublicKey(publicKeyBytes);
+    }
+}
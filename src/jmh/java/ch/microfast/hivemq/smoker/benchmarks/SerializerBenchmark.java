@@ -0,0 +1,63 @@
+package ch.microfast.hivemq.smoker.benchmarks;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON (de)serialization of claims as they are published to the claim topic. Deserialization starts from the
+ * read-only payload buffer: decoded into a string first or read straight from the bytes, as in the publish interceptor.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializerBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int aclSize;
+
+    private SmokerJsonSerializer serializer;
+
+    private Claim claim;
+
+    private ByteBuffer payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new SmokerJsonSerializer();
+        claim = BenchmarkClaims.claim(BenchmarkClaims.topic(BenchmarkClaims.OWNER, 0), aclSize);
+        payload = ByteBuffer.wrap(serializer.writeValueAsBytes(claim)).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return serializer.writeValueAsBytes(claim);
+    }
+
+    @Benchmark
+    public Claim deserialize() throws Exception {
+        return serializer.readValue(StandardCharsets.UTF_8.decode(payload.duplicate()).toString(), Claim.class);
+    }
+
+    @Benchmark
+    public Claim readClaim() throws Exception {
+        return serializer.readClaim(payload);
+    }
+}
@@ -0,0 +1,101 @@
+package ch.microfast.hivemq.smoker.loadtest;
+
+import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
+import com.hivemq.client.mqtt.datatypes.MqttUtf8String;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5ClientConfig;
+import com.hivemq.client.mqtt.mqtt5.auth.Mqtt5EnhancedAuthMechanism;
+import com.hivemq.client.mqtt.mqtt5.message.auth.Mqtt5Auth;
+import com.hivemq.client.mqtt.mqtt5.message.auth.Mqtt5AuthBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.auth.Mqtt5EnhancedAuthBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.connect.Mqtt5Connect;
+import com.hivemq.client.mqtt.mqtt5.message.connect.connack.Mqtt5ConnAck;
+import com.hivemq.client.mqtt.mqtt5.message.disconnect.Mqtt5Disconnect;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The client side of the SMOKER enhanced authentication: the CONNECT announces the method, the nonce of the server's
+ * challenge is signed with the private key of the client and sent back in the AUTH packet.
+ */
+public class SmokerAuthMechanism implements Mqtt5EnhancedAuthMechanism {
+
+    private static final MqttUtf8String METHOD = MqttUtf8String.of(AuthenticationConsts.SMOKER_AUTH_METHOD);
+
+    private static final int TIMEOUT_SECONDS = 30;
+
+    private final SmokerIdentity identity;
+
+    public SmokerAuthMechanism(SmokerIdentity identity) {
+        this.identity = identity;
+    }
+
+    @Override
+    public MqttUtf8String getMethod() {
+        return METHOD;
+    }
+
+    @Override
+    public int getTimeout() {
+        return TIMEOUT_SECONDS;
+    }
+
+    @Override
+    public CompletableFuture<Void> onAuth(Mqtt5ClientConfig clientConfig, Mqtt5Connect connect, Mqtt5EnhancedAuthBuilder authBuilder) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> onReAuth(Mqtt5ClientConfig clientConfig, Mqtt5AuthBuilder authBuilder) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> onServerReAuth(Mqtt5ClientConfig clientConfig, Mqtt5Auth auth, Mqtt5AuthBuilder authBuilder) {
+        return onContinue(clientConfig, auth, authBuilder);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> onContinue(Mqtt5ClientConfig clientConfig, Mqtt5Auth auth, Mqtt5AuthBuilder authBuilder) {
+        if (auth.getData().isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        ByteBuffer data = auth.getData().get();
+        byte[] nonce = new byte[data.remaining()];
+        data.get(nonce);
+
+        try {
+            authBuilder.data(identity.sign(nonce));
+            return CompletableFuture.completedFuture(true);
+        } catch (GeneralSecurityException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> onAuthSuccess(Mqtt5ClientConfig clientConfig, Mqtt5ConnAck connAck) {
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> onReAuthSuccess(Mqtt5ClientConfig clientConfig, Mqtt5Auth auth) {
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public void onAuthRejected(Mqtt5ClientConfig clientConfig, Mqtt5ConnAck connAck) {
+    }
+
+    @Override
+    public void onReAuthRejected(Mqtt5ClientConfig clientConfig, Mqtt5Disconnect disconnect) {
+    }
+
+    @Override
+    public void onAuthError(Mqtt5ClientConfig clientConfig, Throwable cause) {
+    }
+
+    @Override
+    public void onReAuthError(Mqtt5ClientConfig clientConfig, Throwable cause) {
+    }
+}
@@ -0,0 +1,71 @@
+package ch.microfast.hivemq.smoker.loadtest;
+
+import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.Restriction;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+
+/**
+ * The Ed25519 identity of a synthetic SMOKER client: the client id is the Base32 encoded public key, the private key
+ * signs the challenge nonces and the claims.
+ */
+public class SmokerIdentity {
+
+    private final ICryptoProvider cryptoProvider;
+
+    private final KeyPair keyPair;
+
+    private final String clientId;
+
+    public SmokerIdentity(ICryptoProvider cryptoProvider) {
+        this.cryptoProvider = cryptoProvider;
+        this.keyPair = cryptoProvider.generateKeyPair();
+        this.clientId = new Base32().encodeAsString(((EdDSAPublicKey) keyPair.getPublic()).getAbyte());
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the restricted topic of the client with the given index
+     */
+    public String topic(int index) {
+        return AuthorizationConsts.RESTRICTED_AREA_PREFIX + "/" + clientId + "/load/" + index;
+    }
+
+    public byte[] sign(byte[] message) throws GeneralSecurityException {
+        return cryptoProvider.sign(keyPair.getPrivate(), message);
+    }
+
+    /**
+     * @return the signed claim of the topic, which whitelists the given client for all activities
+     */
+    public Claim claim(String topic, String permittedClientId, SmokerJsonSerializer serializer) throws IOException, GeneralSecurityException {
+        Permission permission = new Permission();
+        permission.setClientId(permittedClientId);
+        permission.setActivity(TopicPermission.MqttActivity.ALL);
+
+        Restriction restriction = new Restriction();
+        restriction.setTopicName(topic);
+        restriction.setRestrictionType(RestrictionType.WHITELIST);
+        restriction.addPermission(permission);
+
+        Claim claim = new Claim();
+        claim.setRestriction(restriction);
+        claim.setSignature(Base64.encodeBase64String(sign(serializer.writeValueAsString(restriction).getBytes(StandardCharsets.UTF_8))));
+        return claim;
+    }
+}
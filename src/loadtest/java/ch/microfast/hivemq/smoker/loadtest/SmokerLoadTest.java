@@ -0,0 +1,273 @@
+package ch.microfast.hivemq.smoker.loadtest;
+
+import ch.microfast.hivemq.smoker.SmokerExtension;
+import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
+import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.hivemq.client.mqtt.MqttClient;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5AsyncClient;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5PublishResult;
+import com.hivemq.client.mqtt.mqtt5.message.publish.puback.Mqtt5PubAckReasonCode;
+import com.hivemq.embedded.EmbeddedExtension;
+import com.hivemq.embedded.EmbeddedHiveMQ;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end load test of the extension: starts an embedded HiveMQ Community Edition broker with the extension loaded
+ * on the loopback interface and runs synthetic SMOKER clients against it in phases.
+ *
+ * <ol>
+ * <li>connect: every client connects with the SMOKER handshake</li>
+ * <li>claim: every client claims its restricted topics, each claim whitelists the next client</li>
+ * <li>subscribe: every client subscribes to its first restricted topic</li>
+ * <li>publish: every client publishes to its restricted topics (QoS 1), each publish is authorized</li>
+ * <li>denied publish: every client publishes to a topic of another client it is not whitelisted for</li>
+ * </ol>
+ *
+ * <p>
+ * Reported are the throughput and the latency percentiles of each phase and the metrics of the extension. The latency
+ * of a publish is the time until its PUBACK, which includes the authorization.
+ * </p>
+ *
+ * <p>
+ * Configured by the system properties {@code loadtest.clients} (at least 3), {@code loadtest.claims.per.client} (at
+ * least 1), {@code loadtest.publishes.per.client} and {@code loadtest.concurrency}, the maximum number of operations
+ * in flight. The properties of the extension can be overridden by system properties as well.
+ * </p>
+ */
+public class SmokerLoadTest {
+
+    private static final int RESERVOIR_SIZE = 100_000;
+
+    private final int clientCount = Integer.getInteger("loadtest.clients", 1000);
+
+    private final int claimsPerClient = Integer.getInteger("loadtest.claims.per.client", 10);
+
+    private final int publishesPerClient = Integer.getInteger("loadtest.publishes.per.client", 100);
+
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 200);
+
+    private final SmokerJsonSerializer serializer = new SmokerJsonSerializer();
+
+    private final LongAdder deliveries = new LongAdder();
+
+    private SmokerIdentity[] identities;
+
+    private Mqtt5AsyncClient[] clients;
+
+    public static void main(String[] args) throws Exception {
+        Path workDirectory = Files.createTempDirectory("smoker-loadtest");
+        try {
+            new SmokerLoadTest().run(workDirectory);
+        } finally {
+            try (Stream<Path> files = Files.walk(workDirectory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        // the client and broker threads are not all daemons
+        System.exit(0);
+    }
+
+    private void run(Path workDirectory) throws Exception {
+        int port = findFreePort();
+        configureExtension(workDirectory);
+
+        try (EmbeddedHiveMQ hiveMQ = startBroker(workDirectory, port)) {
+            System.out.printf("Generating %d identities%n", clientCount);
+            ICryptoProvider cryptoProvider = new EddsaCryptoProvider();
+            identities = new SmokerIdentity[clientCount];
+            clients = new Mqtt5AsyncClient[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                identities[i] = new SmokerIdentity(cryptoProvider);
+                clients[i] = MqttClient.builder()
+                        .useMqttVersion5()
+                        .identifier(identities[i].getClientId())
+                        .serverHost("127.0.0.1")
+                        .serverPort(port)
+                        .enhancedAuth(new SmokerAuthMechanism(identities[i]))
+                        .buildAsync();
+            }
+
+            System.out.printf("%-16s %10s %8s %12s %10s %10s %10s %10s%n", "phase", "ops", "failed", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+
+            runPhase("connect", clientCount, i -> clients[i].connect().thenApply(connAck -> !connAck.getReasonCode().isError()));
+
+            runPhase("claim", clientCount * claimsPerClient, i -> {
+                int client = i % clientCount;
+                String permittedClientId = identities[(client + 1) % clientCount].getClientId();
+                try {
+                    byte[] claim = serializer.writeValueAsBytes(identities[client].claim(identities[client].topic(i / clientCount), permittedClientId, serializer));
+                    return publish(client, AuthorizationConsts.CLAIM_TOPIC, claim).thenApply(reasonCode -> !reasonCode.isError());
+                } catch (Exception e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            });
+
+            runPhase("subscribe", clientCount, i -> clients[i].subscribeWith()
+                    .topicFilter(identities[i].topic(0))
+                    .qos(MqttQos.AT_LEAST_ONCE)
+                    .callback(publish -> deliveries.increment())
+                    .send()
+                    .thenApply(subAck -> subAck.getReasonCodes().stream().noneMatch(reasonCode -> reasonCode.isError())));
+
+            byte[] payload = "load".getBytes(StandardCharsets.UTF_8);
+            runPhase("publish", clientCount * publishesPerClient, i -> {
+                int client = i % clientCount;
+                String topic = identities[client].topic((i / clientCount) % claimsPerClient);
+                return publish(client, topic, payload).thenApply(reasonCode -> !reasonCode.isError());
+            });
+
+            // the topics of the next client whitelist the client after it only (needs at least 3 clients)
+            runPhase("denied publish", clientCount, i -> {
+                String topic = identities[(i + 1) % clientCount].topic(0);
+                return publish(i, topic, payload).thenApply(reasonCode -> reasonCode == Mqtt5PubAckReasonCode.NOT_AUTHORIZED);
+            });
+
+            System.out.printf("%d messages delivered to the subscribers%n", deliveries.sum());
+            ConsoleReporter.forRegistry(hiveMQ.getMetricRegistry())
+                    .filter((name, metric) -> name.startsWith(SmokerMetrics.METRIC_PREFIX))
+                    .build()
+                    .report();
+
+            for (Mqtt5AsyncClient client : clients) {
+                client.disconnect().exceptionally(e -> null).join();
+            }
+        }
+    }
+
+    /**
+     * Runs the operations with at most {@link #concurrency} operations in flight and reports the throughput and the
+     * latency of the phase
+     *
+     * @param operation completes with whether the operation succeeded
+     */
+    private void runPhase(String phase, int operationCount, IntFunction<CompletableFuture<Boolean>> operation) throws InterruptedException {
+        Timer latencies = new Timer(new UniformReservoir(RESERVOIR_SIZE));
+        LongAdder failures = new LongAdder();
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(operationCount);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < operationCount; i++) {
+            inFlight.acquire();
+            long operationStart = System.nanoTime();
+            CompletableFuture<Boolean> result;
+            try {
+                result = operation.apply(i);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.whenComplete((success, failure) -> {
+                latencies.update(System.nanoTime() - operationStart, TimeUnit.NANOSECONDS);
+                if (failure != null || !success) {
+                    failures.increment();
+                }
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        double elapsedSeconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        Snapshot snapshot = latencies.getSnapshot();
+        System.out.printf("%-16s %10d %8d %12.1f %10.2f %10.2f %10.2f %10.2f%n", phase, operationCount, failures.sum(), operationCount / elapsedSeconds,
+                toMillis(snapshot.getMedian()), toMillis(snapshot.get95thPercentile()), toMillis(snapshot.get99thPercentile()), toMillis(snapshot.getMax()));
+    }
+
+    /**
+     * @return the reason code of the PUBACK
+     */
+    private CompletableFuture<Mqtt5PubAckReasonCode> publish(int client, String topic, byte[] payload) {
+        return clients[client].publishWith()
+                .topic(topic)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .payload(payload)
+                .send()
+                .thenApply(result -> ((Mqtt5PublishResult.Mqtt5Qos1Result) result).getPubAck().getReasonCode());
+    }
+
+    /**
+     * Keeps the files of the extension in the working directory and lifts the limits of handshakes per source
+     * address, all clients connect from the loopback address
+     */
+    private void configureExtension(Path workDirectory) {
+        setDefault("store.file.path", workDirectory.resolve("smoker_claims.db").toString());
+        setDefault("store.wal.dir", workDirectory.resolve("wal").toString());
+        setDefault("authz.index.file.path", workDirectory.resolve("smoker_authz.idx").toString());
+        setDefault("store.expected.max.entries", String.valueOf(Math.max(150_000L, 2L * clientCount * claimsPerClient)));
+        setDefault("authn.admission.address.rate.per.second", "0");
+        setDefault("authn.admission.max.in.flight", String.valueOf(Math.max(2000, concurrency)));
+    }
+
+    private EmbeddedHiveMQ startBroker(Path workDirectory, int port) throws IOException {
+        Path configFolder = Files.createDirectories(workDirectory.resolve("conf"));
+        Files.writeString(configFolder.resolve("config.xml"), String.format(
+                "<?xml version=\"1.0\"?>%n" +
+                "<hivemq>%n" +
+                "    <listeners>%n" +
+                "        <tcp-listener>%n" +
+                "            <port>%d</port>%n" +
+                "            <bind-address>127.0.0.1</bind-address>%n" +
+                "        </tcp-listener>%n" +
+                "    </listeners>%n" +
+                "    <anonymous-usage-statistics>%n" +
+                "        <enabled>false</enabled>%n" +
+                "    </anonymous-usage-statistics>%n" +
+                "</hivemq>%n", port));
+
+        EmbeddedHiveMQ hiveMQ = EmbeddedHiveMQ.builder()
+                .withConfigurationFolder(configFolder)
+                .withDataFolder(Files.createDirectories(workDirectory.resolve("data")))
+                .withExtensionsFolder(Files.createDirectories(workDirectory.resolve("extensions")))
+                .withEmbeddedExtension(EmbeddedExtension.builder()
+                        .withId("hivemq-smoker")
+                        .withName("SMOKER")
+                        .withVersion(Optional.ofNullable(SmokerExtension.class.getPackage().getImplementationVersion()).orElse("loadtest"))
+                        .withPriority(0)
+                        .withStartPriority(1000)
+                        .withExtensionMain(new SmokerExtension())
+                        .build())
+                .build();
+        hiveMQ.start().join();
+        System.out.printf("Embedded HiveMQ listening on 127.0.0.1:%d%n", port);
+        return hiveMQ;
+    }
+
+    private static void setDefault(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -17,11 +17,18 @@
 
 package ch.microfast.hivemq.smoker;
 
+import ch.microfast.hivemq.smoker.audit.AuditLog;
+import ch.microfast.hivemq.smoker.authn.NoncePool;
+import ch.microfast.hivemq.smoker.authz.persistance.IClaimStore;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
 import ch.microfast.hivemq.smoker.di.SmokerModule;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.hivemq.extension.sdk.api.ExtensionMain;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListenerProvider;
 import com.hivemq.extension.sdk.api.interceptor.connect.ConnectInboundInterceptorProvider;
 import com.hivemq.extension.sdk.api.parameter.*;
 import com.hivemq.extension.sdk.api.services.Services;
@@ -39,18 +46,21 @@ public class SmokerExtension implements ExtensionMain {
 
     private static final @NotNull Logger log = LoggerFactory.getLogger(SmokerExtension.class);
 
+    private Injector injector;
+
     @Override
     public void extensionStart(final @NotNull ExtensionStartInput extensionStartInput, final @NotNull ExtensionStartOutput extensionStartOutput) {
 
         try {
             // Initialize depedency injection
-            Injector injector = Guice.createInjector(new SmokerModule());
+            injector = Guice.createInjector(new SmokerModule());
 
             // Register services
             Services.initializerRegistry().setClientInitializer(injector.getInstance(ClientInitializer.class));
             Services.securityRegistry().setEnhancedAuthenticatorProvider(injector.getInstance(EnhancedAuthenticatorProvider.class));
             Services.securityRegistry().setAuthorizerProvider(injector.getInstance(AuthorizerProvider.class));
             Services.interceptorRegistry().setConnectInboundInterceptorProvider(injector.getInstance(ConnectInboundInterceptorProvider.class));
+            Services.eventRegistry().setClientLifecycleEventListener(injector.getInstance(ClientLifecycleEventListenerProvider.class));
 
             final ExtensionInformation extensionInformation = extensionStartInput.getExtensionInformation();
             log.info("Started " + extensionInformation.getName() + ":" + extensionInformation.getVersion());
@@ -62,6 +72,37 @@ public class SmokerExtension implements ExtensionMain {
 
     @Override
     public void extensionStop(final @NotNull ExtensionStopInput extensionStopInput, final @NotNull ExtensionStopOutput extensionStopOutput) {
+        if (injector != null) {
+            // every resource is closed on its own, a failure must not keep the others open
+            try {
+                // write a last authorization index for the next start, it reads all claims from the store
+                injector.getInstance(AuthzWarmStartIndex.class).close();
+            } catch (Exception e) {
+                log.error("Exception thrown at extension stop while closing the authorization index: ", e);
+            }
+            try {
+                injector.getInstance(IClaimStore.class).close();
+            } catch (Exception e) {
+                log.error("Exception thrown at extension stop while closing the claim store: ", e);
+            }
+            try {
+                injector.getInstance(NoncePool.class).close();
+            } catch (Exception e) {
+                log.error("Exception thrown at extension stop while closing the nonce pool: ", e);
+            }
+            try {
+                injector.getInstance(AuditLog.class).close();
+            } catch (Exception e) {
+                log.error("Exception thrown at extension stop while closing the audit log: ", e);
+            }
+            try {
+                // a restarted extension registers its metrics again
+                SmokerMetrics.removeAll(injector.getInstance(MetricRegistry.class));
+            } catch (Exception e) {
+                log.error("Exception thrown at extension stop while removing the metrics: ", e);
+            }
+        }
+
         final ExtensionInformation extensionInformation = extensionStopInput.getExtensionInformation();
         log.info("Stopped " + extensionInformation.getName() + ":" + extensionInformation.getVersion());
     }
@@ -0,0 +1,78 @@
+package ch.microfast.hivemq.smoker.audit;
+
+/**
+ * The binary format of the audit log files written by {@link AuditLog} and read by {@link AuditLogReader}.
+ *
+ * <p>
+ * Layout (integers are big endian):
+ * <pre>
+ * header         : magic (int), format version (int), record size (int), reserved (int)
+ * record         : timestamp in epoch milliseconds (long), clientId symbol (int), topic symbol (int),
+ *                  type (byte), activity (byte, 0 publish, 1 subscribe or -1), outcome (byte, 1 allowed, 0 denied or -1),
+ *                  reason (byte, ordinal of the decision reason or -1), reserved (int)
+ * symbol record  : a record of type {@link #TYPE_SYMBOL} with the symbol in place of the clientId symbol and the
+ *                  name length in place of the topic symbol, followed by the name bytes (UTF-8)
+ * </pre>
+ * ClientIds and topics are written as symbols. Every file defines a symbol before its first use, so a file can be read
+ * on its own. Symbol {@value #UNKNOWN_SYMBOL} is never defined, it stands for a name which could not be interned. A
+ * record of type {@link #TYPE_END} marks the end of a file.
+ * </p>
+ */
+public final class AuditFormat {
+
+    static final int MAGIC = 0x534D4B41;
+
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 4 + 4 + 4 + 4;
+
+    static final int RECORD_SIZE = 8 + 4 + 4 + 1 + 1 + 1 + 1 + 4;
+
+    static final String FILE_PREFIX = "audit-";
+
+    static final String FILE_SUFFIX = ".bin";
+
+    public static final int UNKNOWN_SYMBOL = 0;
+
+    public static final byte TYPE_END = 0;
+
+    public static final byte TYPE_SYMBOL = 1;
+
+    public static final byte TYPE_DECISION = 2;
+
+    public static final byte TYPE_CLAIM = 3;
+
+    public static final byte TYPE_UNCLAIM = 4;
+
+    public static final byte NONE = -1;
+
+    public static final byte ACTIVITY_PUBLISH = 0;
+
+    public static final byte ACTIVITY_SUBSCRIBE = 1;
+
+    public static final byte OUTCOME_DENIED = 0;
+
+    public static final byte OUTCOME_ALLOWED = 1;
+
+    private AuditFormat() {
+    }
+
+    /**
+     * Packs the type, activity, outcome and reason of a record in the order they are written
+     */
+    static int codes(byte type, byte activity, byte outcome, byte reason) {
+        return (type & 0xFF) << 24 | (activity & 0xFF) << 16 | (outcome & 0xFF) << 8 | (reason & 0xFF);
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%s%020d%s", FILE_PREFIX, sequence, FILE_SUFFIX);
+    }
+
+    static boolean isAuditFile(String fileName) {
+        return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_SUFFIX);
+    }
+
+    static long sequenceOf(String fileName) {
+        return Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,431 @@
+package ch.microfast.hivemq.smoker.audit;
+
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionReason;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Audit log of the authorization decisions and the claim changes. Every record has a fixed size, see
+ * {@link AuditFormat}. Use the {@link AuditLogReader} to convert the files to NDJSON.
+ *
+ * <p>
+ * Recording neither allocates nor blocks: a record is written into a slot of a lock-free ring which is claimed by a
+ * compare-and-set of the claim cursor and published by a volatile write of its sequence. ClientIds and topics are
+ * interned as int symbols, only the first record of a name allocates. A background thread drains the ring in order
+ * into rolling memory mapped files and defines the symbols in every file before their first use. A record is dropped
+ * if the ring is full, the oldest files are deleted once there are more than the configured maximum.
+ * </p>
+ *
+ * <p>
+ * Decisions are sampled with separate rates for allowed and denied decisions, claim changes are always recorded.
+ * Records reach the page cache within milliseconds, the files are forced when they are rolled and on {@link #close()}.
+ * </p>
+ */
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * A file must hold a record with the definitions of two symbols of the maximum MQTT string length
+     */
+    private static final long MIN_FILE_SIZE = 1 << 20;
+
+    /**
+     * Every slot holds the timestamp, the symbols and the codes of a record
+     */
+    private static final int SLOT_WORDS = 3;
+
+    private final boolean enabled;
+
+    private final double allowedSampleRate;
+
+    private final double deniedSampleRate;
+
+    private final long[] slots;
+
+    /**
+     * The sequence + 1 of the record published in a slot
+     */
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    private final AtomicLong claimCursor = new AtomicLong();
+
+    private final AtomicLong drainCursor = new AtomicLong();
+
+    private final AuditSymbols symbols;
+
+    private final Path directory;
+
+    private final long fileSize;
+
+    private final int maxFiles;
+
+    private final Meter records;
+
+    private final Meter dropped;
+
+    private final Meter unknownSymbols;
+
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    // state of the writer thread
+
+    private AuditFile currentFile;
+
+    private long fileSequence;
+
+    private final BitSet definedSymbols = new BitSet();
+
+    @Inject
+    public AuditLog(
+            @Named("audit.enabled") boolean enabled,
+            @Named("audit.dir") String directory,
+            @Named("audit.file.size.bytes") long fileSize,
+            @Named("audit.files.max") int maxFiles,
+            @Named("audit.ring.size") int ringSize,
+            @Named("audit.symbols.max.entries") int maxSymbols,
+            @Named("audit.allowed.sample.rate") double allowedSampleRate,
+            @Named("audit.denied.sample.rate") double deniedSampleRate,
+            MetricRegistry metricRegistry
+    ) throws IOException {
+        if (fileSize < MIN_FILE_SIZE) {
+            throw new IllegalArgumentException("audit.file.size.bytes must be at least " + MIN_FILE_SIZE);
+        }
+
+        this.enabled = enabled;
+        this.allowedSampleRate = allowedSampleRate;
+        this.deniedSampleRate = deniedSampleRate;
+        this.directory = Paths.get(directory);
+        this.fileSize = fileSize;
+        this.maxFiles = Math.max(1, maxFiles);
+
+        int capacity = enabled ? Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1 : 1;
+        this.slots = new long[capacity * SLOT_WORDS];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.symbols = new AuditSymbols(maxSymbols);
+
+        this.records = metricRegistry.meter(SmokerMetrics.name("audit", "records"));
+        this.dropped = metricRegistry.meter(SmokerMetrics.name("audit", "dropped"));
+        this.unknownSymbols = metricRegistry.meter(SmokerMetrics.name("audit", "symbols", "unknown"));
+        metricRegistry.gauge(SmokerMetrics.name("audit", "ring", "depth"), () -> (Gauge<Long>) this::getDepth);
+        metricRegistry.gauge(SmokerMetrics.name("audit", "symbols", "size"), () -> (Gauge<Integer>) symbols::size);
+
+        if (enabled) {
+            Files.createDirectories(this.directory);
+            this.fileSequence = listFiles().stream().mapToLong(f -> AuditFormat.sequenceOf(f.getFileName().toString())).max().orElse(0);
+            rollFile();
+
+            this.writerThread = new Thread(this::drain, "smoker-audit-writer");
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+        } else {
+            this.writerThread = null;
+        }
+    }
+
+    /**
+     * Records an authorization decision, subject to the sample rate of its outcome
+     *
+     * @param reason the reason of the decision, also of a decision served by the decision cache
+     */
+    public void recordDecision(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAllowed, AuthzDecisionReason reason) {
+        if (!enabled) {
+            return;
+        }
+        double sampleRate = isAllowed ? allowedSampleRate : deniedSampleRate;
+        if (sampleRate < 1 && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        record(clientId, topic, AuditFormat.codes(
+                AuditFormat.TYPE_DECISION,
+                activityCode(activity),
+                isAllowed ? AuditFormat.OUTCOME_ALLOWED : AuditFormat.OUTCOME_DENIED,
+                (byte) reason.ordinal()));
+    }
+
+    /**
+     * Records a claim of a topic
+     */
+    public void recordClaim(String owner, String topic) {
+        if (enabled) {
+            record(owner, topic, AuditFormat.codes(AuditFormat.TYPE_CLAIM, AuditFormat.NONE, AuditFormat.NONE, AuditFormat.NONE));
+        }
+    }
+
+    /**
+     * Records an unclaim of a topic
+     */
+    public void recordUnclaim(String owner, String topic) {
+        if (enabled) {
+            record(owner, topic, AuditFormat.codes(AuditFormat.TYPE_UNCLAIM, AuditFormat.NONE, AuditFormat.NONE, AuditFormat.NONE));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of records in the ring which are not written yet
+     */
+    public long getDepth() {
+        return claimCursor.get() - drainCursor.get();
+    }
+
+    /**
+     * Writes the records in the ring, forces the current file and stops the writer thread
+     */
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(String clientId, String topic, int codes) {
+        int clientSymbol = symbolOf(clientId);
+        int topicSymbol = symbolOf(topic);
+
+        long sequence;
+        do {
+            sequence = claimCursor.get();
+            if (sequence - drainCursor.get() >= published.length()) {
+                dropped.mark();
+                return;
+            }
+        } while (!claimCursor.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        int offset = slot * SLOT_WORDS;
+        slots[offset] = System.currentTimeMillis();
+        slots[offset + 1] = (long) clientSymbol << 32 | (topicSymbol & 0xFFFFFFFFL);
+        slots[offset + 2] = codes;
+        // publishes the plain writes of the slot to the writer thread
+        published.set(slot, sequence + 1);
+        records.mark();
+    }
+
+    private int symbolOf(String name) {
+        int symbol = symbols.symbolOf(name);
+        if (symbol == AuditFormat.UNKNOWN_SYMBOL && name != null) {
+            unknownSymbols.mark();
+        }
+        return symbol;
+    }
+
+    private void drain() {
+        while (true) {
+            // read before draining, so every record published before the close is written
+            boolean stopping = !running;
+            if (drainAvailable() == 0) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+
+        currentFile.force();
+        currentFile.close();
+    }
+
+    /**
+     * Writes the published records in order until the next slot is not published yet
+     *
+     * @return the number of drained records
+     */
+    private int drainAvailable() {
+        int count = 0;
+        long sequence = drainCursor.get();
+        while (count < published.length()) {
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) {
+                break;
+            }
+            int offset = slot * SLOT_WORDS;
+            long timestamp = slots[offset];
+            long recordSymbols = slots[offset + 1];
+            int codes = (int) slots[offset + 2];
+            // the slot may be reused from here on
+            drainCursor.lazySet(++sequence);
+            count++;
+
+            try {
+                write(timestamp, (int) (recordSymbols >>> 32), (int) recordSymbols, codes);
+            } catch (IOException e) {
+                log.error("Could not write audit record", e);
+                dropped.mark();
+            }
+        }
+        return count;
+    }
+
+    private void write(long timestamp, int clientSymbol, int topicSymbol, int codes) throws IOException {
+        byte[] clientName = undefinedName(clientSymbol);
+        byte[] topicName = clientSymbol == topicSymbol ? null : undefinedName(topicSymbol);
+        if (currentFile.buffer.remaining() < requiredSize(clientName, topicName)) {
+            rollFile();
+            clientName = undefinedName(clientSymbol);
+            topicName = clientSymbol == topicSymbol ? null : undefinedName(topicSymbol);
+        }
+
+        defineSymbol(timestamp, clientSymbol, clientName);
+        defineSymbol(timestamp, topicSymbol, topicName);
+        currentFile.buffer
+                .putLong(timestamp)
+                .putInt(clientSymbol)
+                .putInt(topicSymbol)
+                .putInt(codes)
+                .putInt(0);
+    }
+
+    /**
+     * @return the name of a symbol which is not defined in the current file yet or null
+     */
+    private byte[] undefinedName(int symbol) {
+        if (symbol == AuditFormat.UNKNOWN_SYMBOL || definedSymbols.get(symbol)) {
+            return null;
+        }
+        return symbols.nameOf(symbol).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void defineSymbol(long timestamp, int symbol, byte[] name) {
+        if (name == null) {
+            return;
+        }
+        currentFile.buffer
+                .putLong(timestamp)
+                .putInt(symbol)
+                .putInt(name.length)
+                .putInt(AuditFormat.codes(AuditFormat.TYPE_SYMBOL, AuditFormat.NONE, AuditFormat.NONE, AuditFormat.NONE))
+                .putInt(0)
+                .put(name);
+        definedSymbols.set(symbol);
+    }
+
+    /**
+     * The record and the definitions of its symbols must fit into the file
+     */
+    private static int requiredSize(byte[] clientName, byte[] topicName) {
+        int size = AuditFormat.RECORD_SIZE;
+        if (clientName != null) {
+            size += AuditFormat.RECORD_SIZE + clientName.length;
+        }
+        if (topicName != null) {
+            size += AuditFormat.RECORD_SIZE + topicName.length;
+        }
+        return size;
+    }
+
+    /**
+     * Ends the current file and starts the next one, the oldest files are deleted beyond the maximum number of files
+     */
+    private void rollFile() throws IOException {
+        if (currentFile != null) {
+            // the rest of the mapped file is zeroed, which reads as an end marker
+            currentFile.force();
+            currentFile.close();
+        }
+        currentFile = AuditFile.create(directory.resolve(AuditFormat.fileName(++fileSequence)), fileSize);
+        definedSymbols.clear();
+
+        List<Path> files = listFiles();
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> result = new ArrayList<>();
+            files.filter(f -> AuditFormat.isAuditFile(f.getFileName().toString())).forEach(result::add);
+            result.sort(Comparator.comparingLong(f -> AuditFormat.sequenceOf(f.getFileName().toString())));
+            return result;
+        }
+    }
+
+    private static byte activityCode(TopicPermission.MqttActivity activity) {
+        switch (activity) {
+            case PUBLISH:
+                return AuditFormat.ACTIVITY_PUBLISH;
+            case SUBSCRIBE:
+                return AuditFormat.ACTIVITY_SUBSCRIBE;
+            default:
+                return AuditFormat.NONE;
+        }
+    }
+
+    /**
+     * A memory mapped audit file of a fixed size
+     */
+    private static final class AuditFile {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private AuditFile(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static AuditFile create(Path file, long size) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(AuditFormat.MAGIC)
+                    .putInt(AuditFormat.FORMAT_VERSION)
+                    .putInt(AuditFormat.RECORD_SIZE)
+                    .putInt(0);
+            return new AuditFile(channel, buffer);
+        }
+
+        private void force() {
+            buffer.force();
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Could not close audit file", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ch.microfast.hivemq.smoker.audit;
+
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionReason;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Offline reader of the files of the {@link AuditLog}, converts them to NDJSON: one JSON object per record and line,
+ * e.g.
+ * <pre>
+ * {"timestamp":"2021-06-01T12:00:00.000Z","type":"decision","clientId":"...","topic":"restricted/...","activity":"publish","allowed":false,"reason":"whitelist"}
+ * {"timestamp":"2021-06-01T12:00:00.002Z","type":"claim","clientId":"...","topic":"restricted/..."}
+ * </pre>
+ * A name which could not be interned is null.
+ *
+ * <p>
+ * Usage: {@code java -cp hivemq-smoker-<version>.jar ch.microfast.hivemq.smoker.audit.AuditLogReader <directory or files>...}
+ * writes the records of all files, oldest first, to the standard output.
+ * </p>
+ */
+public final class AuditLogReader {
+
+    private static final AuthzDecisionReason[] REASONS = AuthzDecisionReason.values();
+
+    private AuditLogReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: AuditLogReader <directory or files>...");
+            System.exit(2);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (Path file : listFiles(args)) {
+            toNdjson(file, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the records of an audit file as NDJSON
+     */
+    public static void toNdjson(Path file, Writer writer) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < AuditFormat.HEADER_SIZE || buffer.getInt(0) != AuditFormat.MAGIC || buffer.getInt(4) != AuditFormat.FORMAT_VERSION) {
+            throw new IllegalStateException("Not an audit file of version:=" + AuditFormat.FORMAT_VERSION + " file:=" + file);
+        }
+
+        Map<Integer, String> names = new HashMap<>();
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.setRootValueSeparator(null);
+
+        buffer.position(AuditFormat.HEADER_SIZE);
+        while (buffer.remaining() >= AuditFormat.RECORD_SIZE) {
+            long timestamp = buffer.getLong();
+            int clientSymbol = buffer.getInt();
+            int topicSymbol = buffer.getInt();
+            byte type = buffer.get();
+            byte activity = buffer.get();
+            byte outcome = buffer.get();
+            byte reason = buffer.get();
+            buffer.getInt();
+
+            if (type == AuditFormat.TYPE_END) {
+                break;
+            }
+            if (type == AuditFormat.TYPE_SYMBOL) {
+                byte[] name = new byte[topicSymbol];
+                buffer.get(name);
+                names.put(clientSymbol, new String(name, StandardCharsets.UTF_8));
+                continue;
+            }
+
+            generator.writeStartObject();
+            generator.writeStringField("timestamp", Instant.ofEpochMilli(timestamp).toString());
+            generator.writeStringField("type", typeName(type));
+            generator.writeStringField("clientId", names.get(clientSymbol));
+            generator.writeStringField("topic", names.get(topicSymbol));
+            if (type == AuditFormat.TYPE_DECISION) {
+                generator.writeStringField("activity", activityName(activity));
+                generator.writeBooleanField("allowed", outcome == AuditFormat.OUTCOME_ALLOWED);
+                generator.writeStringField("reason", REASONS[reason].getMetricName());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private static String typeName(byte type) {
+        switch (type) {
+            case AuditFormat.TYPE_DECISION:
+                return "decision";
+            case AuditFormat.TYPE_CLAIM:
+                return "claim";
+            case AuditFormat.TYPE_UNCLAIM:
+                return "unclaim";
+            default:
+                throw new IllegalStateException("Unknown audit record type:=" + type);
+        }
+    }
+
+    private static String activityName(byte activity) {
+        switch (activity) {
+            case AuditFormat.ACTIVITY_PUBLISH:
+                return "publish";
+            case AuditFormat.ACTIVITY_SUBSCRIBE:
+                return "subscribe";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the given files and the audit files of the given directories, oldest first
+     */
+    private static List<Path> listFiles(String[] args) throws IOException {
+        List<Path> result = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (!Files.isDirectory(path)) {
+                result.add(path);
+                continue;
+            }
+            try (Stream<Path> files = Files.list(path)) {
+                files.filter(f -> AuditFormat.isAuditFile(f.getFileName().toString()))
+                        .sorted(Comparator.comparingLong(f -> AuditFormat.sequenceOf(f.getFileName().toString())))
+                        .forEach(result::add);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+package ch.microfast.hivemq.smoker.audit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Interns the clientIds and topics of the audit records as int symbols. Looking up a known name neither allocates nor
+ * locks. The number of symbols is bounded, names beyond the bound are recorded as {@link AuditFormat#UNKNOWN_SYMBOL}.
+ */
+final class AuditSymbols {
+
+    private final ConcurrentMap<String, Integer> symbols = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Integer, String> names = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextSymbol = new AtomicInteger(AuditFormat.UNKNOWN_SYMBOL + 1);
+
+    private final Function<String, Integer> assign = this::assign;
+
+    private final int maxEntries;
+
+    AuditSymbols(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the symbol of the name or {@link AuditFormat#UNKNOWN_SYMBOL} if the name can't be interned anymore
+     */
+    int symbolOf(String name) {
+        if (name == null) {
+            return AuditFormat.UNKNOWN_SYMBOL;
+        }
+        Integer symbol = symbols.get(name);
+        if (symbol == null) {
+            symbol = symbols.computeIfAbsent(name, assign);
+        }
+        return symbol == null ? AuditFormat.UNKNOWN_SYMBOL : symbol;
+    }
+
+    /**
+     * @return the name of an interned symbol
+     */
+    String nameOf(int symbol) {
+        return names.get(symbol);
+    }
+
+    int size() {
+        return symbols.size();
+    }
+
+    private Integer assign(String name) {
+        if (symbols.size() >= maxEntries) {
+            return null;
+        }
+        int symbol = nextSymbol.getAndIncrement();
+        // the name must be known before the symbol is handed out
+        names.put(symbol, name);
+        return symbol;
+    }
+}
@@ -0,0 +1,201 @@
+package ch.microfast.hivemq.smoker.authn;
+
+import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control of SMOKER handshakes, so a mass reconnect does not saturate the broker with nonce generation, key
+ * decoding and signature verification all at once.
+ *
+ * <p>
+ * Handshakes are limited by a token bucket per source address and per client id and by a global limit of handshakes in
+ * flight. A handshake which would have to wait for a token at most the maximum delay is admitted with that delay,
+ * otherwise it is rejected right away. A rate of 0 disables the bucket. Idle buckets are dropped once they would be
+ * full again, the number of buckets is bounded.
+ * </p>
+ */
+public class HandshakeAdmission {
+
+    private final Semaphore inFlight;
+
+    private final int maxInFlight;
+
+    private final long maxDelayNanos;
+
+    private final Buckets addressBuckets;
+
+    private final Buckets clientBuckets;
+
+    private final Meter delayed;
+
+    private final Meter rejectedInFlight;
+
+    @Inject
+    public HandshakeAdmission(
+            @Named("authn.admission.max.in.flight") int maxInFlight,
+            @Named("authn.admission.max.delay.ms") long maxDelayMillis,
+            @Named("authn.admission.address.rate.per.second") double addressRate,
+            @Named("authn.admission.address.burst") int addressBurst,
+            @Named("authn.admission.client.rate.per.second") double clientRate,
+            @Named("authn.admission.client.burst") int clientBurst,
+            @Named("authn.admission.buckets.max.entries") long maxBuckets,
+            MetricRegistry metricRegistry
+    ) {
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.addressBuckets = new Buckets(addressRate, addressBurst, maxDelayNanos, maxBuckets, metricRegistry.meter(SmokerMetrics.name("authn", "admission", "rejected", "address")));
+        this.clientBuckets = new Buckets(clientRate, clientBurst, maxDelayNanos, maxBuckets, metricRegistry.meter(SmokerMetrics.name("authn", "admission", "rejected", "client")));
+        this.delayed = metricRegistry.meter(SmokerMetrics.name("authn", "admission", "delayed"));
+        this.rejectedInFlight = metricRegistry.meter(SmokerMetrics.name("authn", "admission", "rejected", "in-flight"));
+
+        metricRegistry.gauge(SmokerMetrics.name("authn", "admission", "in-flight"), () -> (Gauge<Integer>) this::getInFlightCount);
+    }
+
+    /**
+     * Takes a token of the bucket of the source address
+     *
+     * @return the delay in nanoseconds until the handshake may proceed or empty if it is rejected
+     */
+    public OptionalLong admitAddress(Optional<InetAddress> address) {
+        return address.isEmpty() ? OptionalLong.of(0) : admit(addressBuckets, address.get().getHostAddress());
+    }
+
+    /**
+     * Takes a token of the bucket of the client id
+     *
+     * @return the delay in nanoseconds until the handshake may proceed or empty if it is rejected
+     */
+    public OptionalLong admitClient(String clientId) {
+        return clientId == null ? OptionalLong.of(0) : admit(clientBuckets, clientId);
+    }
+
+    /**
+     * Counts the handshake of the connection as in flight until {@link #leave} is called
+     *
+     * @return false if the handshake is rejected because too many handshakes are in flight
+     */
+    public boolean tryEnter(ConnectionAttributeStore connectionAttributeStore) {
+        if (!inFlight.tryAcquire()) {
+            rejectedInFlight.mark();
+            return false;
+        }
+        connectionAttributeStore.putAsString(AuthenticationConsts.HANDSHAKE_IN_FLIGHT_ATTRIBUTE_KEY, Boolean.TRUE.toString());
+        return true;
+    }
+
+    /**
+     * Ends the handshake of the connection, nothing happens if it is not in flight (anymore)
+     */
+    public void leave(ConnectionAttributeStore connectionAttributeStore) {
+        if (connectionAttributeStore.remove(AuthenticationConsts.HANDSHAKE_IN_FLIGHT_ATTRIBUTE_KEY).isPresent()) {
+            inFlight.release();
+        }
+    }
+
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * @return the maximum delay of an admitted handshake
+     */
+    public Duration getMaxDelay() {
+        return Duration.ofNanos(maxDelayNanos);
+    }
+
+    private OptionalLong admit(Buckets buckets, String key) {
+        OptionalLong delayNanos = buckets.reserve(key);
+        if (delayNanos.isPresent() && delayNanos.getAsLong() > 0) {
+            delayed.mark();
+        }
+        return delayNanos;
+    }
+
+    /**
+     * The token buckets of one kind of key
+     */
+    private static final class Buckets {
+
+        private final double tokensPerNano;
+
+        private final int burst;
+
+        private final long maxDelayNanos;
+
+        private final Cache<String, TokenBucket> buckets;
+
+        private final Meter rejected;
+
+        private Buckets(double ratePerSecond, int burst, long maxDelayNanos, long maxBuckets, Meter rejected) {
+            this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.maxDelayNanos = maxDelayNanos;
+            this.rejected = rejected;
+
+            // a bucket is full again after the reserved tokens and burst / rate, dropping it then does not change any decision
+            long refillNanos = ratePerSecond > 0 ? (long) Math.ceil(burst / tokensPerNano) + maxDelayNanos : 0;
+            this.buckets = Caffeine.newBuilder()
+                    .expireAfterAccess(Math.max(refillNanos, 1), TimeUnit.NANOSECONDS)
+                    .maximumSize(maxBuckets)
+                    .build();
+        }
+
+        private OptionalLong reserve(String key) {
+            if (tokensPerNano <= 0) {
+                return OptionalLong.of(0);
+            }
+            long delayNanos = buckets.get(key, k -> new TokenBucket(burst)).reserve(tokensPerNano, burst, maxDelayNanos);
+            if (delayNanos < 0) {
+                rejected.mark();
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(delayNanos);
+        }
+    }
+
+    private static final class TokenBucket {
+
+        /**
+         * Negative while tokens are reserved for delayed handshakes
+         */
+        private double tokens;
+
+        private long lastRefillNanos = System.nanoTime();
+
+        private TokenBucket(int burst) {
+            this.tokens = burst;
+        }
+
+        /**
+         * @return the delay until the reserved token is available or -1 if the delay would exceed the maximum delay
+         */
+        private synchronized long reserve(double tokensPerNano, int burst, long maxDelayNanos) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+
+            long delayNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+            if (delayNanos > maxDelayNanos) {
+                return -1;
+            }
+            tokens -= 1;
+            return delayNanos;
+        }
+    }
+}
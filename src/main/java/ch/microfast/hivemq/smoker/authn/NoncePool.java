@@ -0,0 +1,160 @@
+package ch.microfast.hivemq.smoker.authn;
+
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Supplies the 32 byte challenge nonces of the SMOKER handshakes from a ring of pre-generated nonces, so a connect
+ * storm does not contend on a shared {@link SecureRandom} or wait for it on the network threads.
+ *
+ * <p>
+ * The ring is lock-free: a nonce is taken by atomically swapping its slot with null, so every nonce is handed out at
+ * most once. A background thread refills empty slots from a DRBG which is seeded from the system entropy source and
+ * reseeded regularly. When the slot a caller lands on is empty because the ring runs dry, the nonce is generated by a
+ * DRBG of the calling thread instead.
+ * </p>
+ */
+public class NoncePool {
+
+    public static final int NONCE_BYTE_COUNT = 32;
+
+    /**
+     * The refill thread reseeds its DRBG after this amount of nonces
+     */
+    private static final int RESEED_INTERVAL = 1 << 16;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicReferenceArray<byte[]> slots;
+
+    private final int mask;
+
+    private final AtomicLong takeCursor = new AtomicLong();
+
+    private final AtomicInteger occupancy = new AtomicInteger();
+
+    private final AtomicBoolean refillRequested = new AtomicBoolean();
+
+    private final ThreadLocal<SecureRandom> fallbackRandoms = ThreadLocal.withInitial(NoncePool::newDrbg);
+
+    private final Meter refills;
+
+    private final Meter fallbacks;
+
+    private final Thread refillThread;
+
+    private volatile boolean running = true;
+
+    @Inject
+    public NoncePool(@Named("authn.nonce.pool.size") int size, MetricRegistry metricRegistry) {
+        int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+
+        this.refills = metricRegistry.meter(SmokerMetrics.name("authn", "nonce-pool", "refills"));
+        this.fallbacks = metricRegistry.meter(SmokerMetrics.name("authn", "nonce-pool", "fallbacks"));
+        metricRegistry.gauge(SmokerMetrics.name("authn", "nonce-pool", "occupancy"), () -> (Gauge<Integer>) occupancy::get);
+
+        this.refillThread = new Thread(this::refill, "smoker-nonce-refill");
+        this.refillThread.setDaemon(true);
+        this.refillThread.start();
+    }
+
+    /**
+     * @return a fresh nonce, which is never handed out again
+     */
+    public byte[] next() {
+        int index = (int) (takeCursor.getAndIncrement() & mask);
+        byte[] nonce = slots.getAndSet(index, null);
+
+        if (nonce == null) {
+            fallbacks.mark();
+            nonce = new byte[NONCE_BYTE_COUNT];
+            fallbackRandoms.get().nextBytes(nonce);
+        } else if (occupancy.decrementAndGet() < slots.length() / 2 && refillRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(refillThread);
+        }
+        return nonce;
+    }
+
+    public int getOccupancy() {
+        return occupancy.get();
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Stops the refill thread
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(refillThread);
+        try {
+            refillThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void refill() {
+        SecureRandom random = newDrbg();
+        int generatedSinceReseed = 0;
+
+        while (running) {
+            refillRequested.set(false);
+
+            // fill the empty slots ahead of the callers first
+            long start = takeCursor.get();
+            int filled = 0;
+            for (int i = 0; i < slots.length() && running; i++) {
+                int index = (int) ((start + i) & mask);
+                if (slots.get(index) != null) {
+                    continue;
+                }
+                byte[] nonce = new byte[NONCE_BYTE_COUNT];
+                random.nextBytes(nonce);
+                if (slots.compareAndSet(index, null, nonce)) {
+                    occupancy.incrementAndGet();
+                    filled++;
+                }
+            }
+
+            if (filled > 0) {
+                refills.mark(filled);
+                generatedSinceReseed += filled;
+                if (generatedSinceReseed >= RESEED_INTERVAL) {
+                    random.reseed();
+                    generatedSinceReseed = 0;
+                }
+            }
+
+            if (!refillRequested.get()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG is not available", e);
+        }
+    }
+}
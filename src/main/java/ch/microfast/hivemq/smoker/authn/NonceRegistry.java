@@ -0,0 +1,110 @@
+package ch.microfast.hivemq.smoker.authn;
+
+import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the challenge nonces of all SMOKER handshakes in progress, keyed by connection. Every connection gets a
+ * key in its {@link ConnectionAttributeStore} when its nonce is issued, so concurrent handshakes never see each
+ * other's nonce, not even handshakes with the same client id.
+ *
+ * <p>
+ * A nonce is consumed exactly once, a second attempt with the same nonce finds nothing. Nonces which are not consumed
+ * expire after the TTL or are evicted when the connection is closed. The number of nonces is bounded, when clients
+ * start more handshakes than the registry holds, the oldest handshakes have to start over.
+ * </p>
+ */
+public class NonceRegistry {
+
+    private final NoncePool noncePool;
+
+    private final Cache<String, byte[]> nonces;
+
+    private final AtomicLong nextConnectionKey = new AtomicLong();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Inject
+    public NonceRegistry(
+            NoncePool noncePool,
+            @Named("authn.nonce.ttl.ms") long ttlMillis,
+            @Named("authn.nonce.max.entries") long maxEntries,
+            MetricRegistry metricRegistry
+    ) {
+        this.noncePool = noncePool;
+        this.nonces = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .maximumSize(maxEntries)
+                .removalListener((String key, byte[] nonce, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPIRED) {
+                        expirations.increment();
+                    } else if (cause == RemovalCause.SIZE) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+
+        metricRegistry.gauge(SmokerMetrics.name("authn", "nonce-registry", "size"), () -> (Gauge<Long>) nonces::estimatedSize);
+        metricRegistry.gauge(SmokerMetrics.name("authn", "nonce-registry", "expirations"), () -> (Gauge<Long>) expirations::sum);
+        metricRegistry.gauge(SmokerMetrics.name("authn", "nonce-registry", "evictions"), () -> (Gauge<Long>) evictions::sum);
+    }
+
+    /**
+     * Issues a new nonce for the connection, replacing a nonce which was issued before and not consumed yet
+     *
+     * @param connectionAttributeStore the attribute store of the connection
+     * @return the nonce which must be signed by the client
+     */
+    public byte[] issue(ConnectionAttributeStore connectionAttributeStore) {
+        String connectionKey = connectionAttributeStore.getAsString(AuthenticationConsts.CONNECTION_KEY_ATTRIBUTE_KEY)
+                .orElseGet(() -> {
+                    String newConnectionKey = Long.toString(nextConnectionKey.incrementAndGet());
+                    connectionAttributeStore.putAsString(AuthenticationConsts.CONNECTION_KEY_ATTRIBUTE_KEY, newConnectionKey);
+                    return newConnectionKey;
+                });
+
+        byte[] nonce = noncePool.next();
+        nonces.put(connectionKey, nonce);
+        return nonce;
+    }
+
+    /**
+     * Removes the nonce of the connection
+     *
+     * @param connectionAttributeStore the attribute store of the connection
+     * @return the nonce or empty if no nonce was issued, it expired or was already consumed
+     */
+    public Optional<byte[]> consume(ConnectionAttributeStore connectionAttributeStore) {
+        return connectionAttributeStore.getAsString(AuthenticationConsts.CONNECTION_KEY_ATTRIBUTE_KEY)
+                // an expired nonce is not returned even if it was not cleaned up yet
+                .map(connectionKey -> nonces.asMap().remove(connectionKey));
+    }
+
+    /**
+     * Evicts the nonce of a closed connection
+     *
+     * @param connectionAttributeStore the attribute store of the connection
+     */
+    public void evict(ConnectionAttributeStore connectionAttributeStore) {
+        connectionAttributeStore.getAsString(AuthenticationConsts.CONNECTION_KEY_ATTRIBUTE_KEY).ifPresent(nonces::invalidate);
+    }
+
+    public long getSize() {
+        return nonces.estimatedSize();
+    }
+}
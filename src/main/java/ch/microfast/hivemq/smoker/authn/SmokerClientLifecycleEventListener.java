@@ -0,0 +1,41 @@
+package ch.microfast.hivemq.smoker.authn;
+
+import com.google.inject.Inject;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListener;
+import com.hivemq.extension.sdk.api.events.client.parameters.AuthenticationSuccessfulInput;
+import com.hivemq.extension.sdk.api.events.client.parameters.ConnectionStartInput;
+import com.hivemq.extension.sdk.api.events.client.parameters.DisconnectEventInput;
+
+/**
+ * Releases the SMOKER handshake state of closed connections, so the {@link NonceRegistry} does not hold nonces and the
+ * {@link HandshakeAdmission} does not count handshakes of connections which were closed before the handshake completed.
+ */
+public class SmokerClientLifecycleEventListener implements ClientLifecycleEventListener {
+
+    private final NonceRegistry nonceRegistry;
+
+    private final HandshakeAdmission handshakeAdmission;
+
+    @Inject
+    public SmokerClientLifecycleEventListener(NonceRegistry nonceRegistry, HandshakeAdmission handshakeAdmission) {
+        this.nonceRegistry = nonceRegistry;
+        this.handshakeAdmission = handshakeAdmission;
+    }
+
+    @Override
+    public void onMqttConnectionStart(@NotNull ConnectionStartInput connectionStartInput) {
+    }
+
+    @Override
+    public void onAuthenticationSuccessful(@NotNull AuthenticationSuccessfulInput authenticationSuccessfulInput) {
+    }
+
+    @Override
+    public void onDisconnect(@NotNull DisconnectEventInput disconnectEventInput) {
+        ConnectionAttributeStore connectionAttributeStore = disconnectEventInput.getConnectionInformation().getConnectionAttributeStore();
+        nonceRegistry.evict(connectionAttributeStore);
+        handshakeAdmission.leave(connectionAttributeStore);
+    }
+}
@@ -1,34 +1,79 @@
 package ch.microfast.hivemq.smoker.authn;
 
 import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
-import ch.microfast.hivemq.smoker.authz.services.AuthzService;
+import com.google.inject.Inject;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionInformation;
 import com.hivemq.extension.sdk.api.interceptor.connect.ConnectInboundInterceptor;
 import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundInput;
 import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Connection interceptor to prevent collisions of clientId's of authenticated and unauthenticated clients
+ * Connection interceptor to prevent collisions of clientId's of authenticated and unauthenticated clients.
+ * SMOKER connects are admitted by the handshake rate of their source address: connects within the rate pass, connects
+ * slightly above it are delayed and all others are marked to be rejected by the {@link SmokerEnhancedAuthenticator}.
  */
 public class SmokerConnectInboundInterceptor implements ConnectInboundInterceptor {
 
     private static final Logger log = LoggerFactory.getLogger(SmokerConnectInboundInterceptor.class);
 
+    /**
+     * Time on top of the delay until a delayed connect proceeds without waiting any longer
+     */
+    private static final Duration DELAY_TIMEOUT_MARGIN = Duration.ofSeconds(1);
+
+    private final HandshakeAdmission handshakeAdmission;
+
+    private final ScheduledExecutorService executorService;
+
+    @Inject
+    public SmokerConnectInboundInterceptor(HandshakeAdmission handshakeAdmission, ScheduledExecutorService executorService) {
+        this.handshakeAdmission = handshakeAdmission;
+        this.executorService = executorService;
+    }
 
     @Override
     public void onConnect(@NotNull ConnectInboundInput connectInboundInput, @NotNull ConnectInboundOutput connectInboundOutput) {
         @NotNull Optional<String> authenticationMethod = connectInboundInput.getConnectPacket().getAuthenticationMethod();
+        String clientId = connectInboundInput.getClientInformation().getClientId();
 
-        log.info("MQTT client connecting with id:={} and authenticationMethod:={}", connectInboundInput.getClientInformation().getClientId(), authenticationMethod);
+        log.info("MQTT client connecting with id:={} and authenticationMethod:={}", clientId, authenticationMethod);
 
         // If the client does not want to connect with SMOKER - the broker must assign a random client ID to prevent collisions with authenticated clients
         if (authenticationMethod.isEmpty() || !AuthenticationConsts.SMOKER_AUTH_METHOD.equalsIgnoreCase(authenticationMethod.get())) {
             connectInboundOutput.getConnectPacket().setClientId(UUID.randomUUID().toString());
+            return;
+        }
+
+        ConnectionInformation connectionInformation = connectInboundInput.getConnectionInformation();
+        OptionalLong delayNanos = handshakeAdmission.admitAddress(connectionInformation.getInetAddress());
+        if (delayNanos.isEmpty()) {
+            // a connect can't be refused here, the authenticator rejects it before any crypto work
+            log.debug("Handshake rate of the source address exceeded. clientId:={}", clientId);
+            connectionInformation.getConnectionAttributeStore().putAsString(AuthenticationConsts.ADDRESS_RATE_EXCEEDED_ATTRIBUTE_KEY, Boolean.TRUE.toString());
+        } else if (delayNanos.getAsLong() > 0) {
+            delay(connectInboundOutput, delayNanos.getAsLong());
+        }
+    }
+
+    private void delay(ConnectInboundOutput connectInboundOutput, long delayNanos) {
+        Async<ConnectInboundOutput> async = connectInboundOutput.async(Duration.ofNanos(delayNanos).plus(DELAY_TIMEOUT_MARGIN), TimeoutFallback.SUCCESS);
+        try {
+            executorService.schedule(async::resume, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            async.resume();
         }
     }
 }
@@ -2,22 +2,35 @@ package ch.microfast.hivemq.smoker.authn;
 
 import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
 import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.inject.name.Named;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.auth.EnhancedAuthenticator;
 import com.hivemq.extension.sdk.api.auth.parameter.EnhancedAuthConnectInput;
 import com.hivemq.extension.sdk.api.auth.parameter.EnhancedAuthInput;
 import com.hivemq.extension.sdk.api.auth.parameter.EnhancedAuthOutput;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
 import com.hivemq.extension.sdk.api.packets.general.DisconnectedReasonCode;
-import org.apache.commons.codec.binary.Base32;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.SignatureException;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the SMOKER enhanced authentication mechanism.
@@ -28,22 +41,62 @@ import java.util.Optional;
 public class SmokerEnhancedAuthenticator implements EnhancedAuthenticator {
     private static final Logger log = LoggerFactory.getLogger(SmokerEnhancedAuthenticator.class);
 
-    private static final int NONCE_BYTE_COUNT = 32;
+    /**
+     * Time on top of the delay until a delayed handshake fails
+     */
+    private static final Duration DELAY_TIMEOUT_MARGIN = Duration.ofSeconds(1);
+
     private final ICryptoProvider cryptoProvider;
-    private byte[] generatedNonce = null;
+    private final PublicKeyCache publicKeyCache;
+    private final NonceRegistry nonceRegistry;
+    private final HandshakeAdmission handshakeAdmission;
+    private final ScheduledExecutorService executorService;
+    private final Timer handshakeTimer;
+    private final Timer signatureVerificationTimer;
+    private final Meter failedHandshakes;
 
     @Inject
     @Named("allow.non.smoker.clients")
     private boolean nonSmokerClientsAllowed;
 
     @Inject
-    public SmokerEnhancedAuthenticator(ICryptoProvider cryptoProvider) {
+    public SmokerEnhancedAuthenticator(
+            ICryptoProvider cryptoProvider,
+            PublicKeyCache publicKeyCache,
+            NonceRegistry nonceRegistry,
+            HandshakeAdmission handshakeAdmission,
+            ScheduledExecutorService executorService,
+            MetricRegistry metricRegistry
+    ) {
         this.cryptoProvider = cryptoProvider;
+        this.publicKeyCache = publicKeyCache;
+        this.nonceRegistry = nonceRegistry;
+        this.handshakeAdmission = handshakeAdmission;
+        this.executorService = executorService;
+
+        // from the admission of the CONNECT to the successful verification of the signed nonce
+        this.handshakeTimer = metricRegistry.timer(SmokerMetrics.name("authn", "handshake"));
+        this.signatureVerificationTimer = metricRegistry.timer(SmokerMetrics.name("authn", "signature-verification"));
+        this.failedHandshakes = metricRegistry.meter(SmokerMetrics.name("authn", "handshake", "failed"));
     }
 
     @Override
     public void onReAuth(@NotNull EnhancedAuthInput enhancedAuthInput, @NotNull EnhancedAuthOutput enhancedAuthOutput) {
-        onAuth(enhancedAuthInput, enhancedAuthOutput);
+        try {
+            String clientId = enhancedAuthInput.getClientInformation().getClientId();
+            String authMethod = enhancedAuthInput.getAuthPacket().getAuthenticationMethod();
+
+            // the nonce of the initial handshake was consumed - a new challenge is sent, the response is verified by onAuth
+            if (AuthenticationConsts.SMOKER_AUTH_METHOD.equalsIgnoreCase(authMethod)) {
+                admitChallenge(clientId, enhancedAuthInput.getConnectionInformation().getConnectionAttributeStore(), enhancedAuthOutput);
+                return;
+            }
+
+            enhancedAuthOutput.nextExtensionOrDefault();
+        } catch(Exception ex) {
+            log.error("Unexpected exception", ex);
+            throw ex;
+        }
     }
 
     @Override
@@ -53,8 +106,7 @@ public class SmokerEnhancedAuthenticator implements EnhancedAuthenticator {
             @NotNull Optional<String> authenticationMethod = enhancedAuthConnectInput.getConnectPacket().getAuthenticationMethod();
 
             if (authenticationMethod.isPresent() && AuthenticationConsts.SMOKER_AUTH_METHOD.equalsIgnoreCase(authenticationMethod.get())) {
-                this.generatedNonce = cryptoProvider.generateRandomBytes(NONCE_BYTE_COUNT);
-                enhancedAuthOutput.continueAuthentication(this.generatedNonce);
+                admitChallenge(clientId, enhancedAuthConnectInput.getConnectionInformation().getConnectionAttributeStore(), enhancedAuthOutput);
                 return;
             }
 
@@ -79,35 +131,11 @@ public class SmokerEnhancedAuthenticator implements EnhancedAuthenticator {
             String authMethod = enhancedAuthInput.getAuthPacket().getAuthenticationMethod();
 
             if (AuthenticationConsts.SMOKER_AUTH_METHOD.equalsIgnoreCase(authMethod)) {
-                @NotNull Optional<byte[]> authenticationDataAsArray = enhancedAuthInput.getAuthPacket().getAuthenticationDataAsArray();
-
-                if (authenticationDataAsArray.isEmpty()) {
-                    String reason = "Authentication data in AUTH packet missing - the signed nonce is expected";
-                    log.info("Fail authentication. Reason:=" + reason + ", clientId:=" + clientId);
-                    enhancedAuthOutput.failAuthentication(DisconnectedReasonCode.NOT_AUTHORIZED, reason);
-                    return;
-                }
-
                 try {
-                    byte[] publicKeyBytes = new Base32().decode(clientId);
-                    PublicKey publicKey = cryptoProvider.convertByteArrayToPublicKey(publicKeyBytes);
-                    boolean success = cryptoProvider.verify(publicKey, authenticationDataAsArray.get(), this.generatedNonce);
-                    if (success) {
-                        log.info("Smoker client connection accepted. clientId:=" + clientId);
-                        enhancedAuthOutput.authenticateSuccessfully();
-                        enhancedAuthInput.getConnectionInformation().getConnectionAttributeStore().putAsString(AuthenticationConsts.IS_SMOKER_AUTH_ATTRIBUTE_KEY, Boolean.TRUE.toString());
-                    } else {
-                        String failReason = "The provided signature could not be verified successfully";
-                        failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.NOT_AUTHORIZED, failReason, clientId);
-                    }
-                } catch (InvalidKeyException e) {
-                    String failReason = "The clientID is not a valid base32 representation of an EdDSA public key";
-                    failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.CLIENT_IDENTIFIER_NOT_VALID, failReason, clientId);
-                } catch (SignatureException e) {
-                    String failReason = "The provided signature seems to be invalid";
-                    failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.NOT_AUTHORIZED, failReason, clientId);
+                    verifyChallenge(clientId, enhancedAuthInput, enhancedAuthOutput);
+                } finally {
+                    handshakeAdmission.leave(enhancedAuthInput.getConnectionInformation().getConnectionAttributeStore());
                 }
-
                 return;
             }
 
@@ -118,8 +146,112 @@ public class SmokerEnhancedAuthenticator implements EnhancedAuthenticator {
         }
     }
 
+    /**
+     * Sends the challenge if the handshake is admitted by the {@link HandshakeAdmission}. Handshakes above the rate
+     * limits are delayed or rejected right away, before any crypto work is done.
+     */
+    private void admitChallenge(String clientId, ConnectionAttributeStore connectionAttributeStore, EnhancedAuthOutput enhancedAuthOutput) {
+        if (connectionAttributeStore.getAsString(AuthenticationConsts.ADDRESS_RATE_EXCEEDED_ATTRIBUTE_KEY).isPresent()) {
+            String failReason = "Too many handshakes from the source address - retry later";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.CONNECTION_RATE_EXCEEDED, failReason, clientId);
+            return;
+        }
+
+        // the in-flight slot is taken first, a busy server must not consume the token of the client
+        if (!handshakeAdmission.tryEnter(connectionAttributeStore)) {
+            String failReason = "Too many handshakes in progress - retry later";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.SERVER_BUSY, failReason, clientId);
+            return;
+        }
+
+        OptionalLong delayNanos = handshakeAdmission.admitClient(clientId);
+        if (delayNanos.isEmpty()) {
+            handshakeAdmission.leave(connectionAttributeStore);
+            String failReason = "Too many handshakes of the clientID - retry later";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.CONNECTION_RATE_EXCEEDED, failReason, clientId);
+            return;
+        }
+        connectionAttributeStore.putAsString(AuthenticationConsts.HANDSHAKE_START_ATTRIBUTE_KEY, Long.toString(System.nanoTime()));
+
+        if (delayNanos.getAsLong() == 0) {
+            enhancedAuthOutput.continueAuthentication(nonceRegistry.issue(connectionAttributeStore));
+            return;
+        }
+
+        // the challenge is sent once the token of the client is available
+        Async<EnhancedAuthOutput> async = enhancedAuthOutput.async(Duration.ofNanos(delayNanos.getAsLong()).plus(DELAY_TIMEOUT_MARGIN),
+                TimeoutFallback.FAILURE, DisconnectedReasonCode.SERVER_BUSY, "Timed out while delaying the handshake");
+        try {
+            executorService.schedule(() -> {
+                // the client was already disconnected by the timeout
+                if (async.getStatus() == Async.Status.RUNNING) {
+                    enhancedAuthOutput.continueAuthentication(nonceRegistry.issue(connectionAttributeStore));
+                }
+                async.resume();
+            }, delayNanos.getAsLong(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            handshakeAdmission.leave(connectionAttributeStore);
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.SERVER_BUSY, "Could not schedule the handshake", clientId);
+            async.resume();
+        }
+    }
+
+    /**
+     * Verifies the signed nonce of the AUTH packet, the nonce of the connection is consumed by the first attempt
+     */
+    private void verifyChallenge(String clientId, EnhancedAuthInput enhancedAuthInput, EnhancedAuthOutput enhancedAuthOutput) {
+        @NotNull Optional<byte[]> authenticationDataAsArray = enhancedAuthInput.getAuthPacket().getAuthenticationDataAsArray();
+
+        if (authenticationDataAsArray.isEmpty()) {
+            String reason = "Authentication data in AUTH packet missing - the signed nonce is expected";
+            log.info("Fail authentication. Reason:=" + reason + ", clientId:=" + clientId);
+            failedHandshakes.mark();
+            enhancedAuthOutput.failAuthentication(DisconnectedReasonCode.NOT_AUTHORIZED, reason);
+            return;
+        }
+
+        @NotNull Optional<PublicKey> publicKey = publicKeyCache.getPublicKey(clientId);
+        if (publicKey.isEmpty()) {
+            String failReason = "The clientID is not a valid base32 representation of an EdDSA public key";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.CLIENT_IDENTIFIER_NOT_VALID, failReason, clientId);
+            return;
+        }
+
+        @NotNull Optional<byte[]> nonce = nonceRegistry.consume(enhancedAuthInput.getConnectionInformation().getConnectionAttributeStore());
+        if (nonce.isEmpty()) {
+            String failReason = "No challenge is pending for this connection - it expired or was already used";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.NOT_AUTHORIZED, failReason, clientId);
+            return;
+        }
+
+        try {
+            long verificationStart = System.nanoTime();
+            boolean success = cryptoProvider.verify(publicKey.get(), authenticationDataAsArray.get(), nonce.get());
+            signatureVerificationTimer.update(System.nanoTime() - verificationStart, TimeUnit.NANOSECONDS);
+            if (success) {
+                log.info("Smoker client connection accepted. clientId:=" + clientId);
+                enhancedAuthOutput.authenticateSuccessfully();
+                ConnectionAttributeStore connectionAttributeStore = enhancedAuthInput.getConnectionInformation().getConnectionAttributeStore();
+                connectionAttributeStore.putAsString(AuthenticationConsts.IS_SMOKER_AUTH_ATTRIBUTE_KEY, Boolean.TRUE.toString());
+                connectionAttributeStore.remove(AuthenticationConsts.HANDSHAKE_START_ATTRIBUTE_KEY)
+                        .map(start -> Long.parseLong(StandardCharsets.UTF_8.decode(start).toString()))
+                        .ifPresent(start -> handshakeTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+            } else {
+                String failReason = "The provided signature could not be verified successfully";
+                failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.NOT_AUTHORIZED, failReason, clientId);
+            }
+        } catch (InvalidKeyException e) {
+            String failReason = "The clientID is not a valid base32 representation of an EdDSA public key";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.CLIENT_IDENTIFIER_NOT_VALID, failReason, clientId);
+        } catch (SignatureException e) {
+            String failReason = "The provided signature seems to be invalid";
+            failAuthenticationWithReason(enhancedAuthOutput, DisconnectedReasonCode.NOT_AUTHORIZED, failReason, clientId);
+        }
+    }
+
     private void failAuthenticationWithReason(EnhancedAuthOutput output, DisconnectedReasonCode reasonCode, String reasonString, String clientId) {
         log.info("Fail authentication. ReasonCode:=" + reasonCode.name() + " Reason:=" + reasonString + ", clientId:=" + clientId);
+        failedHandshakes.mark();
         output.failAuthentication(reasonCode, reasonString);
     }
 }
\ No newline at end of file
@@ -7,6 +7,26 @@ public class AuthenticationConsts {
      */
     public static final String IS_SMOKER_AUTH_ATTRIBUTE_KEY = "IS_SMOKER_AUTH";
 
+    /**
+     * Key which is used to hold the key of the connection in the {@link ch.microfast.hivemq.smoker.authn.NonceRegistry} in {@link com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore}
+     */
+    public static final String CONNECTION_KEY_ATTRIBUTE_KEY = "SMOKER_CONNECTION_KEY";
+
+    /**
+     * Key which is used to mark a connection whose SMOKER handshake counts as in flight in {@link ch.microfast.hivemq.smoker.authn.HandshakeAdmission}
+     */
+    public static final String HANDSHAKE_IN_FLIGHT_ATTRIBUTE_KEY = "SMOKER_HANDSHAKE_IN_FLIGHT";
+
+    /**
+     * Key which is used to mark a connection whose source address exceeded its handshake rate, the handshake is rejected by the authenticator
+     */
+    public static final String ADDRESS_RATE_EXCEEDED_ATTRIBUTE_KEY = "SMOKER_ADDRESS_RATE_EXCEEDED";
+
+    /**
+     * Key which is used to hold the start (nanos) of an admitted SMOKER handshake in {@link com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore} to time it
+     */
+    public static final String HANDSHAKE_START_ATTRIBUTE_KEY = "SMOKER_HANDSHAKE_START";
+
     /**
      * Value which must be provided by clients as authentication method to trigger SMOKER auth which is implemented in {@link ch.microfast.hivemq.smoker.authn.SmokerEnhancedAuthenticator}
      */
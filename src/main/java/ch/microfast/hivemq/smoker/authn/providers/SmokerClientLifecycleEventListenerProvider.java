@@ -0,0 +1,23 @@
+package ch.microfast.hivemq.smoker.authn.providers;
+
+import com.google.inject.Inject;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListener;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListenerProvider;
+import com.hivemq.extension.sdk.api.events.client.parameters.ClientLifecycleEventListenerProviderInput;
+
+public class SmokerClientLifecycleEventListenerProvider implements ClientLifecycleEventListenerProvider {
+
+    private final ClientLifecycleEventListener clientLifecycleEventListener;
+
+    @Inject
+    public SmokerClientLifecycleEventListenerProvider(ClientLifecycleEventListener clientLifecycleEventListener) {
+        this.clientLifecycleEventListener = clientLifecycleEventListener;
+    }
+
+    @Override
+    public @Nullable ClientLifecycleEventListener getClientLifecycleEventListener(@NotNull ClientLifecycleEventListenerProviderInput clientLifecycleEventListenerProviderInput) {
+        return clientLifecycleEventListener;
+    }
+}
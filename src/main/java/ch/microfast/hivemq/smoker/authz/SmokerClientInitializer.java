@@ -19,14 +19,18 @@ public class SmokerClientInitializer implements ClientInitializer {
 
     private final SmokerPublishInboundInterceptor publishInboundInterceptor;
 
+    private final SmokerPublishOutboundInterceptor publishOutboundInterceptor;
+
     @Inject
-    public SmokerClientInitializer(SmokerPublishInboundInterceptor publishInboundInterceptor) {
+    public SmokerClientInitializer(SmokerPublishInboundInterceptor publishInboundInterceptor, SmokerPublishOutboundInterceptor publishOutboundInterceptor) {
         this.publishInboundInterceptor = publishInboundInterceptor;
+        this.publishOutboundInterceptor = publishOutboundInterceptor;
     }
 
     @Override
     public void initialize(@NotNull InitializerInput initializerInput, @NotNull ClientContext clientContext) {
         clientContext.addPublishInboundInterceptor(publishInboundInterceptor);
+        clientContext.addPublishOutboundInterceptor(publishOutboundInterceptor);
 
         // Set the permissions according to the claims by clients
         // NOTE: The Priority of the permissions is set by the chronological order of the permissions.
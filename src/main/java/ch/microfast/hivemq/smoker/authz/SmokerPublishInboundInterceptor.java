@@ -2,13 +2,16 @@ package ch.microfast.hivemq.smoker.authz;
 
 import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
 import ch.microfast.hivemq.smoker.authz.common.SmokerClientHelper;
-import ch.microfast.hivemq.smoker.authz.domain.Claim;
 import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.authz.services.ClaimPipeline;
 import ch.microfast.hivemq.smoker.authz.services.IAuthzService;
-import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.BatchingClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import com.hivemq.extension.sdk.api.interceptor.publish.PublishInboundInterceptor;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
@@ -20,10 +23,19 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 /**
  * The inbound publish interceptor listens for claims/unclaims of authenticated clients and stores them into the persistent storage.
+ * Claims/unclaims are processed asynchronously by the {@link ClaimPipeline}, so the network threads are never blocked by the
+ * signature verification or the storage.
  * NOTE: This interceptor is called before any other authorizers such as {@link SmokerPublishSubscribeAuthorizer} which handles every publish message.
  * The {@link SmokerPublishSubscribeAuthorizer} is not called if this interceptor already prevents the publish.
  */
@@ -35,13 +47,25 @@ public class SmokerPublishInboundInterceptor implements PublishInboundIntercepto
 
     private final SmokerJsonSerializer smokerJsonSerializer;
 
-    private final IClaimValidator claimValidator;
+    private final BatchingClaimValidator claimValidator;
+
+    private final ClaimPipeline claimPipeline;
+
+    private final long timeoutMillis;
 
     @Inject
-    public SmokerPublishInboundInterceptor(IAuthzService authzService, SmokerJsonSerializer smokerJsonSerializer, IClaimValidator claimValidator) {
+    public SmokerPublishInboundInterceptor(
+            IAuthzService authzService,
+            SmokerJsonSerializer smokerJsonSerializer,
+            BatchingClaimValidator claimValidator,
+            ClaimPipeline claimPipeline,
+            @Named("claim.pipeline.timeout.ms") long timeoutMillis
+    ) {
         this.authzService = authzService;
         this.smokerJsonSerializer = smokerJsonSerializer;
         this.claimValidator = claimValidator;
+        this.claimPipeline = claimPipeline;
+        this.timeoutMillis = timeoutMillis;
     }
 
     @Override
@@ -73,23 +97,11 @@ public class SmokerPublishInboundInterceptor implements PublishInboundIntercepto
                     return;
                 }
 
-                // deserialize the payload and process the claim
-                String claimJson = StandardCharsets.UTF_8.decode(payload.get()).toString();
-                try {
-                    Claim claim = smokerJsonSerializer.readValue(claimJson, Claim.class);
-                    claimValidator.validateClaim(claim);
-                    authzService.claim(claim);
-                } catch (IOException ex) {
-                    log.debug("Prevent claim because deserialization failed", ex);
-                    publishInboundOutput.preventPublishDelivery(AckReasonCode.PAYLOAD_FORMAT_INVALID, "The claim payload is not in the expected format and cannot be deserialized");
-                    return;
-                } catch (InvalidClaimException ex) {
-                    log.debug("Prevent claim because validation failed", ex);
-                    publishInboundOutput.preventPublishDelivery(AckReasonCode.PAYLOAD_FORMAT_INVALID, String.format("Claim is not valid. ErrorMessages:={}", ex.getErrorMessages()));
-                } catch (Exception ex) {
-                    log.error("Prevent claim because of a unexpected exception", ex);
-                    publishInboundOutput.preventPublishDelivery(AckReasonCode.UNSPECIFIED_ERROR, String.format("Unexpected exception while claiming"));
-                }
+                // deserialize the payload and process the claim off the network thread
+                process(clientId, publishInboundOutput, "claim",
+                        () -> smokerJsonSerializer.readClaim(payload.get()),
+                        claimValidator::validate,
+                        authzService::claimValidated);
             }
 
             // handle unclaims
@@ -104,12 +116,70 @@ public class SmokerPublishInboundInterceptor implements PublishInboundIntercepto
                     return;
                 }
 
-                String unclaimTopicName = StandardCharsets.UTF_8.decode(payload.get()).toString();
-                authzService.unclaim(clientId, unclaimTopicName);
+                process(clientId, publishInboundOutput, "unclaim",
+                        () -> StandardCharsets.UTF_8.decode(payload.get()).toString(),
+                        CompletableFuture::completedFuture,
+                        unclaimTopicName -> authzService.unclaim(clientId, unclaimTopicName));
             }
         } catch(Exception ex) {
             log.error("Unexpected exception", ex);
             throw ex;
         }
     }
+
+    /**
+     * Hands a claim or unclaim over to the {@link ClaimPipeline} and holds the publish until it is processed. Claims
+     * and unclaims of a client are persisted in the order they were published.
+     */
+    private <T> void process(String clientId, PublishInboundOutput publishInboundOutput, String operation, Callable<T> decode,
+                             Function<T, CompletionStage<T>> validate, ClaimPipeline.Stage<T> persist) {
+        Async<PublishInboundOutput> async = publishInboundOutput.async(Duration.ofMillis(timeoutMillis), TimeoutFallback.FAILURE,
+                AckReasonCode.UNSPECIFIED_ERROR, String.format("Timed out while processing the %s", operation));
+
+        Optional<CompletableFuture<Void>> processed;
+        try {
+            processed = claimPipeline.submit(clientId, decode, validate, value -> {
+                // the client already received the timeout, skip the publish. The check is not atomic with the persist:
+                // a timeout right after it still persists the value, the client then sees a failure of an applied
+                // claim/unclaim. Both are idempotent, the client can safely retry.
+                if (async.getStatus() != Async.Status.RUNNING) {
+                    log.debug("Skip {} of clientId:={} because processing timed out", operation, clientId);
+                    return;
+                }
+                persist.accept(value);
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("Prevent {} because the executor rejected it", operation, e);
+            publishInboundOutput.preventPublishDelivery(AckReasonCode.UNSPECIFIED_ERROR, String.format("Unexpected exception while processing the %s", operation));
+            async.resume();
+            return;
+        }
+
+        if (processed.isEmpty()) {
+            log.debug("Prevent {} because the claim pipeline is saturated", operation);
+            publishInboundOutput.preventPublishDelivery(AckReasonCode.QUOTA_EXCEEDED, String.format("Too many claims in progress, retry the %s later", operation));
+            async.resume();
+            return;
+        }
+
+        processed.get().whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                preventPublishDelivery(publishInboundOutput, operation, failure instanceof CompletionException ? failure.getCause() : failure);
+            }
+            async.resume();
+        });
+    }
+
+    private void preventPublishDelivery(PublishInboundOutput publishInboundOutput, String operation, Throwable failure) {
+        if (failure instanceof IOException) {
+            log.debug("Prevent {} because deserialization failed", operation, failure);
+            publishInboundOutput.preventPublishDelivery(AckReasonCode.PAYLOAD_FORMAT_INVALID, String.format("The %s payload is not in the expected format and cannot be deserialized", operation));
+        } else if (failure instanceof InvalidClaimException) {
+            log.debug("Prevent {} because validation failed", operation, failure);
+            publishInboundOutput.preventPublishDelivery(AckReasonCode.PAYLOAD_FORMAT_INVALID, String.format("Claim is not valid. ErrorMessages:=%s", ((InvalidClaimException) failure).getErrorMessages()));
+        } else {
+            log.error("Prevent {} because of a unexpected exception", operation, failure);
+            publishInboundOutput.preventPublishDelivery(AckReasonCode.UNSPECIFIED_ERROR, String.format("Unexpected exception while processing the %s", operation));
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package ch.microfast.hivemq.smoker.authz;
+
+import ch.microfast.hivemq.smoker.authz.common.SmokerClientHelper;
+import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
+import ch.microfast.hivemq.smoker.authz.services.IAuthzService;
+import com.google.inject.Inject;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.interceptor.publish.PublishOutboundInterceptor;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The outbound publish interceptor checks the subscribe permission of the receiving client for every publish delivered
+ * from the restricted area. A subscription is only authorized once by the {@link SmokerPublishSubscribeAuthorizer},
+ * e.g. a wildcard subscription also matches topics claimed later, whose claims may exclude the subscriber. Such
+ * publishes are not delivered.
+ * NOTE: The decision is served by the decision cache, a miss evaluates the claim of the topic on the calling thread.
+ */
+public class SmokerPublishOutboundInterceptor implements PublishOutboundInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SmokerPublishOutboundInterceptor.class);
+
+    private final IAuthzService authzService;
+
+    @Inject
+    public SmokerPublishOutboundInterceptor(IAuthzService authzService) {
+        this.authzService = authzService;
+    }
+
+    @Override
+    public void onOutboundPublish(@NotNull PublishOutboundInput publishOutboundInput, @NotNull PublishOutboundOutput publishOutboundOutput) {
+        String topic = publishOutboundInput.getPublishPacket().getTopic();
+
+        // Topics outside of the restricted area are delivered to every subscriber
+        if (!TopicHelper.IsTopicInRestrictedArea(topic)) {
+            return;
+        }
+
+        String clientId = publishOutboundInput.getClientInformation().getClientId();
+        try {
+            boolean isAuthenticated = SmokerClientHelper.isAuthenticated(publishOutboundInput.getConnectionInformation().getConnectionAttributeStore());
+            boolean isAllowed = authzService.findCachedAccess(clientId, topic, TopicPermission.MqttActivity.SUBSCRIBE, isAuthenticated)
+                    .orElseGet(() -> authzService.checkAccess(clientId, topic, TopicPermission.MqttActivity.SUBSCRIBE, isAuthenticated));
+            if (!isAllowed) {
+                log.debug("Client:={} is not allowed to subscribe topic:={} anymore - delivery prevented", clientId, topic);
+                publishOutboundOutput.preventPublishDelivery();
+            }
+        } catch (Exception ex) {
+            // never deliver a restricted publish which could not be authorized
+            log.error("Unexpected exception while authorizing the delivery of topic:=" + topic + " to client:=" + clientId, ex);
+            publishOutboundOutput.preventPublishDelivery();
+        }
+    }
+}
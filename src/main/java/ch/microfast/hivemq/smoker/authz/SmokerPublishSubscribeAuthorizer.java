@@ -2,17 +2,37 @@ package ch.microfast.hivemq.smoker.authz;
 
 import ch.microfast.hivemq.smoker.authz.common.SmokerClientHelper;
 import ch.microfast.hivemq.smoker.authz.services.IAuthzService;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.AsyncOutput;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.auth.PublishAuthorizer;
 import com.hivemq.extension.sdk.api.auth.SubscriptionAuthorizer;
 import com.hivemq.extension.sdk.api.auth.parameter.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Publish and subscribe authorizer for all mqtt activity.
  * NOTE: These authorization functions are checked before default topic permissions defined in {@link SmokerClientInitializer}.
+ *
+ * <p>
+ * Cached decisions are always applied right away. In async mode all other decisions are evaluated on the extension
+ * executor, so a slow claim store never blocks the network threads. If the evaluation takes longer than the timeout or
+ * fails, the authorization fails if fail-closed is configured, otherwise the default permissions decide.
+ * </p>
  */
 public class SmokerPublishSubscribeAuthorizer implements PublishAuthorizer, SubscriptionAuthorizer {
 
@@ -20,9 +40,34 @@ public class SmokerPublishSubscribeAuthorizer implements PublishAuthorizer, Subs
 
     private final IAuthzService authzService;
 
+    private final ScheduledExecutorService executorService;
+
+    private final boolean isAsync;
+
+    private final Duration timeout;
+
+    private final boolean isFailClosed;
+
+    private final Timer cachedLatency;
+
+    private final Timer evaluatedLatency;
+
     @Inject
-    public SmokerPublishSubscribeAuthorizer(IAuthzService authzService) {
+    public SmokerPublishSubscribeAuthorizer(
+            IAuthzService authzService,
+            ScheduledExecutorService executorService,
+            @Named("authz.async.enabled") boolean isAsync,
+            @Named("authz.async.timeout.ms") long timeoutMillis,
+            @Named("authz.async.fail.closed") boolean isFailClosed,
+            MetricRegistry metricRegistry
+    ) {
         this.authzService = authzService;
+        this.executorService = executorService;
+        this.isAsync = isAsync;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.isFailClosed = isFailClosed;
+        this.cachedLatency = metricRegistry.timer(SmokerMetrics.name("authz", "authorizer", "cached"));
+        this.evaluatedLatency = metricRegistry.timer(SmokerMetrics.name("authz", "authorizer", "evaluated"));
     }
 
     @Override
@@ -32,13 +77,22 @@ public class SmokerPublishSubscribeAuthorizer implements PublishAuthorizer, Subs
             String topic = publishAuthorizerInput.getPublishPacket().getTopic();
             String clientId = publishAuthorizerInput.getClientInformation().getClientId();
 
-            boolean isAuthorized = authzService.checkAccess(clientId, topic, TopicPermission.MqttActivity.PUBLISH, isAuthenticated);
-            if (isAuthorized) {
-                publishAuthorizerOutput.authorizeSuccessfully();
-                return;
-            }
+            authorize(clientId, topic, TopicPermission.MqttActivity.PUBLISH, isAuthenticated, publishAuthorizerOutput, new Decision() {
+                @Override
+                public void allow() {
+                    publishAuthorizerOutput.authorizeSuccessfully();
+                }
 
-            publishAuthorizerOutput.nextExtensionOrDefault();
+                @Override
+                public void next() {
+                    publishAuthorizerOutput.nextExtensionOrDefault();
+                }
+
+                @Override
+                public void fail() {
+                    publishAuthorizerOutput.failAuthorization();
+                }
+            });
         } catch(Exception ex) {
             log.error("Unexpected exception", ex);
             throw ex;
@@ -52,16 +106,99 @@ public class SmokerPublishSubscribeAuthorizer implements PublishAuthorizer, Subs
             String topic = subscriptionAuthorizerInput.getSubscription().getTopicFilter();
             String clientId = subscriptionAuthorizerInput.getClientInformation().getClientId();
 
-            boolean isAuthorized = authzService.checkAccess(clientId, topic, TopicPermission.MqttActivity.SUBSCRIBE, isAuthenticated);
-            if (isAuthorized) {
-                subscriptionAuthorizerOutput.authorizeSuccessfully();
-                return;
-            }
+            authorize(clientId, topic, TopicPermission.MqttActivity.SUBSCRIBE, isAuthenticated, subscriptionAuthorizerOutput, new Decision() {
+                @Override
+                public void allow() {
+                    subscriptionAuthorizerOutput.authorizeSuccessfully();
+                }
+
+                @Override
+                public void next() {
+                    subscriptionAuthorizerOutput.nextExtensionOrDefault();
+                }
 
-            subscriptionAuthorizerOutput.nextExtensionOrDefault();
+                @Override
+                public void fail() {
+                    subscriptionAuthorizerOutput.failAuthorization();
+                }
+            });
         } catch(Exception ex) {
             log.error("Unexpected exception", ex);
             throw ex;
         }
     }
+
+    private <T> void authorize(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated, AsyncOutput<T> output, Decision decision) {
+        long start = System.nanoTime();
+
+        // fast path - cached decisions don't touch the claim store
+        Optional<Boolean> cachedAccess = authzService.findCachedAccess(clientId, topic, activity, isAuthenticated);
+        if (cachedAccess.isPresent()) {
+            decision.apply(cachedAccess.get());
+            cachedLatency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        if (!isAsync) {
+            decision.apply(authzService.checkAccess(clientId, topic, activity, isAuthenticated));
+            evaluatedLatency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        // on timeout SUCCESS falls back to the default permissions and FAILURE fails the authorization
+        Async<T> async = output.async(timeout, isFailClosed ? TimeoutFallback.FAILURE : TimeoutFallback.SUCCESS);
+        try {
+            CompletableFuture.supplyAsync(() -> authzService.checkAccess(clientId, topic, activity, isAuthenticated), executorService)
+                    .whenComplete((isAuthorized, failure) -> {
+                        try {
+                            // the timeout fallback already decided, the output must not be decided twice
+                            if (async.getStatus() != Async.Status.RUNNING) {
+                                log.debug("Skip decision of clientId:={}, topic:={} because the evaluation timed out", clientId, topic);
+                            } else if (failure != null) {
+                                log.error("Could not evaluate access for clientId:={}, topic:={}", clientId, topic, failure);
+                                decision.fallback(isFailClosed);
+                            } else {
+                                decision.apply(isAuthorized);
+                            }
+                        } catch (Exception ex) {
+                            // the future would swallow it
+                            log.error("Could not apply the decision for clientId:={}, topic:={}", clientId, topic, ex);
+                        } finally {
+                            evaluatedLatency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            async.resume();
+                        }
+                    });
+        } catch (RejectedExecutionException ex) {
+            log.error("Could not schedule access evaluation for clientId:={}, topic:={}", clientId, topic, ex);
+            decision.fallback(isFailClosed);
+            async.resume();
+        }
+    }
+
+    /**
+     * Applies a decision to the publish or subscription authorizer output
+     */
+    private interface Decision {
+        void allow();
+
+        void next();
+
+        void fail();
+
+        default void apply(boolean isAuthorized) {
+            if (isAuthorized) {
+                allow();
+            } else {
+                next();
+            }
+        }
+
+        default void fallback(boolean isFailClosed) {
+            if (isFailClosed) {
+                fail();
+            } else {
+                next();
+            }
+        }
+    }
 }
@@ -4,6 +4,11 @@ package ch.microfast.hivemq.smoker.authz.common;
 import org.apache.commons.lang3.StringUtils;
 
 public class TopicHelper {
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
     /// <summary>
     ///     Checks if the topic is reserved. Means topics which cannot be subscribed and only published if client is SMOKER authenticated
     /// </summary>
@@ -17,7 +22,13 @@ public class TopicHelper {
     /// </summary>
     /// <param name="topic">The Topic to check</param>
     public static boolean IsTopicInRestrictedArea(String topic) {
-        return TopicSegmentIsEqualTo(topic, 0, AuthorizationConsts.RESTRICTED_AREA_PREFIX);
+        if (topic == null) {
+            throw new IllegalArgumentException("topic must not be null or empty");
+        }
+
+        // checked without splitting the topic as this is evaluated for every publish and subscription
+        String prefix = AuthorizationConsts.RESTRICTED_AREA_PREFIX;
+        return topic.startsWith(prefix) && (topic.length() == prefix.length() || topic.charAt(prefix.length()) == '/');
     }
 
     /// <summary>
@@ -29,6 +40,86 @@ public class TopicHelper {
         return TopicSegmentIsEqualTo(topic, 1, owner);
     }
 
+    /// <summary>
+    ///     Checks if the topic is a topic filter containing a single level ('+') or multi level ('#') wildcard
+    /// </summary>
+    /// <param name="topic">The topic (filter) to check</param>
+    public static boolean ContainsWildcard(String topic) {
+        if (topic == null) {
+            throw new IllegalArgumentException("topic must not be null or empty");
+        }
+
+        return topic.contains(SINGLE_LEVEL_WILDCARD) || topic.contains(MULTI_LEVEL_WILDCARD);
+    }
+
+    /// <summary>
+    ///     Checks if the topic segment at the given index is a single level ('+') or multi level ('#') wildcard.
+    ///     A multi level wildcard on a lower level also covers the given segment.
+    /// </summary>
+    /// <param name="topic">The topic filter to check</param>
+    /// <param name="segmentIdx">The index of the segment to check</param>
+    public static boolean IsWildcardSegment(String topic, int segmentIdx) {
+        if (topic == null) {
+            throw new IllegalArgumentException("topic must not be null or empty");
+        }
+
+        String[] segments = topic.split("/", -1);
+        for (int i = 0; i < segments.length && i <= segmentIdx; i++) {
+            if (MULTI_LEVEL_WILDCARD.equals(segments[i])) {
+                return true;
+            }
+        }
+
+        return segmentIdx < segments.length && SINGLE_LEVEL_WILDCARD.equals(segments[segmentIdx]);
+    }
+
+    /// <summary>
+    ///     Checks if the topic is matched by the topic filter which may contain single level ('+') and multi level ('#') wildcards
+    /// </summary>
+    /// <param name="topicFilter">The topic filter</param>
+    /// <param name="topic">The topic name to check</param>
+    public static boolean MatchesTopicFilter(String topicFilter, String topic) {
+        if (topicFilter == null || topic == null) {
+            throw new IllegalArgumentException("topic must not be null or empty");
+        }
+
+        String[] filterSegments = topicFilter.split("/", -1);
+        String[] topicSegments = topic.split("/", -1);
+        for (int i = 0; i < filterSegments.length; i++) {
+            if (MULTI_LEVEL_WILDCARD.equals(filterSegments[i])) {
+                // '#' also matches the parent level
+                return true;
+            }
+            if (i >= topicSegments.length || (!SINGLE_LEVEL_WILDCARD.equals(filterSegments[i]) && !filterSegments[i].equals(topicSegments[i]))) {
+                return false;
+            }
+        }
+
+        return filterSegments.length == topicSegments.length;
+    }
+
+    /// <summary>
+    ///     Returns the part of the topic filter before its first wildcard segment, without the trailing separator.
+    ///     All topics matched by the filter start with this prefix.
+    /// </summary>
+    /// <param name="topicFilter">The topic filter</param>
+    public static String GetLiteralPrefix(String topicFilter) {
+        if (topicFilter == null) {
+            throw new IllegalArgumentException("topic must not be null or empty");
+        }
+
+        String[] segments = topicFilter.split("/", -1);
+        int prefixLength = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (SINGLE_LEVEL_WILDCARD.equals(segments[i]) || MULTI_LEVEL_WILDCARD.equals(segments[i])) {
+                return topicFilter.substring(0, Math.max(prefixLength - 1, 0));
+            }
+            prefixLength += segments[i].length() + 1;
+        }
+
+        return topicFilter;
+    }
+
     private static boolean TopicSegmentIsEqualTo(String topic, int segmentIdx, String expectedValue) {
         if (topic == null) {
             throw new IllegalArgumentException("topic must not be null or empty");
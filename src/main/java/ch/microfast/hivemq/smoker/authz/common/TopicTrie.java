@@ -0,0 +1,160 @@
+package ch.microfast.hivemq.smoker.authz.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A segment trie over topic names which allows to evaluate MQTT topic filters (with '+' and '#' wildcards) against
+ * all contained topics. The cost of a match is proportional to the subtree covered by the filter and not to the
+ * amount of topics held by the trie.
+ *
+ * <p>
+ * Reads are lock free and can run concurrently to writes. Writes are serialized.
+ * </p>
+ */
+public class TopicTrie {
+
+    private static final String TOPIC_LEVEL_SEPARATOR = "/";
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private final Node root = new Node();
+
+    private int size = 0;
+
+    /**
+     * Adds a topic name to the trie
+     *
+     * @param topic the topic name to add
+     */
+    public synchronized void add(String topic) {
+        Node node = root;
+        for (String level : splitLevels(topic)) {
+            node = node.children.computeIfAbsent(level, l -> new Node());
+        }
+
+        if (node.topic == null) {
+            size++;
+        }
+        node.topic = topic;
+    }
+
+    /**
+     * Removes a topic name from the trie. Nodes which do not lead to any topic anymore are pruned.
+     *
+     * @param topic the topic name to remove
+     */
+    public synchronized void remove(String topic) {
+        String[] levels = splitLevels(topic);
+        Node[] path = new Node[levels.length + 1];
+        path[0] = root;
+
+        for (int i = 0; i < levels.length; i++) {
+            path[i + 1] = path[i].children.get(levels[i]);
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+
+        Node node = path[levels.length];
+        if (node.topic == null) {
+            return;
+        }
+        node.topic = null;
+        size--;
+
+        // prune the branch bottom up as long as the nodes are empty
+        for (int i = levels.length; i > 0 && path[i].topic == null && path[i].children.isEmpty(); i--) {
+            path[i - 1].children.remove(levels[i - 1]);
+        }
+    }
+
+    /**
+     * Checks if the exact topic name is contained in the trie
+     *
+     * @param topic the topic name
+     * @return true if the topic was added before
+     */
+    public boolean contains(String topic) {
+        Node node = root;
+        for (String level : splitLevels(topic)) {
+            node = node.children.get(level);
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.topic != null;
+    }
+
+    /**
+     * Finds all topic names which are matched by the given MQTT topic filter
+     *
+     * @param topicFilter the topic filter which may contain '+' and '#' wildcards
+     * @return all contained topics matching the filter
+     */
+    public Collection<String> match(String topicFilter) {
+        List<String> result = new ArrayList<>();
+        match(root, splitLevels(topicFilter), 0, result);
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void match(Node node, String[] levels, int levelIdx, List<String> result) {
+        if (levelIdx == levels.length) {
+            String topic = node.topic;
+            if (topic != null) {
+                result.add(topic);
+            }
+            return;
+        }
+
+        String level = levels[levelIdx];
+        if (MULTI_LEVEL_WILDCARD.equals(level)) {
+            // '#' also matches the parent level
+            collect(node, result);
+        } else if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+            for (Node child : node.children.values()) {
+                match(child, levels, levelIdx + 1, result);
+            }
+        } else {
+            Node child = node.children.get(level);
+            if (child != null) {
+                match(child, levels, levelIdx + 1, result);
+            }
+        }
+    }
+
+    private void collect(Node node, List<String> result) {
+        String topic = node.topic;
+        if (topic != null) {
+            result.add(topic);
+        }
+        for (Node child : node.children.values()) {
+            collect(child, result);
+        }
+    }
+
+    private static String[] splitLevels(String topic) {
+        if (topic == null) {
+            throw new IllegalArgumentException("topic must not be null");
+        }
+        return topic.split(TOPIC_LEVEL_SEPARATOR, -1);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+
+        /**
+         * The full topic name if a topic ends at this node, null otherwise
+         */
+        private volatile String topic;
+    }
+}
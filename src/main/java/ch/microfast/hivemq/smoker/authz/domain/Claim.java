@@ -27,6 +27,12 @@ public class Claim implements Serializable {
     @NotNull
     private Restriction restriction;
 
+    /**
+     * The bytes of the restriction as it was received, if the claim was read by
+     * {@link ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer#readClaim}. Not part of the claim.
+     */
+    private transient byte[] signedRestriction;
+
     public String getSignature() {
         return signature;
     }
@@ -43,6 +49,16 @@ public class Claim implements Serializable {
         this.restriction = restriction;
     }
 
+    @JsonIgnore
+    public byte[] getSignedRestriction() {
+        return signedRestriction;
+    }
+
+    @JsonIgnore
+    public void setSignedRestriction(byte[] signedRestriction) {
+        this.signedRestriction = signedRestriction;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
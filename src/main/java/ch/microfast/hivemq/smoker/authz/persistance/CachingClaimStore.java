@@ -0,0 +1,135 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Read-through cache in front of another {@link IClaimStore}. The decoded claims of the most frequently looked up
+ * topics are held on heap, so hot topics never pay the read and decode cost of the backing store. Lookups of unclaimed
+ * topics are cached as well.
+ *
+ * <p>
+ * The cache is bounded by a weight of one per claim plus one per permission and evicts by frequency and recency
+ * (W-TinyLFU). Writes go through to the backing store first and invalidate the cached topic afterwards, a load running
+ * concurrently to the write can therefore not leave a stale claim behind.
+ * </p>
+ *
+ * <p>
+ * Only lookups by topic are cached. Lookups which resolve several claims through the indexes of the backing store are
+ * delegated.
+ * </p>
+ */
+public class CachingClaimStore implements IClaimStore {
+
+    /**
+     * Name of the binding of the backing store
+     */
+    public static final String BACKING_STORE = "store.backing";
+
+    private final IClaimStore claimStore;
+
+    private final Cache<String, Optional<Claim>> claimsByTopic;
+
+    @Inject
+    public CachingClaimStore(
+            @Named(BACKING_STORE) IClaimStore claimStore,
+            @Named("store.cache.max.weight") long maxWeight,
+            MetricRegistry metricRegistry
+    ) {
+        this.claimStore = claimStore;
+        this.claimsByTopic = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String topic, Optional<Claim> claim) -> 1 + claim.map(c -> c.getRestriction().getPermissions().size()).orElse(0))
+                .recordStats()
+                .build();
+
+        metricRegistry.gauge(SmokerMetrics.name("store", "cache", "hits"), () -> (Gauge<Long>) () -> claimsByTopic.stats().hitCount());
+        metricRegistry.gauge(SmokerMetrics.name("store", "cache", "misses"), () -> (Gauge<Long>) () -> claimsByTopic.stats().missCount());
+        metricRegistry.gauge(SmokerMetrics.name("store", "cache", "evictions"), () -> (Gauge<Long>) () -> claimsByTopic.stats().evictionCount());
+        metricRegistry.gauge(SmokerMetrics.name("store", "cache", "size"), () -> (Gauge<Long>) claimsByTopic::estimatedSize);
+    }
+
+    @Override
+    public void upsert(Claim claim) throws InvalidClaimException {
+        try {
+            claimStore.upsert(claim);
+        } finally {
+            claimsByTopic.invalidate(claim.getRestriction().getTopicName());
+        }
+    }
+
+    @Override
+    public void upsertValidated(Claim claim) {
+        try {
+            claimStore.upsertValidated(claim);
+        } finally {
+            claimsByTopic.invalidate(claim.getRestriction().getTopicName());
+        }
+    }
+
+    @Override
+    public void delete(String owner, String topicName) {
+        try {
+            claimStore.delete(owner, topicName);
+        } finally {
+            claimsByTopic.invalidate(topicName);
+        }
+    }
+
+    @Override
+    public Optional<Claim> findByTopic(String topicName) {
+        return claimsByTopic.get(topicName, claimStore::findByTopic);
+    }
+
+    @Override
+    public Collection<Claim> findByTopicFilter(String topicFilter) {
+        return claimStore.findByTopicFilter(topicFilter);
+    }
+
+    @Override
+    public Collection<Claim> findByClient(String clientId) {
+        return claimStore.findByClient(clientId);
+    }
+
+    @Override
+    public Collection<Claim> find(Predicate<Claim> filterPredicate) {
+        return claimStore.find(filterPredicate);
+    }
+
+    @Override
+    public Collection<Claim> getAll() {
+        return claimStore.getAll();
+    }
+
+    @Override
+    public long count() {
+        return claimStore.count();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return claimStore.whenReady();
+    }
+
+    @Override
+    public void flush() {
+        claimStore.flush();
+    }
+
+    @Override
+    public void close() {
+        claimStore.close();
+    }
+}
@@ -1,55 +1,174 @@
 package ch.microfast.hivemq.smoker.authz.persistance;
 
 import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
+import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
 import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.Restriction;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
 import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ChronicleMapDiskClaimStore implements IClaimStore {
 
+    private static final Logger log = LoggerFactory.getLogger(ChronicleMapDiskClaimStore.class);
+
+    /**
+     * Marker file next to the store file holding the storage format of the store file. Store files without marker
+     * were written with java serialization and are migrated on startup.
+     */
+    static final String FORMAT_FILE_SUFFIX = ".format";
+
+    /**
+     * Suffix of the store file written with java serialization. The file is kept as backup after the migration.
+     */
+    static final String LEGACY_FILE_SUFFIX = ".legacy";
+
+    static final String STORAGE_FORMAT = "binary-v" + ClaimBytesMarshaller.FORMAT_VERSION;
+
     private final IClaimValidator claimValidator;
 
     private final ChronicleMap<String, Claim> topicClaimMap;
 
+    /**
+     * Secondary indexes of the persisted claims. They are rebuilt from the map in the background on startup.
+     */
+    private final ClaimIndex claimIndex = new ClaimIndex();
+
+    private final CompletableFuture<Void> indexReady;
+
     @Inject
     public ChronicleMapDiskClaimStore(
             IClaimValidator claimValidator,
             @Named("store.expected.max.entries") long expectedMaxEntries,
-            @Named("store.file.path") String storeFilePath
+            @Named("store.file.path") String storeFilePath,
+            ScheduledExecutorService executorService,
+            MetricRegistry metricRegistry
     ) throws IOException, NoSuchAlgorithmException {
 
         this.claimValidator = claimValidator;
+
+        File storeFile = new File(storeFilePath);
+        File formatFile = new File(storeFilePath + FORMAT_FILE_SUFFIX);
+        File legacyFile = new File(storeFilePath + LEGACY_FILE_SUFFIX);
+        boolean isMigrationRequired = !formatFile.exists() && (storeFile.exists() || legacyFile.exists());
+
+        if (isMigrationRequired) {
+            if (legacyFile.exists()) {
+                // a previous migration was interrupted - the store file is incomplete, restart from the legacy file
+                Files.deleteIfExists(storeFile.toPath());
+            } else {
+                Files.move(storeFile.toPath(), legacyFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
         this.topicClaimMap = ChronicleMap
                 .of(String.class, Claim.class)
                 .name("smoker-topic-claims-map")
                 .averageKey(getRandomAverageTopicName())
-                .averageValue(new Claim())
+                .averageValue(getAverageClaim())
+                .valueMarshallers(ClaimBytesMarshaller.INSTANCE, ClaimBytesMarshaller.INSTANCE)
                 .entries(expectedMaxEntries)
-                .createOrRecoverPersistedTo(new File(storeFilePath));
+                .createOrRecoverPersistedTo(storeFile);
+
+        if (isMigrationRequired) {
+            migrateLegacyStore(legacyFile, expectedMaxEntries);
+        }
+        if (!formatFile.exists()) {
+            Files.writeString(formatFile.toPath(), STORAGE_FORMAT);
+        }
+
+        // the map is sized by the expected entries, it runs out of space once it can't resize anymore
+        metricRegistry.gauge(SmokerMetrics.name("store", "chronicle", "off-heap-memory-used"), () -> (Gauge<Long>) topicClaimMap::offHeapMemoryUsed);
+        metricRegistry.gauge(SmokerMetrics.name("store", "chronicle", "free-space-percentage"), () -> (Gauge<Short>) topicClaimMap::percentageFreeSpace);
+        metricRegistry.gauge(SmokerMetrics.name("store", "chronicle", "remaining-auto-resizes"), () -> (Gauge<Integer>) topicClaimMap::remainingAutoResizes);
+
+        // the map itself is usable right away, the lookups depending on the indexes scan it until they are rebuilt
+        this.indexReady = CompletableFuture.runAsync(this::rebuildIndex, executorService);
     }
 
     @Override
     public void upsert(Claim claim) throws InvalidClaimException {
         claimValidator.validateClaim(claim);
-        topicClaimMap.put(claim.getRestriction().getTopicName(), claim);
+        upsertValidated(claim);
+    }
+
+    @Override
+    public void upsertValidated(Claim claim) {
+        // writes are serialized to keep the map and its indexes consistent
+        synchronized (claimIndex) {
+            Claim existingClaim = topicClaimMap.put(claim.getRestriction().getTopicName(), claim);
+            if (existingClaim != null) {
+                claimIndex.remove(existingClaim);
+            }
+            claimIndex.add(claim);
+        }
     }
 
     @Override
     public void delete(String owner, String topicName) {
-        topicClaimMap.remove(topicName);
+        synchronized (claimIndex) {
+            Claim existingClaim = topicClaimMap.get(topicName);
+
+            // only the owner is allowed to delete its claim
+            if (existingClaim == null || !existingClaim.getRestriction().getOwner().equals(owner)) {
+                return;
+            }
+
+            topicClaimMap.remove(topicName);
+            claimIndex.remove(existingClaim);
+        }
+    }
+
+    @Override
+    public Optional<Claim> findByTopic(String topicName) {
+        return Optional.ofNullable(topicClaimMap.get(topicName));
+    }
+
+    @Override
+    public Collection<Claim> findByTopicFilter(String topicFilter) {
+        if (!isIndexReady()) {
+            return find(c -> TopicHelper.MatchesTopicFilter(topicFilter, c.getRestriction().getTopicName()));
+        }
+        return claimIndex.findTopicsByTopicFilter(topicFilter).stream().map(topicClaimMap::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Claim> findByClient(String clientId) {
+        if (!isIndexReady()) {
+            return find(c -> ClaimIndex.affectsClient(c, clientId));
+        }
+        return claimIndex.findTopicsOfClient(clientId).stream()
+                .map(topicClaimMap::get)
+                .filter(c -> c != null && ClaimIndex.affectsClient(c, clientId))
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -62,6 +181,94 @@ public class ChronicleMapDiskClaimStore implements IClaimStore {
         return  topicClaimMap.values().stream().collect(Collectors.toList());
     }
 
+    @Override
+    public long count() {
+        return topicClaimMap.longSize();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return indexReady;
+    }
+
+    @Override
+    public void close() {
+        topicClaimMap.close();
+    }
+
+    /**
+     * The lookups depending on the indexes scan the map while the indexes are rebuilt, they never wait for the rebuild
+     * as they may be called on the network threads
+     */
+    private boolean isIndexReady() {
+        return indexReady.isDone() && !indexReady.isCompletedExceptionally();
+    }
+
+    /**
+     * Adds all persisted claims to the indexes. Runs concurrently to writes: every topic is re-read under the write
+     * lock and skipped if a write has indexed it in the meantime.
+     */
+    private void rebuildIndex() {
+        long start = System.nanoTime();
+        for (String topic : topicClaimMap.keySet()) {
+            synchronized (claimIndex) {
+                Claim claim = topicClaimMap.get(topic);
+                if (claim != null && !claimIndex.contains(topic)) {
+                    claimIndex.add(claim);
+                }
+            }
+        }
+        log.info("Indexed {} claims in {} ms", topicClaimMap.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Copies all claims of a store file written with java serialization into the binary store
+     */
+    private void migrateLegacyStore(File legacyFile, long expectedMaxEntries) throws IOException, NoSuchAlgorithmException {
+        log.info("Migrating claim store:={} from java serialization to the binary format", legacyFile);
+
+        try (ChronicleMap<String, Claim> legacyClaimMap = createLegacyMapBuilder(expectedMaxEntries).createOrRecoverPersistedTo(legacyFile)) {
+            legacyClaimMap.forEach(topicClaimMap::put);
+            log.info("Migrated {} claims, the legacy store file:={} can be removed", legacyClaimMap.size(), legacyFile);
+        }
+    }
+
+    /**
+     * The configuration of the store before the binary format was introduced
+     */
+    private ChronicleMapBuilder<String, Claim> createLegacyMapBuilder(long expectedMaxEntries) throws NoSuchAlgorithmException {
+        return ChronicleMap
+                .of(String.class, Claim.class)
+                .name("smoker-topic-claims-map")
+                .averageKey(getRandomAverageTopicName())
+                .averageValue(new Claim())
+                .entries(expectedMaxEntries);
+    }
+
+    /**
+     * Generates a claim with a guessed average amount of permissions, used to size the entries of the map
+     */
+    private Claim getAverageClaim() throws NoSuchAlgorithmException {
+        byte[] signature = new byte[64];
+        new Random().nextBytes(signature);
+
+        Restriction restriction = new Restriction();
+        restriction.setTopicName(getRandomAverageTopicName());
+        restriction.setRestrictionType(RestrictionType.WHITELIST);
+        for (int i = 0; i < 2; i++) {
+            // client ids are Base32 encoded public keys
+            Permission permission = new Permission();
+            permission.setClientId("A".repeat(56));
+            permission.setActivity(TopicPermission.MqttActivity.ALL);
+            restriction.addPermission(permission);
+        }
+
+        Claim claim = new Claim();
+        claim.setSignature(Base64.getEncoder().encodeToString(signature));
+        claim.setRestriction(restriction);
+        return claim;
+    }
+
     /**
      * Generates a random topic with  guessed average topic size
      */
@@ -0,0 +1,243 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.Restriction;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+
+/**
+ * Compact binary layout of a {@link Claim}, shared by the stores persisting claims. The layout is written to and read
+ * from an {@link Output} and {@link Input}, so every store can adapt it to its own buffers.
+ *
+ * <p>
+ * Layout of version 1 (lengths and counts are stop bit encoded):
+ * <pre>
+ * format version        : byte
+ * topic name            : length + UTF-8 bytes
+ * signature encoding    : byte (raw or text)
+ * signature             : length + raw bytes if the Base64 signature is canonical, length + UTF-8 bytes otherwise
+ * restriction type      : byte (ordinal, -1 if absent)
+ * permission count      : stop bit
+ * per permission        : clientId length + UTF-8 bytes, activity byte (ordinal, -1 if absent)
+ * </pre>
+ * The signature is only stored raw if re-encoding it yields exactly the same Base64 string. Claims therefore always
+ * read back equal to the written claim.
+ * </p>
+ */
+final class ClaimBinaryFormat {
+
+    static final byte FORMAT_VERSION = 1;
+
+    private static final byte SIGNATURE_RAW = 0;
+
+    private static final byte SIGNATURE_TEXT = 1;
+
+    private static final byte ABSENT_ORDINAL = -1;
+
+    private static final RestrictionType[] RESTRICTION_TYPES = RestrictionType.values();
+
+    private static final TopicPermission.MqttActivity[] ACTIVITIES = TopicPermission.MqttActivity.values();
+
+    private ClaimBinaryFormat() {
+    }
+
+    static void write(Output out, Claim claim) {
+        Restriction restriction = claim.getRestriction();
+
+        out.writeByte(FORMAT_VERSION);
+        writeString(out, restriction.getTopicName());
+        writeSignature(out, claim.getSignature());
+        out.writeByte(ordinalOf(restriction.getRestrictionType()));
+
+        Collection<Permission> permissions = restriction.getPermissions();
+        out.writeStopBit(permissions.size());
+        for (Permission permission : permissions) {
+            writeString(out, permission.getClientId());
+            out.writeByte(ordinalOf(permission.getActivity()));
+        }
+    }
+
+    /**
+     * @param using a claim to read into, a new claim is created if null
+     */
+    static Claim read(Input in, Claim using) {
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported claim format version:=" + version);
+        }
+
+        Claim claim = using != null ? using : new Claim();
+        Restriction restriction = claim.getRestriction() != null ? claim.getRestriction() : new Restriction();
+
+        restriction.setTopicName(readString(in));
+        claim.setSignature(readSignature(in));
+        byte restrictionType = in.readByte();
+        restriction.setRestrictionType(restrictionType == ABSENT_ORDINAL ? null : RESTRICTION_TYPES[restrictionType]);
+
+        int permissionCount = (int) in.readStopBit();
+        Collection<Permission> permissions = new ArrayList<>(permissionCount);
+        for (int i = 0; i < permissionCount; i++) {
+            Permission permission = new Permission();
+            permission.setClientId(readString(in));
+            byte activity = in.readByte();
+            permission.setActivity(activity == ABSENT_ORDINAL ? null : ACTIVITIES[activity]);
+            permissions.add(permission);
+        }
+        restriction.setPermissions(permissions);
+
+        claim.setRestriction(restriction);
+        return claim;
+    }
+
+    static void writeString(Output out, String value) {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(Input in) {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeSignature(Output out, String signature) {
+        byte[] rawSignature = decodeCanonicalBase64(signature);
+        if (rawSignature != null) {
+            out.writeByte(SIGNATURE_RAW);
+            writeBytes(out, rawSignature);
+        } else {
+            out.writeByte(SIGNATURE_TEXT);
+            writeString(out, signature);
+        }
+    }
+
+    private static String readSignature(Input in) {
+        byte encoding = in.readByte();
+        switch (encoding) {
+            case SIGNATURE_RAW:
+                return Base64.getEncoder().encodeToString(readBytes(in));
+            case SIGNATURE_TEXT:
+                return readString(in);
+            default:
+                throw new IllegalStateException("Unsupported signature encoding:=" + encoding);
+        }
+    }
+
+    /**
+     * @return the decoded signature or null if the signature would not be restored exactly from its raw bytes
+     */
+    private static byte[] decodeCanonicalBase64(String signature) {
+        try {
+            byte[] rawSignature = Base64.getDecoder().decode(signature);
+            return Base64.getEncoder().encodeToString(rawSignature).equals(signature) ? rawSignature : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeBytes(Output out, byte[] value) {
+        out.writeStopBit(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(Input in) {
+        byte[] value = new byte[(int) in.readStopBit()];
+        in.read(value);
+        return value;
+    }
+
+    private static byte ordinalOf(Enum<?> value) {
+        return value == null ? ABSENT_ORDINAL : (byte) value.ordinal();
+    }
+
+    /**
+     * Target of the binary layout
+     */
+    interface Output {
+        void writeByte(byte value);
+
+        void writeStopBit(long value);
+
+        void write(byte[] value);
+    }
+
+    /**
+     * Source of the binary layout
+     */
+    interface Input {
+        byte readByte();
+
+        long readStopBit();
+
+        void read(byte[] value);
+    }
+
+    /**
+     * Writes into a growing byte array, stop bits are encoded in groups of seven bits, least significant group first
+     */
+    static final class ByteArrayOutput implements Output {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+        @Override
+        public void writeByte(byte value) {
+            out.write(value);
+        }
+
+        @Override
+        public void writeStopBit(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        @Override
+        public void write(byte[] value) {
+            out.write(value, 0, value.length);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Reads from a {@link ByteBuffer} written by {@link ByteArrayOutput}
+     */
+    static final class ByteBufferInput implements Input {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public byte readByte() {
+            return buffer.get();
+        }
+
+        @Override
+        public long readStopBit() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        @Override
+        public void read(byte[] value) {
+            buffer.get(value);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.util.ReadResolvable;
+import net.openhft.chronicle.hash.serialization.BytesReader;
+import net.openhft.chronicle.hash.serialization.BytesWriter;
+
+/**
+ * Compact binary encoding of {@link Claim} values for the {@link ChronicleMapDiskClaimStore}. Replaces the java
+ * serialization of the domain classes which writes class descriptors with every value. The layout is described by
+ * {@link ClaimBinaryFormat}.
+ */
+public final class ClaimBytesMarshaller implements BytesReader<Claim>, BytesWriter<Claim>, ReadResolvable<ClaimBytesMarshaller> {
+
+    public static final ClaimBytesMarshaller INSTANCE = new ClaimBytesMarshaller();
+
+    static final byte FORMAT_VERSION = ClaimBinaryFormat.FORMAT_VERSION;
+
+    @Override
+    public void write(Bytes out, Claim toWrite) {
+        ClaimBinaryFormat.write(new BytesAdapter(out), toWrite);
+    }
+
+    @Override
+    public Claim read(Bytes in, Claim using) {
+        return ClaimBinaryFormat.read(new BytesAdapter(in), using);
+    }
+
+    @Override
+    public ClaimBytesMarshaller readResolve() {
+        return INSTANCE;
+    }
+
+    private static final class BytesAdapter implements ClaimBinaryFormat.Output, ClaimBinaryFormat.Input {
+        private final Bytes bytes;
+
+        private BytesAdapter(Bytes bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void writeByte(byte value) {
+            bytes.writeByte(value);
+        }
+
+        @Override
+        public void writeStopBit(long value) {
+            bytes.writeStopBit(value);
+        }
+
+        @Override
+        public void write(byte[] value) {
+            bytes.write(value);
+        }
+
+        @Override
+        public byte readByte() {
+            return bytes.readByte();
+        }
+
+        @Override
+        public long readStopBit() {
+            return bytes.readStopBit();
+        }
+
+        @Override
+        public void read(byte[] value) {
+            bytes.read(value);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
+import ch.microfast.hivemq.smoker.authz.common.TopicTrie;
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indexes over the claimed topics of a {@link IClaimStore}:
+ * <ul>
+ *     <li>a {@link TopicTrie} to resolve topic filters</li>
+ *     <li>owner to claimed topics</li>
+ *     <li>grantee clientId to claimed topics</li>
+ *     <li>the claimed topics which grant permissions to any client</li>
+ * </ul>
+ * The index only holds topic names, the claims are resolved by the store. Writes of the same topic must be serialized
+ * by the store together with the write to its primary storage. Writes of different topics as well as reads can run
+ * concurrently.
+ */
+class ClaimIndex {
+
+    private final TopicTrie topicTrie = new TopicTrie();
+
+    private final Map<String, Set<String>> topicsByOwner = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> topicsByGrantee = new ConcurrentHashMap<>();
+
+    private final Set<String> topicsGrantedToAnyClient = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Adds a claim to the index. A previous claim of the same topic must be removed before.
+     */
+    void add(Claim claim) {
+        String topic = claim.getRestriction().getTopicName();
+
+        topicTrie.add(topic);
+        addToIndex(topicsByOwner, claim.getRestriction().getOwner(), topic);
+        for (Permission permission : claim.getRestriction().getPermissions()) {
+            if (AuthorizationConsts.ANY_CLIENT_IDENTIFIER.equals(permission.getClientId())) {
+                topicsGrantedToAnyClient.add(topic);
+            } else {
+                addToIndex(topicsByGrantee, permission.getClientId(), topic);
+            }
+        }
+    }
+
+    /**
+     * Removes a claim from the index
+     */
+    void remove(Claim claim) {
+        String topic = claim.getRestriction().getTopicName();
+
+        topicTrie.remove(topic);
+        removeFromIndex(topicsByOwner, claim.getRestriction().getOwner(), topic);
+        topicsGrantedToAnyClient.remove(topic);
+        for (Permission permission : claim.getRestriction().getPermissions()) {
+            removeFromIndex(topicsByGrantee, permission.getClientId(), topic);
+        }
+    }
+
+    /**
+     * @return true if a claim of the topic was added
+     */
+    boolean contains(String topic) {
+        return topicTrie.contains(topic);
+    }
+
+    /**
+     * @return the claimed topics matching the given topic filter
+     */
+    Collection<String> findTopicsByTopicFilter(String topicFilter) {
+        return topicTrie.match(topicFilter);
+    }
+
+    /**
+     * @return the claimed topics which are owned by the client, grant permissions to the client or grant permissions to any client
+     */
+    Collection<String> findTopicsOfClient(String clientId) {
+        Set<String> topics = new HashSet<>(topicsGrantedToAnyClient);
+        topics.addAll(topicsByOwner.getOrDefault(clientId, Collections.emptySet()));
+        topics.addAll(topicsByGrantee.getOrDefault(clientId, Collections.emptySet()));
+        return topics;
+    }
+
+    /**
+     * Checks if the claim is owned by the client, grants permissions to the client or grants permissions to any client.
+     * Used by stores to filter out claims which changed between the index lookup and the read of the claim.
+     */
+    static boolean affectsClient(Claim claim, String clientId) {
+        return claim.getRestriction().getOwner().equals(clientId)
+                || claim.getRestriction().getPermissions().stream().anyMatch(p -> p.getClientId().equals(clientId) || p.getClientId().equals(AuthorizationConsts.ANY_CLIENT_IDENTIFIER));
+    }
+
+    private static void addToIndex(Map<String, Set<String>> index, String key, String topic) {
+        index.compute(key, (k, topics) -> {
+            Set<String> result = topics != null ? topics : ConcurrentHashMap.newKeySet();
+            result.add(topic);
+            return result;
+        });
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String topic) {
+        index.computeIfPresent(key, (k, topics) -> {
+            topics.remove(topic);
+            return topics.isEmpty() ? null : topics;
+        });
+    }
+}
@@ -3,23 +3,95 @@ package ch.microfast.hivemq.smoker.authz.persistance;
 import ch.microfast.hivemq.smoker.authz.domain.Claim;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
 
+import java.io.Closeable;
 import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 /**
  * Implementations can hold a set {@link Claim}s. Implementations should also make sure that claims are validated
- * properly when reading as well as writing as this is a source of truth for services.
+ * properly when reading as well as writing as this is a source of truth for services. Only claims which were already
+ * validated by the caller are written without validation, see {@link #upsertValidated(Claim)}.
  *
  * Productive implementation should be able to proceed reads very efficient (caching).
  */
-public interface IClaimStore {
+public interface IClaimStore extends Closeable {
 
     void upsert(Claim claim) throws InvalidClaimException;
 
+    /**
+     * Same as {@link #upsert(Claim)} for a claim the caller has already validated, e.g. in a batch of the
+     * {@link ch.microfast.hivemq.smoker.authz.validation.BatchingClaimValidator}. The claim is not validated again,
+     * so its signature is verified only once on its way to the store.
+     *
+     * @param claim the validated claim
+     */
+    void upsertValidated(Claim claim);
+
     void delete(String owner, String topicName);
 
+    /**
+     * Looks up the claim for the given topic. As a topic can only be claimed once, implementations must serve this
+     * lookup by key and not by scanning the store.
+     *
+     * @param topicName the claimed topic name
+     * @return the claim of the topic or empty if the topic is not claimed
+     */
+    Optional<Claim> findByTopic(String topicName);
+
+    /**
+     * Looks up all claims whose topic is matched by the given MQTT topic filter. Implementations must serve this
+     * lookup with an index so that the cost depends on the covered topics and not on the size of the store.
+     *
+     * @param topicFilter the topic filter which may contain '+' and '#' wildcards
+     * @return all claims of topics matching the filter
+     */
+    Collection<Claim> findByTopicFilter(String topicFilter);
+
+    /**
+     * Looks up all claims which affect the given client: claims owned by the client, claims granting permissions to
+     * the client and claims granting permissions to any client. Implementations must serve this lookup with secondary
+     * indexes so that the cost depends on the size of the result and not on the size of the store.
+     *
+     * @param clientId the client
+     * @return all claims affecting the client
+     */
+    Collection<Claim> findByClient(String clientId);
+
     Collection<Claim> find(Predicate<Claim> filterPredicate);
 
     Collection<Claim> getAll();
 
+    /**
+     * Counts the claims without reading them, used to report the size of the store
+     *
+     * @return the number of claims in the store
+     */
+    long count();
+
+    /**
+     * Stores may build their indexes in the background after startup. Lookups by topic and writes are served right
+     * away, lookups which depend on the indexes must not wait until they are built but fall back to scanning the store.
+     *
+     * @return a future which completes once all lookups are served from the indexes
+     */
+    default CompletableFuture<Void> whenReady() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Makes all writes returned so far durable. Stores which do not control the durability of their writes ignore
+     * this call.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Releases the resources of the store, called on extension stop
+     */
+    @Override
+    default void close() {
+    }
+
 }
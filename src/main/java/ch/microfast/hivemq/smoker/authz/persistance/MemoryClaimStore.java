@@ -7,18 +7,34 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * In-memory {@link IClaimStore} backed by a {@link ConcurrentHashMap}.
+ *
+ * <p>
+ * Claims are keyed by their topic name. The owner is the second segment of the topic name, so the topic name alone
+ * identifies the (owner, topicName) pair. Reads are lock free, writes are atomic per topic and iterations never fail
+ * with a {@link java.util.ConcurrentModificationException} while writes are in progress.
+ * </p>
+ */
 public class MemoryClaimStore implements IClaimStore {
 
     private static final Logger log = LoggerFactory.getLogger(MemoryClaimStore.class);
 
-    private final List<Claim> store = Collections.synchronizedList(new ArrayList<>());
+    private final ConcurrentMap<String, Claim> store = new ConcurrentHashMap<>();
+
+    /**
+     * Secondary indexes of the stored claims. They are updated within the atomic write of the claimed topic.
+     */
+    private final ClaimIndex claimIndex = new ClaimIndex();
 
     private final IClaimValidator claimValidator;
 
@@ -28,46 +44,69 @@ public class MemoryClaimStore implements IClaimStore {
     }
 
     @Override
-    public synchronized void upsert(Claim claim) throws InvalidClaimException {
+    public void upsert(Claim claim) throws InvalidClaimException {
         claimValidator.validateClaim(claim);
+        upsertValidated(claim);
+    }
 
-        log.debug("Upserting claim:=" + claim.toString());
-        String owner = claim.getRestriction().getOwner();
-        String topic = claim.getRestriction().getTopicName();
+    @Override
+    public void upsertValidated(Claim claim) {
+        log.debug("Upserting claim:={}", claim);
+        store.compute(claim.getRestriction().getTopicName(), (topic, existingClaim) -> {
+            if (existingClaim != null) {
+                log.debug("Existing claim found which will be overridden. existingClaim:={}", existingClaim);
+                claimIndex.remove(existingClaim);
+            }
+
+            claimIndex.add(claim);
+            return claim;
+        });
+    }
 
-        // try to find existing claim to delete
-        Claim existingClaim = store.stream()
-                .filter(f -> f.getRestriction().getOwner().equals(owner) && f.getRestriction().getTopicName().equals(topic))
-                .findFirst()
-                .orElse(null);
+    @Override
+    public void delete(String owner, String topicName) {
+        log.debug("Deleting claim by owner:={} and topicName:={}", owner, topicName);
+        store.computeIfPresent(topicName, (topic, existingClaim) -> {
+            // only the owner is allowed to delete its claim
+            if (!existingClaim.getRestriction().getOwner().equals(owner)) {
+                return existingClaim;
+            }
+
+            claimIndex.remove(existingClaim);
+            return null;
+        });
+    }
 
-        if (existingClaim != null) {
-            log.debug("Existing claim found which will be overridden. existingClaim:=" + existingClaim);
-            store.remove(existingClaim);
-        }
+    @Override
+    public Optional<Claim> findByTopic(String topicName) {
+        return Optional.ofNullable(store.get(topicName));
+    }
 
-        store.add(claim);
+    @Override
+    public Collection<Claim> findByTopicFilter(String topicFilter) {
+        return claimIndex.findTopicsByTopicFilter(topicFilter).stream().map(store::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
-    public synchronized void delete(String owner, String topicName) {
-        log.debug("Deleting claim by owner:=" + owner + " and topicName:=" + topicName);
-        // try to find existing claim to delete
-        Claim existingClaim = store.stream()
-                .filter(f -> f.getRestriction().getOwner().equals(owner) && f.getRestriction().getTopicName().equals(topicName))
-                .findFirst()
-                .orElse(null);
-
-        store.remove(existingClaim);
+    public Collection<Claim> findByClient(String clientId) {
+        return claimIndex.findTopicsOfClient(clientId).stream()
+                .map(store::get)
+                .filter(c -> c != null && ClaimIndex.affectsClient(c, clientId))
+                .collect(Collectors.toList());
     }
 
     @Override
     public Collection<Claim> find(Predicate<Claim> filterPredicate) {
-        return store.stream().filter(filterPredicate).collect(Collectors.toList());
+        return store.values().stream().filter(filterPredicate).collect(Collectors.toList());
     }
 
     @Override
     public Collection<Claim> getAll() {
-        return Collections.unmodifiableList(store);
+        return List.copyOf(store.values());
+    }
+
+    @Override
+    public long count() {
+        return store.size();
     }
 }
@@ -0,0 +1,143 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Times the operations of another {@link IClaimStore} and reports its number of claims. Bound in front of the configured
+ * store, including its write-behind queue and cache, so the timers show the latency the callers see. Full scans are
+ * not timed.
+ */
+public class MeteredClaimStore implements IClaimStore {
+
+    /**
+     * Name of the binding of the metered store
+     */
+    public static final String METERED_STORE = "store.metered";
+
+    private final IClaimStore claimStore;
+
+    private final Timer upsertTimer;
+
+    private final Timer deleteTimer;
+
+    private final Timer findByTopicTimer;
+
+    private final Timer findByTopicFilterTimer;
+
+    private final Timer findByClientTimer;
+
+    @Inject
+    public MeteredClaimStore(@Named(METERED_STORE) IClaimStore claimStore, MetricRegistry metricRegistry) {
+        this.claimStore = claimStore;
+        this.upsertTimer = metricRegistry.timer(SmokerMetrics.name("store", "upsert"));
+        this.deleteTimer = metricRegistry.timer(SmokerMetrics.name("store", "delete"));
+        this.findByTopicTimer = metricRegistry.timer(SmokerMetrics.name("store", "find-by-topic"));
+        this.findByTopicFilterTimer = metricRegistry.timer(SmokerMetrics.name("store", "find-by-topic-filter"));
+        this.findByClientTimer = metricRegistry.timer(SmokerMetrics.name("store", "find-by-client"));
+
+        metricRegistry.gauge(SmokerMetrics.name("store", "claims"), () -> (Gauge<Long>) claimStore::count);
+    }
+
+    @Override
+    public void upsert(Claim claim) throws InvalidClaimException {
+        long start = System.nanoTime();
+        try {
+            claimStore.upsert(claim);
+        } finally {
+            upsertTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void upsertValidated(Claim claim) {
+        long start = System.nanoTime();
+        try {
+            claimStore.upsertValidated(claim);
+        } finally {
+            upsertTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void delete(String owner, String topicName) {
+        long start = System.nanoTime();
+        try {
+            claimStore.delete(owner, topicName);
+        } finally {
+            deleteTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Optional<Claim> findByTopic(String topicName) {
+        long start = System.nanoTime();
+        try {
+            return claimStore.findByTopic(topicName);
+        } finally {
+            findByTopicTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Collection<Claim> findByTopicFilter(String topicFilter) {
+        long start = System.nanoTime();
+        try {
+            return claimStore.findByTopicFilter(topicFilter);
+        } finally {
+            findByTopicFilterTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Collection<Claim> findByClient(String clientId) {
+        long start = System.nanoTime();
+        try {
+            return claimStore.findByClient(clientId);
+        } finally {
+            findByClientTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Collection<Claim> find(Predicate<Claim> filterPredicate) {
+        return claimStore.find(filterPredicate);
+    }
+
+    @Override
+    public Collection<Claim> getAll() {
+        return claimStore.getAll();
+    }
+
+    @Override
+    public long count() {
+        return claimStore.count();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return claimStore.whenReady();
+    }
+
+    @Override
+    public void flush() {
+        claimStore.flush();
+    }
+
+    @Override
+    public void close() {
+        claimStore.close();
+    }
+}
@@ -0,0 +1,689 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * {@link IClaimStore} with an append only write path. All claims are held in a concurrent map, every upsert and delete
+ * is appended as a record to a memory mapped log segment before it is applied to the map.
+ *
+ * <p>
+ * The log is compacted into a snapshot of all claims once it has grown by the configured threshold. The snapshot is
+ * written while writes continue: the log is rolled to a new segment first and recovery replays every record after the
+ * snapshot sequence. As records hold the full state of a topic, replaying a record the snapshot already contains is
+ * harmless. Recovery therefore reads one snapshot plus at most the records written since the last compaction.
+ * </p>
+ *
+ * <p>
+ * The {@link FsyncPolicy} decides when a write is durable. A write is visible to readers as soon as it is logged, with
+ * {@link FsyncPolicy#ALWAYS} and {@link FsyncPolicy#GROUP} the writing thread returns once the record is durable.
+ * </p>
+ *
+ * <p>
+ * Record layout: payload length (int), CRC32 of sequence, type and payload (int), sequence (long), type (byte), payload.
+ * A record with length zero marks the end of a segment.
+ * </p>
+ */
+public class WalClaimStore implements IClaimStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WalClaimStore.class);
+
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+    private static final String SEGMENT_FILE_SUFFIX = ".wal";
+
+    private static final String SNAPSHOT_FILE_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snap";
+
+    private static final int SNAPSHOT_MAGIC = 0x534D4B53;
+
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 1;
+
+    private static final byte RECORD_UPSERT = 1;
+
+    private static final byte RECORD_DELETE = 2;
+
+    /**
+     * When a write is forced to disk
+     */
+    public enum FsyncPolicy {
+        /**
+         * Every write forces the log before it returns
+         */
+        ALWAYS,
+        /**
+         * Concurrent writes share a force of the log before they return
+         */
+        GROUP,
+        /**
+         * The log is forced periodically, writes return right after they are logged
+         */
+        INTERVAL
+    }
+
+    private final IClaimValidator claimValidator;
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    private final long compactionThreshold;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final ScheduledExecutorService executorService;
+
+    private final ConcurrentMap<String, Claim> store = new ConcurrentHashMap<>();
+
+    private final ClaimIndex claimIndex = new ClaimIndex();
+
+    /**
+     * Serializes appends to the log together with their application to the map and the indexes
+     */
+    private final Object appendLock = new Object();
+
+    private Segment currentSegment;
+
+    private long lastSequence;
+
+    private long bytesSinceSnapshot;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    /**
+     * The compaction running on the executor, awaited on close
+     */
+    private volatile Future<?> compactionTask;
+
+    private volatile boolean closed;
+
+    private final Object flushLock = new Object();
+
+    private long durableSequence;
+
+    private boolean flushing;
+
+    private final ScheduledFuture<?> flushTask;
+
+    @Inject
+    public WalClaimStore(
+            IClaimValidator claimValidator,
+            @Named("store.wal.dir") String directory,
+            @Named("store.wal.segment.size.bytes") long segmentSize,
+            @Named("store.wal.compaction.threshold.bytes") long compactionThreshold,
+            @Named("store.wal.fsync.policy") FsyncPolicy fsyncPolicy,
+            @Named("store.wal.fsync.interval.ms") long fsyncIntervalMs,
+            ScheduledExecutorService executorService
+    ) throws IOException {
+        this.claimValidator = claimValidator;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.fsyncPolicy = fsyncPolicy;
+        this.executorService = executorService;
+
+        Files.createDirectories(this.directory);
+        recover();
+
+        this.flushTask = fsyncPolicy == FsyncPolicy.INTERVAL
+                ? executorService.scheduleWithFixedDelay(this::flushSafely, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    @Override
+    public void upsert(Claim claim) throws InvalidClaimException {
+        claimValidator.validateClaim(claim);
+        upsertValidated(claim);
+    }
+
+    @Override
+    public void upsertValidated(Claim claim) {
+        ClaimBinaryFormat.ByteArrayOutput payload = new ClaimBinaryFormat.ByteArrayOutput();
+        ClaimBinaryFormat.write(payload, claim);
+
+        long sequence;
+        synchronized (appendLock) {
+            sequence = append(RECORD_UPSERT, payload.toByteArray());
+            applyUpsert(claim);
+        }
+        onAppended(sequence);
+    }
+
+    @Override
+    public void delete(String owner, String topicName) {
+        ClaimBinaryFormat.ByteArrayOutput payload = new ClaimBinaryFormat.ByteArrayOutput();
+        ClaimBinaryFormat.writeString(payload, owner);
+        ClaimBinaryFormat.writeString(payload, topicName);
+
+        long sequence;
+        synchronized (appendLock) {
+            Claim existingClaim = store.get(topicName);
+
+            // only the owner is allowed to delete its claim
+            if (existingClaim == null || !existingClaim.getRestriction().getOwner().equals(owner)) {
+                return;
+            }
+
+            sequence = append(RECORD_DELETE, payload.toByteArray());
+            applyDelete(owner, topicName);
+        }
+        onAppended(sequence);
+    }
+
+    @Override
+    public Optional<Claim> findByTopic(String topicName) {
+        return Optional.ofNullable(store.get(topicName));
+    }
+
+    @Override
+    public Collection<Claim> findByTopicFilter(String topicFilter) {
+        return claimIndex.findTopicsByTopicFilter(topicFilter).stream().map(store::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Claim> findByClient(String clientId) {
+        return claimIndex.findTopicsOfClient(clientId).stream()
+                .map(store::get)
+                .filter(c -> c != null && ClaimIndex.affectsClient(c, clientId))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Claim> find(Predicate<Claim> filterPredicate) {
+        return store.values().stream().filter(filterPredicate).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Claim> getAll() {
+        return List.copyOf(store.values());
+    }
+
+    @Override
+    public long count() {
+        return store.size();
+    }
+
+    /**
+     * Writes a snapshot of all claims and removes the log segments and snapshots it replaces
+     */
+    public void compact() throws IOException {
+        long snapshotSequence;
+        long firstRetainedSegment;
+        synchronized (appendLock) {
+            snapshotSequence = lastSequence;
+            rollSegment();
+            firstRetainedSegment = currentSegment.firstSequence;
+            bytesSinceSnapshot = 0;
+        }
+
+        long start = System.nanoTime();
+        Path snapshotFile = directory.resolve(fileName(SNAPSHOT_FILE_PREFIX, snapshotSequence, SNAPSHOT_FILE_SUFFIX));
+        Path tempFile = directory.resolve(snapshotFile.getFileName() + ".tmp");
+        int claimCount = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(snapshotSequence);
+            for (Claim claim : store.values()) {
+                ClaimBinaryFormat.ByteArrayOutput payload = new ClaimBinaryFormat.ByteArrayOutput();
+                ClaimBinaryFormat.write(payload, claim);
+                byte[] bytes = payload.toByteArray();
+                out.writeInt(bytes.length);
+                out.writeInt(crc(snapshotSequence, RECORD_UPSERT, bytes));
+                out.write(bytes);
+                claimCount++;
+            }
+            // end marker
+            out.writeInt(0);
+        }
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path segmentFile : listFiles(SEGMENT_FILE_PREFIX, SEGMENT_FILE_SUFFIX)) {
+            if (sequenceOf(segmentFile, SEGMENT_FILE_PREFIX, SEGMENT_FILE_SUFFIX) < firstRetainedSegment) {
+                Files.deleteIfExists(segmentFile);
+            }
+        }
+        for (Path otherSnapshotFile : listFiles(SNAPSHOT_FILE_PREFIX, SNAPSHOT_FILE_SUFFIX)) {
+            if (!otherSnapshotFile.equals(snapshotFile)) {
+                Files.deleteIfExists(otherSnapshotFile);
+            }
+        }
+        log.info("Compacted claim log into snapshot:={} with {} claims in {} ms", snapshotFile, claimCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Forces all records appended so far, regardless of the {@link FsyncPolicy}
+     */
+    @Override
+    public void flush() {
+        long sequence;
+        synchronized (appendLock) {
+            sequence = lastSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Waits for a running compaction, forces the log, stops the periodic forces and unmaps the current segment
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+
+        Future<?> runningCompaction = compactionTask;
+        if (runningCompaction != null) {
+            try {
+                runningCompaction.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.error("Claim log compaction failed", e.getCause());
+            }
+        }
+
+        synchronized (appendLock) {
+            currentSegment.force();
+            currentSegment.close();
+        }
+    }
+
+    private void applyUpsert(Claim claim) {
+        Claim existingClaim = store.put(claim.getRestriction().getTopicName(), claim);
+        if (existingClaim != null) {
+            claimIndex.remove(existingClaim);
+        }
+        claimIndex.add(claim);
+    }
+
+    private void applyDelete(String owner, String topicName) {
+        Claim existingClaim = store.get(topicName);
+        if (existingClaim != null && existingClaim.getRestriction().getOwner().equals(owner)) {
+            store.remove(topicName);
+            claimIndex.remove(existingClaim);
+        }
+    }
+
+    /**
+     * Appends a record to the current segment, a new segment is started if the record does not fit anymore.
+     * Must be called while holding the append lock.
+     *
+     * @return the sequence of the record
+     */
+    private long append(byte type, byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Claim store is closed");
+        }
+
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        // the record and an end marker must fit into a segment
+        if (recordSize + 4 > segmentSize) {
+            throw new IllegalArgumentException("Record of " + recordSize + " bytes exceeds the segment size of " + segmentSize + " bytes");
+        }
+
+        try {
+            if (currentSegment.buffer.remaining() < recordSize + 4) {
+                rollSegment();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll claim log segment", e);
+        }
+
+        long sequence = lastSequence + 1;
+        currentSegment.buffer
+                .putInt(payload.length)
+                .putInt(crc(sequence, type, payload))
+                .putLong(sequence)
+                .put(type)
+                .put(payload);
+
+        lastSequence = sequence;
+        bytesSinceSnapshot += recordSize;
+        return sequence;
+    }
+
+    /**
+     * Makes the record durable according to the fsync policy and triggers a compaction if the log has grown enough
+     */
+    private void onAppended(long sequence) {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL) {
+            awaitDurable(sequence);
+        }
+
+        boolean isCompactionRequired;
+        synchronized (appendLock) {
+            isCompactionRequired = bytesSinceSnapshot >= compactionThreshold;
+        }
+        if (isCompactionRequired && !closed && compacting.compareAndSet(false, true)) {
+            compactionTask = executorService.submit(() -> {
+                try {
+                    compact();
+                } catch (Exception e) {
+                    log.error("Could not compact claim log", e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until the record is forced to disk. With {@link FsyncPolicy#GROUP} the first waiting writer forces the log
+     * for all records appended so far while the others wait for it, with {@link FsyncPolicy#ALWAYS} every writer forces.
+     */
+    private void awaitDurable(long sequence) {
+        while (true) {
+            synchronized (flushLock) {
+                while (fsyncPolicy == FsyncPolicy.GROUP && flushing && durableSequence < sequence) {
+                    try {
+                        flushLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for the claim log", e);
+                    }
+                }
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                flushing = true;
+            }
+
+            long flushedSequence = 0;
+            try {
+                flushedSequence = forceSegment();
+            } finally {
+                synchronized (flushLock) {
+                    flushing = false;
+                    durableSequence = Math.max(durableSequence, flushedSequence);
+                    flushLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces the current segment
+     *
+     * @return the sequence up to which the log is durable
+     */
+    private long forceSegment() {
+        Segment segment;
+        long sequence;
+        synchronized (appendLock) {
+            segment = currentSegment;
+            sequence = lastSequence;
+        }
+        segment.force();
+        return sequence;
+    }
+
+    private void flushSafely() {
+        try {
+            long sequence = forceSegment();
+            synchronized (flushLock) {
+                durableSequence = Math.max(durableSequence, sequence);
+            }
+        } catch (Exception e) {
+            log.error("Could not force claim log", e);
+        }
+    }
+
+    /**
+     * Forces and closes the current segment and starts a new one with the next sequence. A segment without any record
+     * is kept, its file already has the name of the next segment.
+     * Must be called while holding the append lock.
+     */
+    private void rollSegment() throws IOException {
+        if (currentSegment != null && currentSegment.firstSequence > lastSequence) {
+            return;
+        }
+
+        // the new segment is created first, the current one stays usable if that fails
+        Segment segment = Segment.create(directory.resolve(fileName(SEGMENT_FILE_PREFIX, lastSequence + 1, SEGMENT_FILE_SUFFIX)), lastSequence + 1, segmentSize);
+        if (currentSegment != null) {
+            currentSegment.force();
+            currentSegment.close();
+            synchronized (flushLock) {
+                durableSequence = Math.max(durableSequence, lastSequence);
+            }
+        }
+        currentSegment = segment;
+    }
+
+    /**
+     * Loads the latest snapshot and replays all records written after it. Writing continues in a new segment.
+     */
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        long snapshotSequence = 0;
+
+        List<Path> snapshotFiles = listFiles(SNAPSHOT_FILE_PREFIX, SNAPSHOT_FILE_SUFFIX);
+        if (!snapshotFiles.isEmpty()) {
+            Path snapshotFile = snapshotFiles.get(snapshotFiles.size() - 1);
+            snapshotSequence = readSnapshot(snapshotFile);
+        }
+        lastSequence = snapshotSequence;
+
+        int replayedRecords = 0;
+        for (Path segmentFile : listFiles(SEGMENT_FILE_PREFIX, SEGMENT_FILE_SUFFIX)) {
+            int segmentRecords = replaySegment(segmentFile, snapshotSequence);
+            if (segmentRecords == 0 && sequenceOf(segmentFile, SEGMENT_FILE_PREFIX, SEGMENT_FILE_SUFFIX) > lastSequence) {
+                // segment rolled without any record
+                Files.deleteIfExists(segmentFile);
+            }
+            replayedRecords += segmentRecords;
+        }
+
+        store.values().forEach(claimIndex::add);
+        durableSequence = lastSequence;
+        synchronized (appendLock) {
+            rollSegment();
+        }
+        log.info("Recovered {} claims from the claim log:={} ({} records replayed) in {} ms", store.size(), directory, replayedRecords, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return the sequence of the snapshot
+     */
+    private long readSnapshot(Path snapshotFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        if (buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a claim snapshot:=" + snapshotFile);
+        }
+
+        long sequence = buffer.getLong();
+        while (true) {
+            int length = buffer.getInt();
+            if (length == 0) {
+                return sequence;
+            }
+
+            int crc = buffer.getInt();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (crc != crc(sequence, RECORD_UPSERT, payload)) {
+                throw new IOException("Corrupt claim snapshot:=" + snapshotFile);
+            }
+            Claim claim = ClaimBinaryFormat.read(new ClaimBinaryFormat.ByteBufferInput(ByteBuffer.wrap(payload)), null);
+            store.put(claim.getRestriction().getTopicName(), claim);
+        }
+    }
+
+    /**
+     * Applies the records of a segment which are newer than the snapshot. Stops at the end marker or at the first torn
+     * or corrupt record, all records after it were never acknowledged.
+     *
+     * @return the amount of replayed records
+     */
+    private int replaySegment(Path segmentFile, long snapshotSequence) throws IOException {
+        int replayedRecords = 0;
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                if (length <= 0 || buffer.remaining() < length + RECORD_HEADER_SIZE - 4) {
+                    break;
+                }
+
+                int crc = buffer.getInt();
+                long sequence = buffer.getLong();
+                byte type = buffer.get();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                if (crc != crc(sequence, type, payload)) {
+                    log.warn("Claim log segment:={} ends with a corrupt record at sequence:={}", segmentFile, sequence);
+                    break;
+                }
+
+                if (sequence > snapshotSequence) {
+                    applyRecord(type, payload);
+                    replayedRecords++;
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+            }
+        }
+        return replayedRecords;
+    }
+
+    private void applyRecord(byte type, byte[] payload) {
+        ClaimBinaryFormat.ByteBufferInput in = new ClaimBinaryFormat.ByteBufferInput(ByteBuffer.wrap(payload));
+        switch (type) {
+            case RECORD_UPSERT:
+                Claim claim = ClaimBinaryFormat.read(in, null);
+                store.put(claim.getRestriction().getTopicName(), claim);
+                break;
+            case RECORD_DELETE:
+                String owner = ClaimBinaryFormat.readString(in);
+                String topicName = ClaimBinaryFormat.readString(in);
+                Claim existingClaim = store.get(topicName);
+                if (existingClaim != null && existingClaim.getRestriction().getOwner().equals(owner)) {
+                    store.remove(topicName);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown claim log record type:=" + type);
+        }
+    }
+
+    /**
+     * @return the files with the given prefix and suffix, ordered by their sequence
+     */
+    private List<Path> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> result = new ArrayList<>();
+            files.filter(f -> f.getFileName().toString().startsWith(prefix) && f.getFileName().toString().endsWith(suffix)).forEach(result::add);
+            result.sort((a, b) -> Long.compare(sequenceOf(a, prefix, suffix), sequenceOf(b, prefix, suffix)));
+            return result;
+        }
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String fileName = file.getFileName().toString();
+        return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - suffix.length()));
+    }
+
+    private static String fileName(String prefix, long sequence, String suffix) {
+        return String.format("%s%020d%s", prefix, sequence, suffix);
+    }
+
+    private static int crc(long sequence, byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(9).putLong(sequence).put(type).array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A memory mapped log segment of a fixed size. The mapping is released when the segment is closed, forces of a
+     * closed segment are skipped as the segment was forced before it was closed.
+     */
+    private static final class Segment {
+        private final long firstSequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private boolean closed;
+
+        private Segment(long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment create(Path file, long firstSequence, long size) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(firstSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        private synchronized void force() {
+            if (!closed) {
+                buffer.force();
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Could not close claim log segment", e);
+            }
+            unmap(buffer);
+        }
+
+        /**
+         * Releases the mapping right away instead of waiting for the garbage collector. The buffer must not be
+         * accessed anymore.
+         */
+        private static void unmap(MappedByteBuffer buffer) {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafeField.get(null), buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Could not unmap claim log segment, it is released by the garbage collector", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package ch.microfast.hivemq.smoker.authz.persistance;
+
+import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind stage in front of a durable {@link IClaimStore}. Accepted writes are visible to all lookups right away,
+ * they are queued and applied to the durable store in batches by a single writer thread. Every batch is followed by a
+ * single {@link IClaimStore#flush()} of the durable store (group commit).
+ *
+ * <p>
+ * The {@link Durability} decides when a write returns: right after it was queued or once its batch was flushed. In
+ * both cases concurrent writers share the flushes of the durable store. If the queue is full, writers block until the
+ * writer thread has made room.
+ * </p>
+ *
+ * <p>
+ * Writes which are not yet applied to the durable store are held in an overlay. Lookups are answered from the durable
+ * store and corrected by the overlay.
+ * </p>
+ *
+ * <p>
+ * The writes are applied one by one. A write the durable store fails to apply or flush is retried with a backoff and
+ * stays in the overlay until it is durable, the writes queued after it wait for it. Writes are only given up once the
+ * store is closing, their callers get the failure.
+ * </p>
+ */
+public class WriteBehindClaimStore implements IClaimStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindClaimStore.class);
+
+    /**
+     * Name of the binding of the durable store
+     */
+    public static final String DURABLE_STORE = "store.durable";
+
+    private static final long MIN_RETRY_BACKOFF_MILLIS = 10;
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 1000;
+
+    /**
+     * Attempts of a failing write once the store is closing
+     */
+    private static final int CLOSING_RETRY_ATTEMPTS = 3;
+
+    /**
+     * When a write returns to the caller
+     */
+    public enum Durability {
+        /**
+         * Once the write is queued. Writes which are not flushed yet are lost on a crash.
+         */
+        QUEUED,
+        /**
+         * Once the batch of the write is applied to and flushed by the durable store, including the retries of a
+         * failing durable store
+         */
+        FLUSHED
+    }
+
+    private final IClaimStore claimStore;
+
+    private final IClaimValidator claimValidator;
+
+    private final Durability durability;
+
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingWrite> queue;
+
+    /**
+     * The latest queued write of every topic which is not applied to the durable store yet
+     */
+    private final ConcurrentMap<String, PendingWrite> overlay = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes writes, so the order of the queue matches the order of the overlay
+     */
+    private final Object writeLock = new Object();
+
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    private volatile boolean closing;
+
+    private final Timer flushTimer;
+
+    private final Histogram batchSizes;
+
+    private final Meter failedAttempts;
+
+    @Inject
+    public WriteBehindClaimStore(
+            @Named(DURABLE_STORE) IClaimStore claimStore,
+            IClaimValidator claimValidator,
+            @Named("store.write.behind.durability") Durability durability,
+            @Named("store.write.behind.queue.capacity") int queueCapacity,
+            @Named("store.write.behind.batch.size") int maxBatchSize,
+            MetricRegistry metricRegistry
+    ) {
+        this.claimStore = claimStore;
+        this.claimValidator = claimValidator;
+        this.durability = durability;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.flushTimer = metricRegistry.timer(SmokerMetrics.name("store", "write-behind", "flush"));
+        this.batchSizes = metricRegistry.histogram(SmokerMetrics.name("store", "write-behind", "batch-size"));
+        this.failedAttempts = metricRegistry.meter(SmokerMetrics.name("store", "write-behind", "failed-attempts"));
+        metricRegistry.gauge(SmokerMetrics.name("store", "write-behind", "queue-depth"), () -> (Gauge<Integer>) queue::size);
+
+        this.writerThread = new Thread(this::writeBatches, "smoker-claim-write-behind");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void upsert(Claim claim) throws InvalidClaimException {
+        // validated up front, the caller must learn about an invalid claim
+        claimValidator.validateClaim(claim);
+        upsertValidated(claim);
+    }
+
+    @Override
+    public void upsertValidated(Claim claim) {
+        enqueue(new PendingWrite(claim.getRestriction().getTopicName(), claim, null));
+    }
+
+    @Override
+    public void delete(String owner, String topicName) {
+        PendingWrite write;
+        synchronized (writeLock) {
+            Optional<Claim> existingClaim = findByTopic(topicName);
+
+            // only the owner is allowed to delete its claim
+            if (existingClaim.isEmpty() || !existingClaim.get().getRestriction().getOwner().equals(owner)) {
+                return;
+            }
+            write = new PendingWrite(topicName, null, owner);
+            enqueueLocked(write);
+        }
+        awaitDurability(write);
+    }
+
+    @Override
+    public Optional<Claim> findByTopic(String topicName) {
+        PendingWrite write = overlay.get(topicName);
+        if (write != null) {
+            return Optional.ofNullable(write.claim);
+        }
+        return claimStore.findByTopic(topicName);
+    }
+
+    @Override
+    public Collection<Claim> findByTopicFilter(String topicFilter) {
+        return merge(() -> claimStore.findByTopicFilter(topicFilter), c -> TopicHelper.MatchesTopicFilter(topicFilter, c.getRestriction().getTopicName()));
+    }
+
+    @Override
+    public Collection<Claim> findByClient(String clientId) {
+        return merge(() -> claimStore.findByClient(clientId), c -> ClaimIndex.affectsClient(c, clientId));
+    }
+
+    @Override
+    public Collection<Claim> find(Predicate<Claim> filterPredicate) {
+        return merge(() -> claimStore.find(filterPredicate), filterPredicate);
+    }
+
+    @Override
+    public Collection<Claim> getAll() {
+        return merge(claimStore::getAll, c -> true);
+    }
+
+    /**
+     * @return the number of claims in the durable store, the pending writes are not counted
+     */
+    @Override
+    public long count() {
+        return claimStore.count();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return claimStore.whenReady();
+    }
+
+    /**
+     * Waits until all queued writes are flushed
+     */
+    @Override
+    public void flush() {
+        PendingWrite marker = new PendingWrite(null, null, null);
+        try {
+            queue.put(marker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing the claim write queue", e);
+        }
+        join(marker);
+    }
+
+    /**
+     * Flushes all queued writes, stops the writer thread and closes the durable store. Failing writes are only retried
+     * a few times more.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            flush();
+        } catch (IllegalStateException e) {
+            log.error("Could not flush all claim writes before closing the durable claim store", e);
+        }
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        claimStore.close();
+    }
+
+    private void enqueue(PendingWrite write) {
+        synchronized (writeLock) {
+            enqueueLocked(write);
+        }
+        awaitDurability(write);
+    }
+
+    private void enqueueLocked(PendingWrite write) {
+        try {
+            // blocks while the queue is full - applies backpressure to the writers
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing claim write of topic:=" + write.topic, e);
+        }
+        overlay.put(write.topic, write);
+    }
+
+    private void awaitDurability(PendingWrite write) {
+        if (durability == Durability.FLUSHED) {
+            join(write);
+        }
+    }
+
+    private void join(PendingWrite write) {
+        try {
+            write.flushed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the claim write to be flushed", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Claim write could not be flushed", e.getCause());
+        }
+    }
+
+    private Collection<Claim> merge(Supplier<Collection<Claim>> durableLookup, Predicate<Claim> filterPredicate) {
+        // taken before the lookup, a write leaves the overlay only after it was applied to the durable store
+        List<PendingWrite> pendingWrites = new ArrayList<>(overlay.values());
+        Collection<Claim> durableClaims = durableLookup.get();
+        if (pendingWrites.isEmpty()) {
+            return durableClaims;
+        }
+
+        Map<String, Claim> claims = new HashMap<>();
+        for (Claim claim : durableClaims) {
+            claims.put(claim.getRestriction().getTopicName(), claim);
+        }
+        for (PendingWrite write : pendingWrites) {
+            if (write.claim != null && filterPredicate.test(write.claim)) {
+                claims.put(write.topic, write.claim);
+            } else {
+                claims.remove(write.topic);
+            }
+        }
+        return new ArrayList<>(claims.values());
+    }
+
+    private void writeBatches() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+
+            long start = System.nanoTime();
+            int completed = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite write = batch.get(i);
+                if (write.topic == null || attempt(() -> apply(write), "write claim of topic:=" + write.topic)) {
+                    continue;
+                }
+
+                // complete the writes applied before, they don't have to wait for the retries of the failed write
+                complete(batch.subList(completed, i));
+                completed = i;
+                if (!retryUntilClosed(() -> apply(write), "write claim of topic:=" + write.topic)) {
+                    giveUp(write);
+                    completed = i + 1;
+                }
+            }
+            complete(batch.subList(completed, batch.size()));
+            flushTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.update(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void apply(PendingWrite write) {
+        if (write.claim != null) {
+            // validated before it was queued
+            claimStore.upsertValidated(write.claim);
+        } else {
+            claimStore.delete(write.owner, write.topic);
+        }
+    }
+
+    /**
+     * Flushes the durable store and completes the applied writes. They leave the overlay only once they are durable.
+     */
+    private void complete(List<PendingWrite> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        if (!retryUntilClosed(claimStore::flush, "flush " + writes.size() + " claim writes")) {
+            writes.forEach(this::giveUp);
+            return;
+        }
+        for (PendingWrite write : writes) {
+            if (write.topic != null) {
+                // keep the overlay if the topic was written again in the meantime
+                overlay.remove(write.topic, write);
+            }
+            write.flushed.complete(null);
+        }
+    }
+
+    /**
+     * Retries a failed operation on the durable store with an exponential backoff. A write which is not durable yet
+     * stays in the overlay and keeps all later writes waiting, so neither an acknowledged write gets lost nor are the
+     * writes applied out of order. Only once the store is closing the retries are limited.
+     *
+     * @return true if the operation succeeded, false if the store is closing and the operation still failed
+     */
+    private boolean retryUntilClosed(DurableOperation operation, String description) {
+        long backoffMillis = MIN_RETRY_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            if (attempt(operation, description)) {
+                return true;
+            }
+            if (closing && attempt >= CLOSING_RETRY_ATTEMPTS) {
+                return false;
+            }
+            sleep(backoffMillis);
+            backoffMillis = Math.min(backoffMillis * 2, MAX_RETRY_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * @return true if the operation succeeded
+     */
+    private boolean attempt(DurableOperation operation, String description) {
+        try {
+            operation.run();
+            return true;
+        } catch (Exception e) {
+            failedAttempts.mark();
+            log.error("Could not {} in the durable claim store", description, e);
+            return false;
+        }
+    }
+
+    private void giveUp(PendingWrite write) {
+        if (write.topic != null) {
+            log.error("Claim write of topic:={} is lost, the durable claim store failed until it was closed", write.topic);
+            overlay.remove(write.topic, write);
+        }
+        write.flushed.completeExceptionally(new IllegalStateException("Claim write of topic:=" + write.topic + " failed until the store was closed"));
+    }
+
+    private static void sleep(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long remaining;
+        // interrupts only wake up the writer thread while it waits for writes
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                // continue sleeping
+            }
+        }
+    }
+
+    private interface DurableOperation {
+        void run() throws Exception;
+    }
+
+    /**
+     * A queued upsert (claim set), delete (owner set) or flush marker (nothing set)
+     */
+    private static final class PendingWrite {
+        private final String topic;
+        private final Claim claim;
+        private final String owner;
+        private final CompletableFuture<Void> flushed = new CompletableFuture<>();
+
+        private PendingWrite(String topic, Claim claim, String owner) {
+            this.topic = topic;
+            this.claim = claim;
+            this.owner = owner;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package ch.microfast.hivemq.smoker.authz.serialization;
 
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Restriction;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * JSON serializer based on jackson {@link ObjectMapper} class.
  * Configuration:
@@ -22,4 +31,42 @@ public class SmokerJsonSerializer extends ObjectMapper {
         this.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES);
         this.enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
     }
+
+    /**
+     * Reads a claim straight from the UTF-8 bytes of a publish payload, without decoding the payload into a string.
+     * The exact bytes of the restriction object are kept as {@link Claim#getSignedRestriction()}, so the signature
+     * can be verified without serializing the restriction again.
+     *
+     * @param payload the payload, its position is not changed
+     * @return the claim
+     * @throws IOException thrown if the payload is not a claim
+     */
+    public Claim readClaim(ByteBuffer payload) throws IOException {
+        // the payload of a publish is a read-only buffer without an accessible array, it is copied once
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+
+        Claim claim = new Claim();
+        try (JsonParser parser = getFactory().createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "The claim is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String propertyName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if ("restriction".equalsIgnoreCase(propertyName)) {
+                    int start = (int) parser.getTokenLocation().getByteOffset();
+                    claim.setRestriction(readValue(parser, Restriction.class));
+                    int end = (int) parser.getCurrentLocation().getByteOffset();
+                    claim.setSignedRestriction(token == JsonToken.START_OBJECT ? Arrays.copyOfRange(bytes, start, end) : null);
+                } else if ("signature".equalsIgnoreCase(propertyName)) {
+                    claim.setSignature(readValue(parser, String.class));
+                } else {
+                    throw new JsonParseException(parser, "Unrecognized claim property:=" + propertyName);
+                }
+            }
+        }
+        return claim;
+    }
 }
@@ -0,0 +1,55 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+/**
+ * An authorization decision and the {@link AuthzDecisionReason} it was made by. There is one shared instance per
+ * reason and outcome, so deciding never allocates.
+ */
+public final class AuthzDecision {
+
+    private static final AuthzDecisionReason[] REASONS = AuthzDecisionReason.values();
+
+    private static final AuthzDecision[] DECISIONS = new AuthzDecision[REASONS.length * 2];
+
+    static {
+        for (AuthzDecisionReason reason : REASONS) {
+            DECISIONS[reason.ordinal() * 2] = new AuthzDecision(reason, false);
+            DECISIONS[reason.ordinal() * 2 + 1] = new AuthzDecision(reason, true);
+        }
+    }
+
+    private final AuthzDecisionReason reason;
+
+    private final boolean isAllowed;
+
+    private AuthzDecision(AuthzDecisionReason reason, boolean isAllowed) {
+        this.reason = reason;
+        this.isAllowed = isAllowed;
+    }
+
+    public static AuthzDecision of(AuthzDecisionReason reason, boolean isAllowed) {
+        return DECISIONS[reason.ordinal() * 2 + (isAllowed ? 1 : 0)];
+    }
+
+    /**
+     * @param reasonOrdinal the ordinal of the {@link AuthzDecisionReason}
+     */
+    static AuthzDecision of(byte reasonOrdinal, boolean isAllowed) {
+        return DECISIONS[reasonOrdinal * 2 + (isAllowed ? 1 : 0)];
+    }
+
+    public AuthzDecisionReason getReason() {
+        return reason;
+    }
+
+    public boolean isAllowed() {
+        return isAllowed;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthzDecision{" +
+                "reason=" + reason +
+                ", isAllowed=" + isAllowed +
+                '}';
+    }
+}
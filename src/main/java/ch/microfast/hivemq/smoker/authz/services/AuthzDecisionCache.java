@@ -0,0 +1,188 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of authorization decisions keyed by (clientId, topic, activity, isAuthenticated).
+ *
+ * <p>
+ * Every cached decision remembers the claim epoch it was evaluated in. A claim or unclaim of a topic increments the
+ * epoch of that topic, which makes all cached decisions of the topic stale at once. Topic epochs are striped over a
+ * fixed amount of counters, so unrelated topics may be invalidated together but a stale decision is never returned.
+ * Decisions of wildcard topic filters depend on all covered topics and are therefore bound to a global epoch which is
+ * incremented on every claim and unclaim.
+ * </p>
+ *
+ * <p>
+ * A cached decision keeps the {@link AuthzDecisionReason} it was evaluated by, so decisions served by the cache are
+ * counted and audited like evaluated ones.
+ * </p>
+ */
+public class AuthzDecisionCache {
+
+    private static final int EPOCH_STRIPES = 4096;
+
+    private final Cache<DecisionKey, CachedDecision> decisions;
+
+    private final AtomicLongArray topicEpochs = new AtomicLongArray(EPOCH_STRIPES);
+
+    private final AtomicLong globalEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Inject
+    public AuthzDecisionCache(@Named("authz.decision.cache.max.entries") long maxEntries, MetricRegistry metricRegistry) {
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .removalListener((DecisionKey key, CachedDecision decision, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+
+        metricRegistry.gauge(SmokerMetrics.name("authz", "decision-cache", "hits"), () -> (Gauge<Long>) this::getHitCount);
+        metricRegistry.gauge(SmokerMetrics.name("authz", "decision-cache", "misses"), () -> (Gauge<Long>) this::getMissCount);
+        metricRegistry.gauge(SmokerMetrics.name("authz", "decision-cache", "evictions"), () -> (Gauge<Long>) this::getEvictionCount);
+        metricRegistry.gauge(SmokerMetrics.name("authz", "decision-cache", "size"), () -> (Gauge<Long>) decisions::estimatedSize);
+    }
+
+    /**
+     * Returns the cached decision or evaluates and caches it if there is no decision of the current claim epoch
+     *
+     * @param evaluation evaluates the decision on a cache miss
+     * @return the authorization decision
+     */
+    public AuthzDecision getOrEvaluate(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated, Supplier<AuthzDecision> evaluation) {
+        DecisionKey key = new DecisionKey(clientId, topic, activity, isAuthenticated);
+
+        // the epoch must be read before the evaluation - a concurrent claim then makes the decision stale instead of being missed
+        long epoch = currentEpoch(key);
+        CachedDecision cachedDecision = decisions.getIfPresent(key);
+        if (cachedDecision != null && cachedDecision.epoch == epoch) {
+            hits.increment();
+            return cachedDecision.toDecision();
+        }
+
+        misses.increment();
+        AuthzDecision decision = evaluation.get();
+        decisions.put(key, new CachedDecision(decision, epoch));
+        return decision;
+    }
+
+    /**
+     * Returns the cached decision if there is one of the current claim epoch. Does not count a miss, the caller is
+     * expected to fall back to {@link #getOrEvaluate} which does.
+     *
+     * @return the cached authorization decision or empty
+     */
+    public Optional<AuthzDecision> findCurrent(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated) {
+        DecisionKey key = new DecisionKey(clientId, topic, activity, isAuthenticated);
+        CachedDecision cachedDecision = decisions.getIfPresent(key);
+        if (cachedDecision != null && cachedDecision.epoch == currentEpoch(key)) {
+            hits.increment();
+            return Optional.of(cachedDecision.toDecision());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Invalidates all cached decisions of the topic. Must be called after the claim of the topic has been changed.
+     *
+     * @param topic the claimed or unclaimed topic
+     */
+    public void invalidateTopic(String topic) {
+        topicEpochs.incrementAndGet(epochStripe(topic));
+        globalEpoch.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private long currentEpoch(DecisionKey key) {
+        return key.isTopicFilter ? globalEpoch.get() : topicEpochs.get(epochStripe(key.topic));
+    }
+
+    private static int epochStripe(String topic) {
+        int hash = topic.hashCode();
+        return (hash ^ (hash >>> 16)) & (EPOCH_STRIPES - 1);
+    }
+
+    private static final class DecisionKey {
+        private final String clientId;
+        private final String topic;
+        private final TopicPermission.MqttActivity activity;
+        private final boolean isAuthenticated;
+        private final boolean isTopicFilter;
+        private final int hash;
+
+        private DecisionKey(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated) {
+            this.clientId = clientId;
+            this.topic = topic;
+            this.activity = activity;
+            this.isAuthenticated = isAuthenticated;
+            this.isTopicFilter = TopicHelper.ContainsWildcard(topic);
+            this.hash = 31 * (31 * (31 * clientId.hashCode() + topic.hashCode()) + activity.hashCode()) + Boolean.hashCode(isAuthenticated);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DecisionKey that = (DecisionKey) o;
+            return isAuthenticated == that.isAuthenticated &&
+                    activity == that.activity &&
+                    topic.equals(that.topic) &&
+                    clientId.equals(that.clientId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class CachedDecision {
+        private final boolean isAllowed;
+        private final byte reason;
+        private final long epoch;
+
+        private CachedDecision(AuthzDecision decision, long epoch) {
+            this.isAllowed = decision.isAllowed();
+            this.reason = (byte) decision.getReason().ordinal();
+            this.epoch = epoch;
+        }
+
+        private AuthzDecision toDecision() {
+            return AuthzDecision.of(reason, isAllowed);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+/**
+ * The rule which decided an authorization request. The ordinals are written to the audit log, new reasons must be
+ * appended.
+ */
+public enum AuthzDecisionReason {
+
+    /**
+     * Reserved topics can't be subscribed and only be published by authenticated clients
+     */
+    RESERVED("reserved"),
+
+    /**
+     * A topic filter with wildcards, decided against all claims it covers
+     */
+    WILDCARD("wildcard"),
+
+    /**
+     * The topic is outside of the restricted area
+     */
+    UNRESTRICTED("unrestricted"),
+
+    /**
+     * The client is not authenticated by SMOKER and can't access the restricted area
+     */
+    UNAUTHENTICATED("unauthenticated"),
+
+    /**
+     * The topic in the restricted area is not claimed
+     */
+    UNCLAIMED("unclaimed"),
+
+    /**
+     * The client owns the claimed topic
+     */
+    OWNER("owner"),
+
+    /**
+     * The whitelist of the claim of the topic
+     */
+    WHITELIST("whitelist"),
+
+    /**
+     * The blacklist of the claim of the topic
+     */
+    BLACKLIST("blacklist");
+
+    private final String metricName;
+
+    AuthzDecisionReason(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return the name part of the metrics of the reason
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
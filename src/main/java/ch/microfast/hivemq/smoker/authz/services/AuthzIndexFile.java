@@ -0,0 +1,370 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable, memory mapped file of compiled {@link ClaimPermissionTable}s sorted by topic name. The file is served
+ * directly from the page cache: opening it only maps it, no claim is read or decoded up front.
+ *
+ * <p>
+ * Layout (integers are big endian, lengths are unsigned varints):
+ * <pre>
+ * header         : magic (int), format version (int), table count (int), restart interval (int), restart count (int), restarts offset (long)
+ * per table      : shared prefix length, suffix length, suffix bytes (UTF-8),
+ *                  restriction type (byte, ordinal or -1), mask of others (byte),
+ *                  client count, per client: clientId length, clientId bytes (UTF-8), mask (byte)
+ * restarts       : offset of every restart table (int)
+ * </pre>
+ * Topic names are prefix compressed against the previous topic. Every {@value #RESTART_INTERVAL}th table is a restart
+ * which holds its full topic name. A lookup is a binary search over the restarts followed by a scan of at most
+ * {@value #RESTART_INTERVAL} tables. Topics are sorted by their unsigned UTF-8 bytes.
+ * </p>
+ */
+public final class AuthzIndexFile {
+
+    private static final int MAGIC = 0x534D4B49;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final RestrictionType[] RESTRICTION_TYPES = RestrictionType.values();
+
+    private static final byte NO_RESTRICTION_TYPE = -1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8;
+
+    static final int RESTART_INTERVAL = 16;
+
+    private final ByteBuffer buffer;
+
+    private final int tableCount;
+
+    private final int restartCount;
+
+    private final int restartsOffset;
+
+    private AuthzIndexFile(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not an authorization index file of version:=" + FORMAT_VERSION);
+        }
+
+        this.buffer = buffer;
+        this.tableCount = buffer.getInt(8);
+        this.restartCount = buffer.getInt(16);
+        this.restartsOffset = (int) buffer.getLong(20);
+    }
+
+    /**
+     * Maps an existing index file
+     *
+     * @param file the index file written by {@link #write(Path, Collection)}
+     * @return the mapped index
+     */
+    public static AuthzIndexFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new AuthzIndexFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the given decision tables into a new index file. The file is written aside and moved into place
+     * atomically, readers of a previous file are not affected.
+     *
+     * @param file   the index file
+     * @param tables the decision tables of all claimed topics
+     */
+    public static void write(Path file, Collection<ClaimPermissionTable> tables) throws IOException {
+        List<EncodedTable> sortedTables = new ArrayList<>(tables.size());
+        for (ClaimPermissionTable table : tables) {
+            sortedTables.add(new EncodedTable(table.getTopicName().getBytes(StandardCharsets.UTF_8), table));
+        }
+        sortedTables.sort(Comparator.comparing(t -> t.topic, Arrays::compareUnsigned));
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int restartCount = (sortedTables.size() + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+        int restartsOffset;
+        try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+             DataOutputStream out = new DataOutputStream(counter)) {
+
+            int[] restarts = new int[restartCount];
+
+            out.write(new byte[HEADER_SIZE]);
+            byte[] previousTopic = new byte[0];
+            for (int i = 0; i < sortedTables.size(); i++) {
+                EncodedTable table = sortedTables.get(i);
+                int sharedPrefixLength = 0;
+                if (i % RESTART_INTERVAL == 0) {
+                    restarts[i / RESTART_INTERVAL] = checkedOffset(counter.count);
+                } else {
+                    sharedPrefixLength = sharedPrefixLength(previousTopic, table.topic);
+                }
+
+                writeVarInt(out, sharedPrefixLength);
+                writeVarInt(out, table.topic.length - sharedPrefixLength);
+                out.write(table.topic, sharedPrefixLength, table.topic.length - sharedPrefixLength);
+                writeTable(out, table.table);
+                previousTopic = table.topic;
+            }
+
+            restartsOffset = checkedOffset(counter.count);
+            for (int restart : restarts) {
+                out.writeInt(restart);
+            }
+            checkedOffset(counter.count);
+        }
+
+        // the header is written last, a partially written file is never recognized as index
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(sortedTables.size()).putInt(RESTART_INTERVAL).putInt(restartCount).putLong(restartsOffset);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Looks up the decision table of a topic
+     *
+     * @param topic the topic name
+     * @return the table or empty if the topic was not claimed when the file was written
+     */
+    public Optional<ClaimPermissionTable> find(String topic) {
+        byte[] key = topic.getBytes(StandardCharsets.UTF_8);
+        Cursor cursor = new Cursor(buffer.duplicate());
+        int restart = findRestart(cursor, key);
+        if (restart < 0) {
+            return Optional.empty();
+        }
+
+        cursor.seek(restart * RESTART_INTERVAL, restartOffset(restart));
+        while (cursor.next()) {
+            int comparison = Arrays.compareUnsigned(cursor.topic, 0, cursor.topicLength, key, 0, key.length);
+            if (comparison == 0) {
+                return Optional.of(cursor.readTable());
+            }
+            if (comparison > 0 || cursor.index % RESTART_INTERVAL == RESTART_INTERVAL - 1) {
+                return Optional.empty();
+            }
+            cursor.skipTable();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Finds all topics starting with the given prefix
+     *
+     * @param prefix the topic prefix
+     * @return the topic names in ascending order
+     */
+    public List<String> findTopicsByPrefix(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        List<String> result = new ArrayList<>();
+        if (tableCount == 0) {
+            return result;
+        }
+
+        Cursor cursor = new Cursor(buffer.duplicate());
+        int restart = Math.max(findRestart(cursor, key), 0);
+
+        cursor.seek(restart * RESTART_INTERVAL, restartOffset(restart));
+        while (cursor.next()) {
+            if (cursor.topicLength >= key.length && Arrays.equals(cursor.topic, 0, key.length, key, 0, key.length)) {
+                result.add(new String(cursor.topic, 0, cursor.topicLength, StandardCharsets.UTF_8));
+            } else if (Arrays.compareUnsigned(cursor.topic, 0, cursor.topicLength, key, 0, key.length) > 0) {
+                break;
+            }
+            cursor.skipTable();
+        }
+        return result;
+    }
+
+    public int size() {
+        return tableCount;
+    }
+
+    /**
+     * @return the last restart whose topic is less or equal than the key, -1 if the key is before all topics
+     */
+    private int findRestart(Cursor cursor, byte[] key) {
+        int low = 0;
+        int high = restartCount - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            cursor.seek(mid * RESTART_INTERVAL, restartOffset(mid));
+            cursor.next();
+            if (Arrays.compareUnsigned(cursor.topic, 0, cursor.topicLength, key, 0, key.length) <= 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private int restartOffset(int restart) {
+        return buffer.getInt(restartsOffset + restart * 4);
+    }
+
+    private static void writeTable(DataOutputStream out, ClaimPermissionTable table) throws IOException {
+        out.writeByte(table.getRestrictionType() != null ? table.getRestrictionType().ordinal() : NO_RESTRICTION_TYPE);
+        out.writeByte(table.getAllowedActivitiesOfOthers());
+        writeVarInt(out, table.getAllowedActivitiesByClient().size());
+        for (Map.Entry<String, Integer> entry : table.getAllowedActivitiesByClient().entrySet()) {
+            byte[] clientId = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, clientId.length);
+            out.write(clientId);
+            out.writeByte(entry.getValue());
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int sharedPrefixLength(byte[] a, byte[] b) {
+        int mismatch = Arrays.mismatch(a, b);
+        return mismatch < 0 ? a.length : mismatch;
+    }
+
+    private static int checkedOffset(long offset) {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Authorization index exceeds the maximum size of a mapped file");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Sequential reader over the tables of the file. Keeps the decoded topic of the current table to decode the
+     * prefix compressed topic of the next table.
+     */
+    private final class Cursor {
+        private final ByteBuffer buffer;
+        private byte[] topic = new byte[128];
+        private int topicLength;
+        private int index;
+
+        private Cursor(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void seek(int index, int offset) {
+            this.index = index - 1;
+            this.topicLength = 0;
+            buffer.position(offset);
+        }
+
+        /**
+         * Moves to the next table and decodes its topic. The table data must be read or skipped afterwards.
+         */
+        private boolean next() {
+            if (index + 1 >= tableCount) {
+                return false;
+            }
+            index++;
+
+            int sharedPrefixLength = readVarInt();
+            int suffixLength = readVarInt();
+            topicLength = sharedPrefixLength + suffixLength;
+            if (topicLength > topic.length) {
+                topic = Arrays.copyOf(topic, Math.max(topicLength, topic.length * 2));
+            }
+            buffer.get(topic, sharedPrefixLength, suffixLength);
+            return true;
+        }
+
+        private ClaimPermissionTable readTable() {
+            byte restrictionType = buffer.get();
+            int allowedActivitiesOfOthers = buffer.get();
+            int clientCount = readVarInt();
+            Map<String, Integer> allowedActivitiesByClient = new HashMap<>(clientCount);
+            for (int i = 0; i < clientCount; i++) {
+                byte[] clientId = new byte[readVarInt()];
+                buffer.get(clientId);
+                allowedActivitiesByClient.put(new String(clientId, StandardCharsets.UTF_8), (int) buffer.get());
+            }
+            return ClaimPermissionTable.of(new String(topic, 0, topicLength, StandardCharsets.UTF_8), allowedActivitiesByClient, allowedActivitiesOfOthers,
+                    restrictionType != NO_RESTRICTION_TYPE ? RESTRICTION_TYPES[restrictionType] : null);
+        }
+
+        private void skipTable() {
+            buffer.get();
+            buffer.get();
+            int clientCount = readVarInt();
+            for (int i = 0; i < clientCount; i++) {
+                int clientIdLength = readVarInt();
+                buffer.position(buffer.position() + clientIdLength + 1);
+            }
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    private static final class EncodedTable {
+        private final byte[] topic;
+        private final ClaimPermissionTable table;
+
+        private EncodedTable(byte[] topic, ClaimPermissionTable table) {
+            this.topic = topic;
+            this.table = table;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,28 +1,86 @@
 package ch.microfast.hivemq.smoker.authz.services;
 
-import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
+import ch.microfast.hivemq.smoker.audit.AuditLog;
 import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
 import ch.microfast.hivemq.smoker.authz.domain.Claim;
 import ch.microfast.hivemq.smoker.authz.persistance.IClaimStore;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Decides the authorization requests against the claims. Every decision is timed and counted by
+ * {@link AuthzDecisionReason}, allowed and denied, including the decisions served by the {@link AuthzDecisionCache}.
+ * Every decision and claim change is recorded in the {@link AuditLog}.
+ */
 public class AuthzService implements IAuthzService {
 
     private static final Logger log = LoggerFactory.getLogger(AuthzService.class);
 
     private final IClaimStore claimStore;
 
+    /**
+     * The compiled decision tables of the recently checked claimed topics. Tables are loaded on a miss and replaced
+     * whenever a topic is claimed or unclaimed through this service.
+     */
+    private final Cache<String, ClaimPermissionTable> permissionTables;
+
+    /**
+     * Incremented on every claim and unclaim, a table loaded while the claims changed is not cached
+     */
+    private final AtomicLong claimChanges = new AtomicLong();
+
+    private final AuthzDecisionCache decisionCache;
+
+    private final AuthzWarmStartIndex warmStartIndex;
+
+    private final AuditLog auditLog;
+
+    private final Timer checkAccessTimer;
+
+    private final Counter[] allowedByReason = new Counter[AuthzDecisionReason.values().length];
+
+    private final Counter[] deniedByReason = new Counter[AuthzDecisionReason.values().length];
+
     @Inject
-    public AuthzService(IClaimStore claimStore) {
+    public AuthzService(
+            IClaimStore claimStore,
+            AuthzDecisionCache decisionCache,
+            AuthzWarmStartIndex warmStartIndex,
+            AuditLog auditLog,
+            @Named("authz.permission.table.cache.max.entries") long maxPermissionTables,
+            MetricRegistry metricRegistry
+    ) {
         this.claimStore = claimStore;
+        this.decisionCache = decisionCache;
+        this.warmStartIndex = warmStartIndex;
+        this.auditLog = auditLog;
+        this.permissionTables = Caffeine.newBuilder()
+                .maximumSize(maxPermissionTables)
+                .build();
+
+        metricRegistry.gauge(SmokerMetrics.name("authz", "permission-tables", "size"), () -> (Gauge<Long>) permissionTables::estimatedSize);
+
+        this.checkAccessTimer = metricRegistry.timer(SmokerMetrics.name("authz", "check-access"));
+        for (AuthzDecisionReason reason : AuthzDecisionReason.values()) {
+            allowedByReason[reason.ordinal()] = metricRegistry.counter(SmokerMetrics.name("authz", "decisions", reason.getMetricName(), "allowed"));
+            deniedByReason[reason.ordinal()] = metricRegistry.counter(SmokerMetrics.name("authz", "decisions", reason.getMetricName(), "denied"));
+        }
     }
 
     @Override
@@ -30,7 +88,24 @@ public class AuthzService implements IAuthzService {
         log.info("Received claim:=" + claim.toString());
 
         // Persist claim
-        claimStore.upsert(claim);
+        warmStartIndex.recordChange(claim.getRestriction().getTopicName(), () -> claimStore.upsert(claim));
+        onClaimed(claim);
+    }
+
+    @Override
+    public void claimValidated(Claim claim) {
+        log.info("Received validated claim:=" + claim.toString());
+
+        // Persist claim
+        warmStartIndex.recordChange(claim.getRestriction().getTopicName(), () -> claimStore.upsertValidated(claim));
+        onClaimed(claim);
+    }
+
+    private void onClaimed(Claim claim) {
+        claimChanges.incrementAndGet();
+        permissionTables.put(claim.getRestriction().getTopicName(), ClaimPermissionTable.compile(claim));
+        decisionCache.invalidateTopic(claim.getRestriction().getTopicName());
+        auditLog.recordClaim(claim.getRestriction().getOwner(), claim.getRestriction().getTopicName());
     }
 
     @Override
@@ -38,74 +113,167 @@ public class AuthzService implements IAuthzService {
         log.info("Received unclaim for owner:=" + owner + "and topic:=" + topicName);
 
         // Delete claim
-        claimStore.delete(owner, topicName);
+        warmStartIndex.recordChange(topicName, () -> claimStore.delete(owner, topicName));
+        claimChanges.incrementAndGet();
+        permissionTables.invalidate(topicName);
+        decisionCache.invalidateTopic(topicName);
+        auditLog.recordUnclaim(owner, topicName);
     }
 
     @Override
     public Collection<Claim> getClaimsForClient(String clientId) {
         // find all claims that somehow affect the given clientId
-        Predicate<Claim> filterPredicate = (c) -> c.getRestriction().getOwner().equals(clientId)
-                || c.getRestriction().getPermissions().stream().anyMatch(p -> p.getClientId().equals(clientId))
-                || c.getRestriction().getPermissions().stream().anyMatch(p -> p.getClientId().equals(AuthorizationConsts.ANY_CLIENT_IDENTIFIER));
-
-        return claimStore.find(filterPredicate);
+        return claimStore.findByClient(clientId);
     }
 
     @Override
     public boolean checkAccess(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated) {
+        long start = System.nanoTime();
+        try {
+            AuthzDecision decision = decisionCache.getOrEvaluate(clientId, topic, activity, isAuthenticated,
+                    () -> evaluateAccess(clientId, topic, activity, isAuthenticated));
+            count(decision);
+            auditLog.recordDecision(clientId, topic, activity, decision.isAllowed(), decision.getReason());
+            return decision.isAllowed();
+        } finally {
+            checkAccessTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Optional<Boolean> findCachedAccess(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated) {
+        Optional<AuthzDecision> cachedDecision = decisionCache.findCurrent(clientId, topic, activity, isAuthenticated);
+        if (cachedDecision.isEmpty()) {
+            return Optional.empty();
+        }
+
+        AuthzDecision decision = cachedDecision.get();
+        count(decision);
+        auditLog.recordDecision(clientId, topic, activity, decision.isAllowed(), decision.getReason());
+        return Optional.of(decision.isAllowed());
+    }
+
+    private AuthzDecision evaluateAccess(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated) {
         log.debug("Checking access for clientId:={}, topic:={}, activity:={}, isAuthenticated:={}", clientId, topic, activity, isAuthenticated);
 
         // Only allow to publish reserved topics if client is authenticated
         if (activity == TopicPermission.MqttActivity.PUBLISH && TopicHelper.IsReservedTopic(topic) && !isAuthenticated) {
             log.debug("Reserved topics can only be published if the client is authenticated - access denied");
-            return false;
+            return AuthzDecision.of(AuthzDecisionReason.RESERVED, false);
         }
 
         // Dont allow subscriptions of reserved topics
         if (activity == TopicPermission.MqttActivity.SUBSCRIBE && TopicHelper.IsReservedTopic(topic)) {
             log.debug("Reserved topics cannot be subscribed - access denied");
-            return false;
+            return AuthzDecision.of(AuthzDecisionReason.RESERVED, false);
+        }
+
+        // Wildcards on the first level also cover the restricted area of every owner - never grant such filters
+        if (activity == TopicPermission.MqttActivity.SUBSCRIBE && TopicHelper.IsWildcardSegment(topic, 0)) {
+            log.debug("Topic filter:={} may cover the restricted area - access not granted", topic);
+            return AuthzDecision.of(AuthzDecisionReason.WILDCARD, false);
         }
 
         // Topic is not in restricted area - access allowed for everyone
         if (!TopicHelper.IsTopicInRestrictedArea(topic)) {
             log.debug("Topic is outside of the restricted area - access allowed");
-            return true;
+            return AuthzDecision.of(AuthzDecisionReason.UNRESTRICTED, true);
         }
 
         // Topic seems to be in restricted area but client is not authenticated -> access denied
         if (!isAuthenticated) {
             log.debug("Client must be authenticated with SMOKER auth method to get access to restricted resources - access denied");
-            return false;
+            return AuthzDecision.of(AuthzDecisionReason.UNAUTHENTICATED, false);
         }
 
-        Claim claim = claimStore.find(c -> c.getRestriction().getTopicName().equals(topic)).stream().findFirst().orElse(null);
+        // Wildcard subscriptions are evaluated against all claims covered by the filter
+        if (activity == TopicPermission.MqttActivity.SUBSCRIBE && TopicHelper.ContainsWildcard(topic)) {
+            return AuthzDecision.of(AuthzDecisionReason.WILDCARD, checkWildcardSubscriptionAccess(clientId, topic));
+        }
+
+        ClaimPermissionTable permissionTable = getPermissionTable(topic);
 
         // topic not claimed -> access denied
-        if (claim == null) {
-            log.debug("Topic:=" + topic + " is not claimed by any client - access denied");
-            return false;
+        if (permissionTable == null) {
+            log.debug("Topic:={} is not claimed by any client - access denied", topic);
+            return AuthzDecision.of(AuthzDecisionReason.UNCLAIMED, false);
         }
 
-        // topic is owned by caller -> implicitly allowed
-        if (claim.getRestriction().getOwner().equals(clientId)) {
-            log.debug("Topic:=" + topic + " is owned by caller itself with clientId:={clientId} - access allowed");
-            return true;
+        boolean isGranted = permissionTable.isGranted(clientId, activity);
+        log.debug("Access to topic:={} allowed:={} for clientId:={}", topic, isGranted, clientId);
+        return AuthzDecision.of(permissionTable.getReason(clientId), isGranted);
+    }
+
+    /**
+     * Counts an evaluated or cached decision by its reason
+     */
+    private void count(AuthzDecision decision) {
+        (decision.isAllowed() ? allowedByReason : deniedByReason)[decision.getReason().ordinal()].inc();
+    }
+
+    /**
+     * Decides a subscription with a wildcard topic filter in the restricted area. The subscription is granted if
+     * <ul>
+     *     <li>the filter is bound to a single owner (the owner level is not a wildcard),</li>
+     *     <li>the filter covers at least one claimed topic and</li>
+     *     <li>the client is allowed to subscribe every covered claimed topic.</li>
+     * </ul>
+     * NOTE: Claims made after the subscription was granted are not evaluated against it. The publishes of such topics
+     * are re-checked on delivery by the {@link ch.microfast.hivemq.smoker.authz.SmokerPublishOutboundInterceptor}.
+     */
+    private boolean checkWildcardSubscriptionAccess(String clientId, String topicFilter) {
+        // the owner level must not be a wildcard -> a subscription must not span the claims of several owners
+        if (TopicHelper.IsWildcardSegment(topicFilter, 1)) {
+            log.debug("Topic filter:={} spans the restricted area of several owners - access denied", topicFilter);
+            return false;
         }
 
-        // Check if specific permissions are granted
-        var involvedPermissions = claim.getRestriction().getPermissions().stream().filter(p -> p.getClientId().equals(clientId) || p.getClientId().equals(AuthorizationConsts.ANY_CLIENT_IDENTIFIER)).collect(Collectors.toList());
-        var permissionMatch = involvedPermissions.stream().anyMatch(p -> p.getActivity() == activity || p.getActivity() == TopicPermission.MqttActivity.ALL);
-
-        switch (claim.getRestriction().getRestrictionType()) {
-            case WHITELIST:
-                log.debug("Access to topic:=" + topic + " allowed:=" + permissionMatch + " for clientId:=" + clientId);
-                return permissionMatch;
-            case BLACKLIST:
-                log.debug("Access to topic:=" + topic + " allowed:=" + !permissionMatch + " for clientId:=" + clientId);
-                return !permissionMatch;
-            default:
+        int coveredClaimCount = 0;
+        for (String claimedTopic : warmStartIndex.findTopicsByTopicFilter(topicFilter)) {
+            ClaimPermissionTable permissionTable = getPermissionTable(claimedTopic);
+
+            // the claim was removed in the meantime
+            if (permissionTable == null) {
+                continue;
+            }
+
+            if (!permissionTable.isGranted(clientId, TopicPermission.MqttActivity.SUBSCRIBE)) {
+                log.debug("Topic filter:={} covers topic:={} which is not granted for clientId:={} - access denied", topicFilter, permissionTable.getTopicName(), clientId);
                 return false;
+            }
+            coveredClaimCount++;
+        }
+
+        if (coveredClaimCount == 0) {
+            log.debug("Topic filter:={} does not cover any claimed topic - access denied", topicFilter);
+            return false;
+        }
+
+        log.debug("Topic filter:={} covers {} granted claims for clientId:={} - access allowed", topicFilter, coveredClaimCount, clientId);
+        return true;
+    }
+
+    /**
+     * Returns the compiled decision table of a claimed topic. The table is loaded on a miss, from the
+     * {@link AuthzWarmStartIndex} right after startup and compiled from the store afterwards.
+     * The table is loaded outside of the cache, so a slow store does not block the lookups of other topics. A table
+     * loaded while a topic was claimed or unclaimed is not cached, a concurrent {@link #claim(Claim)} or
+     * {@link #unclaim(String, String)} always wins over a table compiled from a previous state of the store.
+     *
+     * @return the decision table or null if the topic is not claimed
+     */
+    private ClaimPermissionTable getPermissionTable(String topic) {
+        ClaimPermissionTable permissionTable = permissionTables.getIfPresent(topic);
+        if (permissionTable != null) {
+            return permissionTable;
+        }
+
+        // the counter must be read before the load - a concurrent change then prevents caching the loaded table
+        long changes = claimChanges.get();
+        ClaimPermissionTable loadedTable = warmStartIndex.findPermissionTable(topic).orElse(null);
+        if (loadedTable == null) {
+            return null;
         }
+        return permissionTables.asMap().compute(topic, (t, cachedTable) -> cachedTable == null && claimChanges.get() == changes ? loadedTable : cachedTable);
     }
 }
@@ -0,0 +1,346 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.persistance.IClaimStore;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Serves the compiled decision tables of the claimed topics right after startup, before the {@link IClaimStore} has
+ * rebuilt its indexes.
+ *
+ * <p>
+ * The decision tables of all claims are periodically written into an {@link AuthzIndexFile}. Every claim and unclaim
+ * appends its topic to a journal before the store is changed; the journal is truncated to the changes which are not
+ * yet contained in the last written index. On startup the index is mapped and the journal is read. Topics listed in the
+ * journal are looked up in the store by key, all other topics are served from the index. Once the store is ready the
+ * index is not used anymore.
+ * </p>
+ *
+ * <p>
+ * Changes are appended to the journal without waiting for the disk, the journal is forced in the background every
+ * {@code authz.index.journal.fsync.interval.ms}. A crash of the process loses nothing, on a crash of the operating
+ * system the changes of the last interval may be missing in the journal - the same window as the claim stores which
+ * don't force every write.
+ * </p>
+ */
+public class AuthzWarmStartIndex implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthzWarmStartIndex.class);
+
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+
+    private final Path indexFile;
+
+    private final Path journalFile;
+
+    private final IClaimStore claimStore;
+
+    /**
+     * Changes hold the read lock while they are journaled and applied to the store. The write lock marks the journal
+     * position up to which all changes are contained in the store.
+     */
+    private final ReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+    private final Object journalLock = new Object();
+
+    private FileChannel journal;
+
+    /**
+     * Set by every append, reset once the journal was forced
+     */
+    private volatile boolean journalDirty;
+
+    /**
+     * The index mapped on startup, null if there was none or once the store is ready
+     */
+    private volatile AuthzIndexFile index;
+
+    /**
+     * Topics changed since the mapped index was written. Never cleared, a lookup may still see the index after it was dropped.
+     */
+    private final Set<String> changedTopics = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledFuture<?> snapshotTask;
+
+    private final ScheduledFuture<?> journalForceTask;
+
+    @Inject
+    public AuthzWarmStartIndex(
+            @Named("authz.index.file.path") String indexFilePath,
+            @Named("authz.index.snapshot.interval.seconds") long snapshotIntervalSeconds,
+            @Named("authz.index.journal.fsync.interval.ms") long journalFsyncIntervalMs,
+            IClaimStore claimStore,
+            ScheduledExecutorService executorService
+    ) throws IOException {
+        this.indexFile = Paths.get(indexFilePath);
+        this.journalFile = indexFile.resolveSibling(indexFile.getFileName() + JOURNAL_FILE_SUFFIX);
+        this.claimStore = claimStore;
+
+        this.index = openIndex();
+        if (index != null) {
+            changedTopics.addAll(readJournal());
+            log.info("Serving {} claimed topics from authorization index:={}, {} topics changed since it was written", index.size(), indexFile, changedTopics.size());
+            claimStore.whenReady().thenRun(() -> {
+                index = null;
+                log.info("Claim store is ready, authorization index:={} is not used anymore", indexFile);
+            });
+        }
+        this.journal = openJournal();
+
+        this.snapshotTask = executorService.scheduleWithFixedDelay(this::writeSnapshotSafely, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        this.journalForceTask = executorService.scheduleWithFixedDelay(this::forceJournalSafely, journalFsyncIntervalMs, journalFsyncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Journals the change of a topic and applies it to the store. Every claim and unclaim must go through this method.
+     *
+     * @param topic  the claimed or unclaimed topic
+     * @param change applies the change to the store
+     */
+    public <E extends Exception> void recordChange(String topic, ClaimChange<E> change) throws E {
+        changeLock.readLock().lock();
+        try {
+            appendToJournal(topic);
+            if (index != null) {
+                changedTopics.add(topic);
+            }
+            change.apply();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up the decision table of a topic, from the index if the topic has not changed since the index was written,
+     * from the store otherwise
+     *
+     * @return the decision table or empty if the topic is not claimed
+     */
+    public Optional<ClaimPermissionTable> findPermissionTable(String topic) {
+        AuthzIndexFile currentIndex = index;
+        if (currentIndex != null && !changedTopics.contains(topic)) {
+            return currentIndex.find(topic);
+        }
+        return claimStore.findByTopic(topic).map(ClaimPermissionTable::compile);
+    }
+
+    /**
+     * Looks up all claimed topics matching the topic filter, from the index and the changed topics as long as the
+     * store is not ready, from the store otherwise
+     */
+    public Collection<String> findTopicsByTopicFilter(String topicFilter) {
+        AuthzIndexFile currentIndex = index;
+        if (currentIndex == null) {
+            return claimStore.findByTopicFilter(topicFilter).stream().map(c -> c.getRestriction().getTopicName()).collect(Collectors.toList());
+        }
+
+        List<String> topics = new ArrayList<>();
+        for (String topic : currentIndex.findTopicsByPrefix(TopicHelper.GetLiteralPrefix(topicFilter))) {
+            if (!changedTopics.contains(topic) && TopicHelper.MatchesTopicFilter(topicFilter, topic)) {
+                topics.add(topic);
+            }
+        }
+        for (String topic : changedTopics) {
+            if (TopicHelper.MatchesTopicFilter(topicFilter, topic) && claimStore.findByTopic(topic).isPresent()) {
+                topics.add(topic);
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * Writes the decision tables of all claims into a new index file and drops the journaled changes it contains
+     */
+    public synchronized void writeSnapshot() throws IOException {
+        long journalPosition;
+        changeLock.writeLock().lock();
+        try {
+            journalPosition = journal.size();
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+
+        if (journalPosition == 0 && Files.exists(indexFile)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        Collection<Claim> claims = claimStore.getAll();
+        AuthzIndexFile.write(indexFile, claims.stream().map(ClaimPermissionTable::compile).collect(Collectors.toList()));
+        truncateJournal(journalPosition);
+        log.info("Wrote {} claimed topics to authorization index:={} in {} ms", claims.size(), indexFile, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes a last index and stops the periodic writes
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotTask.cancel(false);
+        journalForceTask.cancel(false);
+        writeSnapshot();
+        synchronized (journalLock) {
+            journal.force(false);
+            journal.close();
+        }
+    }
+
+    private void writeSnapshotSafely() {
+        try {
+            writeSnapshot();
+        } catch (Exception e) {
+            log.error("Could not write authorization index:={}", indexFile, e);
+        }
+    }
+
+    private void forceJournalSafely() {
+        if (!journalDirty) {
+            return;
+        }
+        journalDirty = false;
+
+        FileChannel channel;
+        synchronized (journalLock) {
+            channel = journal;
+        }
+        try {
+            // not forced under the journal lock, the changes keep appending meanwhile
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // the journal was replaced by a truncated copy, which is forced before it replaces the journal
+        } catch (Exception e) {
+            journalDirty = true;
+            log.error("Could not force journal:={}", journalFile, e);
+        }
+    }
+
+    private AuthzIndexFile openIndex() {
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        try {
+            return AuthzIndexFile.open(indexFile);
+        } catch (Exception e) {
+            log.warn("Could not open authorization index:={}, falling back to the claim store", indexFile, e);
+            return null;
+        }
+    }
+
+    private FileChannel openJournal() throws IOException {
+        // not opened with APPEND as the journal is also read when it is truncated
+        FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    /**
+     * Record layout: topic length (int), topic (UTF-8), CRC32 of the topic (int). A torn record at the end of the
+     * journal is ignored, the change it belongs to was not applied to the store.
+     */
+    private void appendToJournal(String topic) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(topicBytes);
+
+        ByteBuffer record = ByteBuffer.allocate(4 + topicBytes.length + 4);
+        record.putInt(topicBytes.length).put(topicBytes).putInt((int) crc.getValue());
+        record.flip();
+
+        synchronized (journalLock) {
+            try {
+                while (record.hasRemaining()) {
+                    journal.write(record);
+                }
+                journalDirty = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not journal change of topic:=" + topic, e);
+            }
+        }
+    }
+
+    private List<String> readJournal() throws IOException {
+        List<String> topics = new ArrayList<>();
+        if (!Files.exists(journalFile)) {
+            return topics;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() < length + 4) {
+                break;
+            }
+
+            byte[] topicBytes = new byte[length];
+            buffer.get(topicBytes);
+            CRC32 crc = new CRC32();
+            crc.update(topicBytes);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                break;
+            }
+            topics.add(new String(topicBytes, StandardCharsets.UTF_8));
+        }
+        return topics;
+    }
+
+    /**
+     * Drops the journal up to the given position, the changes after it are kept
+     */
+    private void truncateJournal(long position) throws IOException {
+        Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+
+        changeLock.writeLock().lock();
+        try {
+            synchronized (journalLock) {
+                try (FileChannel tempJournal = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    journal.transferTo(position, journal.size() - position, tempJournal);
+                    tempJournal.force(true);
+                }
+                journal.close();
+                Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journal = openJournal();
+            }
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A change of the claim store
+     */
+    @FunctionalInterface
+    public interface ClaimChange<E extends Exception> {
+        void apply() throws E;
+    }
+}
@@ -0,0 +1,170 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+import ch.microfast.hivemq.smoker.authz.common.AuthorizationConsts;
+import ch.microfast.hivemq.smoker.authz.common.TopicHelper;
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable decision table compiled from the {@link ch.microfast.hivemq.smoker.authz.domain.Restriction} of a {@link Claim}.
+ * The permissions are folded per clientId into a bitmask of the allowed MQTT activities. The {@link RestrictionType},
+ * the permissions granted to any client and the implicit permissions of the owner are already applied to the masks.
+ * A decision is therefore a single hash lookup and a bit test, regardless of the amount of permissions of the claim.
+ */
+public final class ClaimPermissionTable {
+
+    private static final int NO_ACTIVITY = 0;
+
+    private static final int PUBLISH_BIT = 1;
+
+    private static final int SUBSCRIBE_BIT = 1 << 1;
+
+    private static final int ALL_ACTIVITIES = PUBLISH_BIT | SUBSCRIBE_BIT;
+
+    private final String topicName;
+
+    /**
+     * The allowed activities of all clients addressed by a permission as well as the owner
+     */
+    private final Map<String, Integer> allowedActivitiesByClient;
+
+    /**
+     * The allowed activities of all clients not addressed by any permission
+     */
+    private final int allowedActivitiesOfOthers;
+
+    /**
+     * The restriction type of the claim, only kept to report the reason of a decision
+     */
+    private final RestrictionType restrictionType;
+
+    private ClaimPermissionTable(String topicName, Map<String, Integer> allowedActivitiesByClient, int allowedActivitiesOfOthers, RestrictionType restrictionType) {
+        this.topicName = topicName;
+        this.allowedActivitiesByClient = allowedActivitiesByClient;
+        this.allowedActivitiesOfOthers = allowedActivitiesOfOthers;
+        this.restrictionType = restrictionType;
+    }
+
+    /**
+     * Restores a compiled decision table, used to read tables from an {@link AuthzIndexFile}
+     */
+    static ClaimPermissionTable of(String topicName, Map<String, Integer> allowedActivitiesByClient, int allowedActivitiesOfOthers, RestrictionType restrictionType) {
+        return new ClaimPermissionTable(topicName, Map.copyOf(allowedActivitiesByClient), allowedActivitiesOfOthers, restrictionType);
+    }
+
+    /**
+     * Compiles the decision table of the given claim
+     *
+     * @param claim a valid claim
+     * @return the compiled decision table
+     */
+    public static ClaimPermissionTable compile(Claim claim) {
+        RestrictionType restrictionType = claim.getRestriction().getRestrictionType();
+
+        int activitiesOfAnyClient = NO_ACTIVITY;
+        Map<String, Integer> activitiesByClient = new HashMap<>();
+        for (Permission permission : claim.getRestriction().getPermissions()) {
+            int activityBits = toActivityBits(permission.getActivity());
+            if (AuthorizationConsts.ANY_CLIENT_IDENTIFIER.equals(permission.getClientId())) {
+                activitiesOfAnyClient |= activityBits;
+            } else {
+                activitiesByClient.merge(permission.getClientId(), activityBits, (a, b) -> a | b);
+            }
+        }
+
+        Map<String, Integer> allowedActivitiesByClient = new HashMap<>(activitiesByClient.size() + 1);
+        for (Map.Entry<String, Integer> entry : activitiesByClient.entrySet()) {
+            allowedActivitiesByClient.put(entry.getKey(), applyRestrictionType(restrictionType, entry.getValue() | activitiesOfAnyClient));
+        }
+
+        // the owner is implicitly allowed to do anything on its own topic
+        allowedActivitiesByClient.put(claim.getRestriction().getOwner(), ALL_ACTIVITIES);
+
+        return new ClaimPermissionTable(
+                claim.getRestriction().getTopicName(),
+                Map.copyOf(allowedActivitiesByClient),
+                applyRestrictionType(restrictionType, activitiesOfAnyClient),
+                restrictionType);
+    }
+
+    /**
+     * Checks if the client is allowed to perform the activity on the claimed topic
+     *
+     * @param clientId the client to check
+     * @param activity the requested activity
+     * @return true if the activity is granted
+     */
+    public boolean isGranted(String clientId, TopicPermission.MqttActivity activity) {
+        int requiredActivities = toActivityBits(activity);
+        Integer allowedActivities = allowedActivitiesByClient.get(clientId);
+        int allowed = allowedActivities != null ? allowedActivities : allowedActivitiesOfOthers;
+        return requiredActivities != NO_ACTIVITY && (allowed & requiredActivities) == requiredActivities;
+    }
+
+    /**
+     * Returns the reason of the decisions of the client, the owner is implicitly granted everything and all other
+     * clients are decided by the restriction type of the claim
+     *
+     * @param clientId the checked client
+     * @return the reason of the decisions of {@link #isGranted}
+     */
+    public AuthzDecisionReason getReason(String clientId) {
+        if (TopicHelper.IsTopicOwnedByOwner(topicName, clientId)) {
+            return AuthzDecisionReason.OWNER;
+        }
+        return restrictionType == RestrictionType.BLACKLIST ? AuthzDecisionReason.BLACKLIST : AuthzDecisionReason.WHITELIST;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    Map<String, Integer> getAllowedActivitiesByClient() {
+        return allowedActivitiesByClient;
+    }
+
+    int getAllowedActivitiesOfOthers() {
+        return allowedActivitiesOfOthers;
+    }
+
+    RestrictionType getRestrictionType() {
+        return restrictionType;
+    }
+
+    private static int applyRestrictionType(RestrictionType restrictionType, int matchingActivities) {
+        if (restrictionType == null) {
+            return NO_ACTIVITY;
+        }
+
+        switch (restrictionType) {
+            case WHITELIST:
+                return matchingActivities;
+            case BLACKLIST:
+                return ~matchingActivities & ALL_ACTIVITIES;
+            default:
+                return NO_ACTIVITY;
+        }
+    }
+
+    private static int toActivityBits(TopicPermission.MqttActivity activity) {
+        if (activity == null) {
+            return NO_ACTIVITY;
+        }
+
+        switch (activity) {
+            case PUBLISH:
+                return PUBLISH_BIT;
+            case SUBSCRIBE:
+                return SUBSCRIBE_BIT;
+            case ALL:
+                return ALL_ACTIVITIES;
+            default:
+                return NO_ACTIVITY;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ch.microfast.hivemq.smoker.authz.services;
+
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Processes claims and unclaims off the network threads in three stages. The decode stage starts right away on the
+ * executor, the validate stage (which includes the signature verification) right after it. Both run concurrently to
+ * all other submissions. The persist stage starts once the validate stage is done and all earlier submissions of the
+ * same key are persisted. Submissions of one key are therefore persisted in the order they were submitted while
+ * submissions of different keys never wait for each other.
+ *
+ * <p>
+ * The number of submissions in the pipeline is bounded. A saturated pipeline rejects further submissions, the caller
+ * is expected to push back on the client.
+ * </p>
+ */
+public class ClaimPipeline {
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final Executor executor;
+
+    private final int capacity;
+
+    private final Semaphore permits;
+
+    /**
+     * The last persist stage of every key with submissions in the pipeline
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    @Inject
+    public ClaimPipeline(ScheduledExecutorService executorService, @Named("claim.pipeline.queue.capacity") int capacity, MetricRegistry metricRegistry) {
+        this.executor = executorService;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+
+        metricRegistry.gauge(SmokerMetrics.name("claim", "pipeline", "queue-depth"), () -> (Gauge<Integer>) this::getQueueDepth);
+    }
+
+    /**
+     * Submits a claim or unclaim to the pipeline
+     *
+     * @param key      the submissions of a key are persisted in order
+     * @param decode   decodes the payload
+     * @param validate validates the decoded value asynchronously
+     * @param persist  persists the validated value
+     * @return a future which completes once the value is persisted or empty if the pipeline is saturated
+     */
+    public <T> Optional<CompletableFuture<Void>> submit(String key, Callable<T> decode, Function<T, CompletionStage<T>> validate, Stage<T> persist) {
+        if (!permits.tryAcquire()) {
+            return Optional.empty();
+        }
+
+        CompletableFuture<Void> persisted;
+        try {
+            CompletableFuture<T> validated = CompletableFuture.supplyAsync(() -> call(decode), executor).thenCompose(validate);
+            persisted = tails.compute(key, (k, previous) -> (previous == null ? COMPLETED : previous)
+                    // a failed predecessor does not affect its successors
+                    .handle((ignored, failure) -> null)
+                    .thenCombine(validated, (ignored, value) -> value)
+                    .thenAcceptAsync(value -> run(persist, value), executor));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+
+        return Optional.of(persisted.whenComplete((ignored, failure) -> {
+            tails.remove(key, persisted);
+            permits.release();
+        }));
+    }
+
+    public int getQueueDepth() {
+        return capacity - permits.availablePermits();
+    }
+
+    private static <T> T call(Callable<T> callable) {
+        try {
+            return callable.call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static <T> void run(Stage<T> stage, T value) {
+        try {
+            stage.accept(value);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * A pipeline stage which may fail with a checked exception
+     */
+    @FunctionalInterface
+    public interface Stage<T> {
+        void accept(T value) throws Exception;
+    }
+}
@@ -5,6 +5,7 @@ import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 
 import java.util.Collection;
+import java.util.Optional;
 
 /**
  * Authorization services to provide claim functionality as well as checking access for client activity
@@ -12,9 +13,22 @@ import java.util.Collection;
 public interface IAuthzService {
     void claim(Claim claim) throws InvalidClaimException;
 
+    /**
+     * Same as {@link #claim} for a claim the caller has already validated, the claim is stored without validating it
+     * again
+     */
+    void claimValidated(Claim claim);
+
     void unclaim(String owner, String topicName);
 
     Collection<Claim> getClaimsForClient(String clientId);
 
     boolean checkAccess(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated);
+
+    /**
+     * Same as {@link #checkAccess} but only answers from already evaluated decisions, never touches the claim store
+     *
+     * @return the access decision or empty if it has to be evaluated by {@link #checkAccess}
+     */
+    Optional<Boolean> findCachedAccess(String clientId, String topic, TopicPermission.MqttActivity activity, boolean isAuthenticated);
 }
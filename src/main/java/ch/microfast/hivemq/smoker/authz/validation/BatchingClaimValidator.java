@@ -0,0 +1,136 @@
+package ch.microfast.hivemq.smoker.authz.validation;
+
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects claims which arrive concurrently and validates them in batches with {@link IClaimValidator#validateClaims},
+ * so their signatures are verified together.
+ *
+ * <p>
+ * Validation never waits for a batch to fill up. A claim is picked up by the next free batch task on the executor,
+ * which validates all claims queued so far. Under low load batches therefore stay small, when many claims arrive at
+ * once (e.g. after a fleet of clients reconnected) they grow up to the maximum batch size.
+ * </p>
+ */
+public class BatchingClaimValidator {
+
+    private final IClaimValidator claimValidator;
+
+    private final Executor executor;
+
+    private final int maxBatchSize;
+
+    private final int parallelism;
+
+    private final Queue<PendingValidation> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger activeBatchTasks = new AtomicInteger();
+
+    @Inject
+    public BatchingClaimValidator(IClaimValidator claimValidator, ScheduledExecutorService executorService, @Named("claim.validation.batch.max.size") int maxBatchSize) {
+        this.claimValidator = claimValidator;
+        this.executor = executorService;
+        this.maxBatchSize = maxBatchSize;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Validates the claim as part of the next batch
+     *
+     * @return a future which completes with the claim if it is valid, with an {@link InvalidClaimException} or with a
+     * {@link RejectedExecutionException} if the executor does not accept the batch task
+     */
+    public CompletableFuture<Claim> validate(Claim claim) {
+        PendingValidation pendingValidation = new PendingValidation(claim);
+        queue.add(pendingValidation);
+        if (tryStartBatchTask()) {
+            try {
+                executor.execute(this::validateBatches);
+            } catch (RejectedExecutionException e) {
+                activeBatchTasks.decrementAndGet();
+
+                // unless an active batch task already picked up the claim
+                if (queue.remove(pendingValidation)) {
+                    pendingValidation.validated.completeExceptionally(e);
+                }
+            }
+        }
+        return pendingValidation.validated;
+    }
+
+    private boolean tryStartBatchTask() {
+        if (activeBatchTasks.incrementAndGet() <= parallelism) {
+            return true;
+        }
+        activeBatchTasks.decrementAndGet();
+        return false;
+    }
+
+    private void validateBatches() {
+        List<PendingValidation> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            PendingValidation pendingValidation;
+            while (batch.size() < maxBatchSize && (pendingValidation = queue.poll()) != null) {
+                batch.add(pendingValidation);
+            }
+
+            if (batch.isEmpty()) {
+                activeBatchTasks.decrementAndGet();
+
+                // a claim queued while all batch tasks were active must not be left behind
+                if (!queue.isEmpty() && tryStartBatchTask()) {
+                    continue;
+                }
+                return;
+            }
+
+            validateBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void validateBatch(List<PendingValidation> batch) {
+        List<Claim> claims = new ArrayList<>(batch.size());
+        for (PendingValidation pendingValidation : batch) {
+            claims.add(pendingValidation.claim);
+        }
+
+        try {
+            Map<Claim, InvalidClaimException> invalidClaims = claimValidator.validateClaims(claims);
+            for (PendingValidation pendingValidation : batch) {
+                InvalidClaimException invalidClaimException = invalidClaims.get(pendingValidation.claim);
+                if (invalidClaimException == null) {
+                    pendingValidation.validated.complete(pendingValidation.claim);
+                } else {
+                    pendingValidation.validated.completeExceptionally(invalidClaimException);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (PendingValidation pendingValidation : batch) {
+                pendingValidation.validated.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class PendingValidation {
+        private final Claim claim;
+        private final CompletableFuture<Claim> validated = new CompletableFuture<>();
+
+        private PendingValidation(Claim claim) {
+            this.claim = claim;
+        }
+    }
+}
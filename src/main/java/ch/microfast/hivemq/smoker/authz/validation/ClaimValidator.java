@@ -3,8 +3,13 @@ package ch.microfast.hivemq.smoker.authz.validation;
 import ch.microfast.hivemq.smoker.authz.domain.Claim;
 import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
 import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
+import ch.microfast.hivemq.smoker.crypto.SignatureVerification;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.inject.Inject;
-import org.apache.commons.codec.binary.Base32;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,17 +18,23 @@ import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.SignatureException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Validates the properties and the signature of claims. The signature is verified against the restriction as it was
+ * received ({@link Claim#getSignedRestriction()}). Claims without the received restriction, and claims whose signature
+ * does not match it, are verified against the serialization of the restriction by the {@link SmokerJsonSerializer}.
+ */
 public class ClaimValidator implements IClaimValidator {
 
     private static final Logger log = LoggerFactory.getLogger(ClaimValidator.class);
@@ -32,17 +43,109 @@ public class ClaimValidator implements IClaimValidator {
 
     private final ICryptoProvider cryptoProvider;
 
+    private final PublicKeyCache publicKeyCache;
+
+    private final SmokerJsonSerializer smokerJsonSerializer;
+
+    private final Timer validationTimer;
+
+    private final Timer signatureVerificationTimer;
+
+    private final Meter invalid;
+
     @Inject
-    public ClaimValidator(ICryptoProvider cryptoProvider) {
+    public ClaimValidator(ICryptoProvider cryptoProvider, PublicKeyCache publicKeyCache, SmokerJsonSerializer smokerJsonSerializer, MetricRegistry metricRegistry) {
         this.validator = Validation.buildDefaultValidatorFactory().getValidator();
         this.cryptoProvider = cryptoProvider;
+        this.publicKeyCache = publicKeyCache;
+        this.smokerJsonSerializer = smokerJsonSerializer;
+
+        // timed per call, a call validates a batch of claims
+        this.validationTimer = metricRegistry.timer(SmokerMetrics.name("authz", "claim-validation"));
+        this.signatureVerificationTimer = metricRegistry.timer(SmokerMetrics.name("authz", "claim-validation", "signature-verification"));
+        this.invalid = metricRegistry.meter(SmokerMetrics.name("authz", "claim-validation", "invalid"));
     }
 
     @Override
     public void validateClaim(Claim claim) throws InvalidClaimException {
+        InvalidClaimException invalidClaimException = validateClaims(Collections.singletonList(claim)).get(claim);
+        if (invalidClaimException != null) {
+            throw invalidClaimException;
+        }
+    }
+
+    @Override
+    public Map<Claim, InvalidClaimException> validateClaims(List<Claim> claims) {
+        long start = System.nanoTime();
+        Map<Claim, InvalidClaimException> invalidClaims = new LinkedHashMap<>();
+        List<Claim> signedClaims = new ArrayList<>(claims.size());
+        List<SignatureVerification> verifications = new ArrayList<>(claims.size());
+
+        for (Claim claim : claims) {
+            List<String> errorMessages = validateProperties(claim);
+
+            // only do further validation if base validations succeed
+            if (errorMessages.isEmpty()) {
+                try {
+                    verifications.add(toSignatureVerification(claim));
+                    signedClaims.add(claim);
+                } catch (IOException | IllegalArgumentException e) {
+                    String msg = MessageFormat.format("Exception while verifying the claims signature. Message:={0}", e.getMessage());
+                    log.error(msg, e);
+                    errorMessages.add(msg);
+                }
+            }
+
+            if (!errorMessages.isEmpty()) {
+                invalidClaims.put(claim, new InvalidClaimException(errorMessages));
+            }
+        }
+
+        // validate signatures - all at once, the crypto provider identifies the invalid ones
+        long verificationStart = System.nanoTime();
+        boolean[] isVerified = cryptoProvider.verifyBatch(verifications);
+
+        // the client may have signed the serialized restriction but sent it in another form, verify once more against it
+        List<Claim> reserializedClaims = new ArrayList<>();
+        List<SignatureVerification> reserializedVerifications = new ArrayList<>();
+        for (int i = 0; i < isVerified.length; i++) {
+            Claim claim = signedClaims.get(i);
+            if (!isVerified[i] && claim.getSignedRestriction() != null) {
+                try {
+                    byte[] expect = smokerJsonSerializer.writeValueAsBytes(claim.getRestriction());
+                    if (!Arrays.equals(expect, claim.getSignedRestriction())) {
+                        reserializedClaims.add(claim);
+                        reserializedVerifications.add(new SignatureVerification(verifications.get(i).getPublicKey(), verifications.get(i).getSignature(), expect));
+                        continue;
+                    }
+                } catch (IOException e) {
+                    log.error("Exception while serializing the restriction", e);
+                }
+            }
+            if (!isVerified[i]) {
+                invalidClaims.put(claim, new InvalidClaimException(Collections.singletonList("The claims signature could not be verified successfully")));
+            }
+        }
+
+        boolean[] isReserializedVerified = reserializedVerifications.isEmpty() ? new boolean[0] : cryptoProvider.verifyBatch(reserializedVerifications);
+        signatureVerificationTimer.update(System.nanoTime() - verificationStart, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < isReserializedVerified.length; i++) {
+            if (!isReserializedVerified[i]) {
+                invalidClaims.put(reserializedClaims.get(i), new InvalidClaimException(Collections.singletonList("The claims signature could not be verified successfully")));
+            }
+        }
+
+        invalid.mark(invalidClaims.size());
+        validationTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return invalidClaims;
+    }
+
+    /**
+     * base validation (claim, restriction, permission)
+     */
+    private List<String> validateProperties(Claim claim) {
         List<String> errorMessages = new ArrayList<String>();
 
-        // base validation (claim, restriction, permission)
         Set<ConstraintViolation> baseValidationResult = new HashSet<>();
         baseValidationResult.addAll(validator.validate(claim));
 
@@ -57,30 +160,17 @@ public class ClaimValidator implements IClaimValidator {
         if (!baseValidationResult.isEmpty()) {
             baseValidationResult.stream().forEach(result -> errorMessages.add(result.getPropertyPath().toString() + " " + result.getMessage()));
         }
+        return errorMessages;
+    }
 
-        // only do further validation if base validations succeed
-        if (errorMessages.isEmpty()) {
-
-            // validate signature
-            try {
-                byte[] signature = Base64.decodeBase64(claim.getSignature());
-                byte[] clientIdArray = new Base32().decode(claim.getRestriction().getOwner());
-                byte[] expect = new SmokerJsonSerializer().writeValueAsString(claim.getRestriction()).getBytes(StandardCharsets.UTF_8);
-
-                PublicKey publicKey = cryptoProvider.convertByteArrayToPublicKey(clientIdArray);
-
-                if (!cryptoProvider.verify(publicKey, signature, expect)) {
-                    errorMessages.add("The claims signature could not be verified successfully");
-                }
-            } catch (IOException | InvalidKeyException | SignatureException | IllegalArgumentException e) {
-                String msg = MessageFormat.format("Exception while verifying the claims signature. Message:={0}", e.getMessage());
-                log.error(msg, e);
-                errorMessages.add(msg);
-            }
-        }
+    private SignatureVerification toSignatureVerification(Claim claim) throws IOException {
+        byte[] signature = Base64.decodeBase64(claim.getSignature());
+        byte[] expect = claim.getSignedRestriction() != null
+                ? claim.getSignedRestriction()
+                : smokerJsonSerializer.writeValueAsBytes(claim.getRestriction());
 
-        if (!errorMessages.isEmpty()) {
-            throw new InvalidClaimException(errorMessages);
-        }
+        PublicKey publicKey = publicKeyCache.getPublicKey(claim.getRestriction().getOwner())
+                .orElseThrow(() -> new IllegalArgumentException("The owner is not a valid base32 representation of an EdDSA public key"));
+        return new SignatureVerification(publicKey, signature, expect);
     }
 }
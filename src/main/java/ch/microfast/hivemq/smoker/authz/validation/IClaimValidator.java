@@ -2,6 +2,9 @@ package ch.microfast.hivemq.smoker.authz.validation;
 
 import ch.microfast.hivemq.smoker.authz.domain.Claim;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Validator to validate an incoming claim. Could also contain complex business validations.
  */
@@ -13,4 +16,13 @@ public interface IClaimValidator {
      * @throws InvalidClaimException thrown if @link{@link Claim} is invalid. This exception also holds all error messages
      */
     void validateClaim(Claim claim) throws InvalidClaimException;
+
+    /**
+     * Validates several claims at once. Same validations as {@link #validateClaim} but the signatures are verified
+     * together, which is considerably faster for larger amounts of claims.
+     *
+     * @param claims the claims to be validated
+     * @return the invalid claims with their validation errors, empty if all claims are valid
+     */
+    Map<Claim, InvalidClaimException> validateClaims(List<Claim> claims);
 }
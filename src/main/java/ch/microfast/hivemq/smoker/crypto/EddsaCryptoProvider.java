@@ -1,25 +1,57 @@
 package ch.microfast.hivemq.smoker.crypto;
 
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
 import net.i2p.crypto.eddsa.EdDSAEngine;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
 import net.i2p.crypto.eddsa.KeyPairGenerator;
+import net.i2p.crypto.eddsa.math.Curve;
+import net.i2p.crypto.eddsa.math.GroupElement;
+import net.i2p.crypto.eddsa.math.ScalarOps;
 import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
 import net.i2p.crypto.eddsa.spec.EdDSAParameterSpec;
 import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
 
 import java.security.*;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * The implementation of a {@link ICryptoProvider} with a EdDSA signature scheme.
+ *
+ * <p>
+ * The provider is safe to share across threads. Signature engines and message digests are stateful, every thread
+ * therefore works with its own instances, which are created on first use and reused afterwards. No locks are taken on
+ * the sign and verify paths, so verification throughput grows with the number of threads.
+ * </p>
  */
+@ThreadSafe
 public class EddsaCryptoProvider implements ICryptoProvider {
 
     /**
      * We are working with EdDSA signatures that are 64 bytes in length.
      */
     private static final int SIGNATURE_BYTE_COUNT = 64;
-    private final Signature signature;
+
+    /**
+     * Smaller batches are verified signature by signature, the batch equation does not pay off for them
+     */
+    private static final int MIN_BATCH_SIZE = 16;
+
+    /**
+     * Bytes of the random coefficients of the batch equation (128 bit)
+     */
+    private static final int COEFFICIENT_BYTE_COUNT = 16;
+
+    /**
+     * The group order l = 2^252 + 27742317777372353535851937790883648493, little endian
+     */
+    private static final byte[] GROUP_ORDER = {
+            (byte) 0xed, (byte) 0xd3, (byte) 0xf5, (byte) 0x5c, (byte) 0x1a, (byte) 0x63, (byte) 0x12, (byte) 0x58,
+            (byte) 0xd6, (byte) 0x9c, (byte) 0xf7, (byte) 0xa2, (byte) 0xde, (byte) 0xf9, (byte) 0xde, (byte) 0x14,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0x10
+    };
+    private final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(() -> new EdDSAEngine(newDigest()));
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(EddsaCryptoProvider::newDigest);
     private final KeyPairGenerator keyPairGenerator;
     private final SecureRandom random;
     private final EdDSAParameterSpec parameterSpec;
@@ -30,10 +62,18 @@ public class EddsaCryptoProvider implements ICryptoProvider {
      * @throws NoSuchAlgorithmException thrown if the systen cannot initialize the EdDSA signature scheme correctly
      */
     public EddsaCryptoProvider() throws NoSuchAlgorithmException {
-        this.keyPairGenerator = new KeyPairGenerator();
+        // fail early if SHA-512 is not available, the engines are created lazily per thread
+        MessageDigest.getInstance("SHA-512");
         this.random = new SecureRandom();
-        this.signature = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
         this.parameterSpec = EdDSANamedCurveTable.getByName("ed25519");
+
+        // initialized up front, the lazy initialization of the generator is not thread-safe
+        this.keyPairGenerator = new KeyPairGenerator();
+        try {
+            this.keyPairGenerator.initialize(parameterSpec, random);
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new NoSuchAlgorithmException("Could not initialize the ed25519 key pair generator", e);
+        }
     }
 
     @Override
@@ -43,6 +83,7 @@ public class EddsaCryptoProvider implements ICryptoProvider {
 
     @Override
     public byte[] sign(PrivateKey privateKey, byte[] message) throws InvalidKeyException, SignatureException {
+        Signature signature = signatures.get();
         signature.initSign(privateKey);
         signature.update(message);
         return signature.sign();
@@ -60,9 +101,174 @@ public class EddsaCryptoProvider implements ICryptoProvider {
             signatureBytes = signature;
         }
 
-        this.signature.initVerify(publicKey);
-        this.signature.update(expectedMessage);
-        return this.signature.verify(signatureBytes);
+        Signature engine = signatures.get();
+        engine.initVerify(publicKey);
+        engine.update(expectedMessage);
+        return engine.verify(signatureBytes);
+    }
+
+    /**
+     * Verifies the batch with the randomized batch equation
+     * <pre>
+     * 8 * (sum(z_i * R_i) + sum((z_i * h_i) * A_i) - sum(z_i * S_i) * B) == 0
+     * </pre>
+     * where z_i are random 128 bit coefficients. The sums of scalar multiplications are computed at once with the
+     * bucket method (Pippenger), which needs far less point additions than verifying every signature on its own. A
+     * batch containing an invalid signature passes with a probability of at most 2^-128. Only if the batch equation
+     * fails, the signatures are verified one by one to identify the invalid ones.
+     *
+     * <p>
+     * The batch equation is multiplied by the cofactor while {@link #verify} is not. Signatures whose R or A contain a
+     * small order component, which only the owner of the private key can create, may therefore pass as part of a batch
+     * but fail on their own. This does not allow to forge a signature.
+     * </p>
+     */
+    @Override
+    public boolean[] verifyBatch(List<SignatureVerification> verifications) {
+        if (verifications.size() >= MIN_BATCH_SIZE) {
+            try {
+                if (verifyBatchEquation(verifications)) {
+                    boolean[] results = new boolean[verifications.size()];
+                    Arrays.fill(results, true);
+                    return results;
+                }
+            } catch (IllegalArgumentException e) {
+                // a malformed key or signature, identified below
+            }
+        }
+        return ICryptoProvider.super.verifyBatch(verifications);
+    }
+
+    private boolean verifyBatchEquation(List<SignatureVerification> verifications) {
+        Curve curve = parameterSpec.getCurve();
+        ScalarOps scalarOps = parameterSpec.getScalarOps();
+        MessageDigest digest = digests.get();
+        // an earlier batch of this thread may have failed in the middle of a digest
+        digest.reset();
+
+        int count = verifications.size();
+        GroupElement[] points = new GroupElement[2 * count];
+        byte[][] scalars = new byte[2 * count][];
+        byte[] zero = new byte[32];
+        byte[] baseScalar = zero;
+
+        for (int i = 0; i < count; i++) {
+            SignatureVerification verification = verifications.get(i);
+            if (!(verification.getPublicKey() instanceof EdDSAPublicKey) || verification.getSignature() == null || verification.getSignature().length < SIGNATURE_BYTE_COUNT) {
+                return false;
+            }
+            EdDSAPublicKey publicKey = (EdDSAPublicKey) verification.getPublicKey();
+            byte[] r = Arrays.copyOfRange(verification.getSignature(), 0, 32);
+            byte[] s = Arrays.copyOfRange(verification.getSignature(), 32, SIGNATURE_BYTE_COUNT);
+            if (!isReducedScalar(s)) {
+                return false;
+            }
+
+            // h = H(R || A || M)
+            digest.update(r);
+            digest.update(publicKey.getAbyte());
+            digest.update(verification.getExpectedMessage());
+            byte[] h = scalarOps.reduce(digest.digest());
+
+            byte[] z = new byte[32];
+            random.nextBytes(z);
+            Arrays.fill(z, COEFFICIENT_BYTE_COUNT, z.length, (byte) 0);
+
+            points[2 * i] = new GroupElement(curve, r);
+            scalars[2 * i] = z;
+            points[2 * i + 1] = publicKey.getA();
+            scalars[2 * i + 1] = scalarOps.multiplyAndAdd(z, h, zero);
+            baseScalar = scalarOps.multiplyAndAdd(z, s, baseScalar);
+        }
+
+        // the base point has a precomputed table, its scalar multiplication is cheap
+        GroupElement sum = multiScalarMultiply(curve, points, scalars)
+                .sub(parameterSpec.getB().scalarMultiply(baseScalar).toCached())
+                .toP3();
+        for (int i = 0; i < 3; i++) {
+            sum = sum.dbl().toP3();
+        }
+        return Arrays.equals(sum.toByteArray(), curve.getZero(GroupElement.Representation.P3).toByteArray());
+    }
+
+    /**
+     * Computes sum(scalars[i] * points[i]) with the bucket method. The scalars are split into windows of c bits, per
+     * window every point is added to the bucket of its digit and the buckets are summed up weighted by their digit.
+     */
+    private static GroupElement multiScalarMultiply(Curve curve, GroupElement[] points, byte[][] scalars) {
+        int windowBits = Math.max(2, (int) Math.round(Math.log(points.length)));
+        int windowCount = (256 + windowBits - 1) / windowBits;
+
+        GroupElement[] cachedPoints = new GroupElement[points.length];
+        for (int i = 0; i < points.length; i++) {
+            cachedPoints[i] = points[i].toCached();
+        }
+
+        GroupElement result = curve.getZero(GroupElement.Representation.P3);
+        GroupElement[] buckets = new GroupElement[1 << windowBits];
+        for (int window = windowCount - 1; window >= 0; window--) {
+            for (int i = 0; i < windowBits; i++) {
+                result = result.dbl().toP3();
+            }
+
+            Arrays.fill(buckets, null);
+            for (int i = 0; i < points.length; i++) {
+                int digit = digit(scalars[i], window * windowBits, windowBits);
+                if (digit != 0) {
+                    buckets[digit] = buckets[digit] == null ? points[i] : buckets[digit].add(cachedPoints[i]).toP3();
+                }
+            }
+
+            // sum(digit * bucket) as a sum of running sums from the highest digit down
+            GroupElement runningSum = null;
+            GroupElement windowSum = null;
+            for (int digit = buckets.length - 1; digit > 0; digit--) {
+                if (buckets[digit] != null) {
+                    runningSum = runningSum == null ? buckets[digit] : runningSum.add(buckets[digit].toCached()).toP3();
+                }
+                if (runningSum != null) {
+                    windowSum = windowSum == null ? runningSum : windowSum.add(runningSum.toCached()).toP3();
+                }
+            }
+            if (windowSum != null) {
+                result = result.add(windowSum.toCached()).toP3();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the bits [offset, offset + bits) of the little endian scalar
+     */
+    private static int digit(byte[] scalar, int offset, int bits) {
+        int digit = 0;
+        for (int i = 0; i < bits && offset + i < 256; i++) {
+            int bit = offset + i;
+            digit |= ((scalar[bit >> 3] >> (bit & 7)) & 1) << i;
+        }
+        return digit;
+    }
+
+    /**
+     * @return true if the little endian scalar is smaller than the group order
+     */
+    private static boolean isReducedScalar(byte[] scalar) {
+        for (int i = scalar.length - 1; i >= 0; i--) {
+            int a = scalar[i] & 0xff;
+            int b = GROUP_ORDER[i] & 0xff;
+            if (a != b) {
+                return a < b;
+            }
+        }
+        return false;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-512 is not available", e);
+        }
     }
 
     @Override
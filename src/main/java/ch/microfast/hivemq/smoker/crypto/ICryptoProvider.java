@@ -1,6 +1,7 @@
 package ch.microfast.hivemq.smoker.crypto;
 
 import java.security.*;
+import java.util.List;
 
 /**
  * The {@link ICryptoProvider} provides all crypto functions needed to implement the SMOKER authentication and
@@ -38,6 +39,27 @@ public interface ICryptoProvider {
      */
     boolean verify(PublicKey publicKey, byte[] signature, byte[] expectedMessage) throws InvalidKeyException, SignatureException;
 
+    /**
+     * Verify several signatures at once. Implementations may verify the whole batch in one go, which is faster than
+     * verifying every signature on its own. If the batch is not valid, every signature is verified on its own to
+     * identify the invalid ones.
+     *
+     * @param verifications the signatures to be verified
+     * @return for every verification whether it was successful, in the order of the given verifications
+     */
+    default boolean[] verifyBatch(List<SignatureVerification> verifications) {
+        boolean[] results = new boolean[verifications.size()];
+        for (int i = 0; i < results.length; i++) {
+            SignatureVerification verification = verifications.get(i);
+            try {
+                results[i] = verify(verification.getPublicKey(), verification.getSignature(), verification.getExpectedMessage());
+            } catch (InvalidKeyException | SignatureException | RuntimeException e) {
+                results[i] = false;
+            }
+        }
+        return results;
+    }
+
     /**
      * Generates random bytes.
      *
@@ -0,0 +1,172 @@
+package ch.microfast.hivemq.smoker.crypto;
+
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+
+import java.math.BigInteger;
+import java.security.*;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * The implementation of a {@link ICryptoProvider} with the EdDSA (Ed25519) signature scheme built into the JDK. It is
+ * wire-compatible with the {@link EddsaCryptoProvider}: client ids are the Base32 encoded raw 32 byte public keys and
+ * signatures with the message appended are accepted as well.
+ *
+ * <p>
+ * Requires a JVM with Ed25519 support (Java 15 or later), the construction fails with a {@link NoSuchAlgorithmException}
+ * otherwise. Raw public keys are wrapped into their X.509 encoding, so the provider compiles against Java 11.
+ * </p>
+ *
+ * <p>
+ * The provider is safe to share across threads, every thread works with its own signature engine.
+ * </p>
+ */
+@ThreadSafe
+public class JdkEd25519CryptoProvider implements ICryptoProvider {
+
+    private static final String ALGORITHM = "Ed25519";
+
+    /**
+     * We are working with EdDSA signatures that are 64 bytes in length.
+     */
+    private static final int SIGNATURE_BYTE_COUNT = 64;
+
+    private static final int PUBLIC_KEY_BYTE_COUNT = 32;
+
+    /**
+     * The DER prefix of the X.509 encoding of a Ed25519 public key, followed by the raw public key
+     */
+    private static final byte[] X509_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00
+    };
+
+    /**
+     * The field prime p = 2^255 - 19
+     */
+    private static final BigInteger P = BigInteger.TWO.pow(255).subtract(BigInteger.valueOf(19));
+
+    /**
+     * The curve constant d = -121665 / 121666
+     */
+    private static final BigInteger D = BigInteger.valueOf(-121665).multiply(BigInteger.valueOf(121666).modInverse(P)).mod(P);
+
+    private final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(JdkEd25519CryptoProvider::newSignature);
+    private final KeyFactory keyFactory;
+    private final SecureRandom random;
+
+    /**
+     * Initializes the crypto provider with the Ed25519 signature scheme of the JDK.
+     *
+     * @throws NoSuchAlgorithmException thrown if the JDK does not support Ed25519
+     */
+    public JdkEd25519CryptoProvider() throws NoSuchAlgorithmException {
+        // fail early if Ed25519 is not available, the engines are created lazily per thread
+        Signature.getInstance(ALGORITHM);
+        this.keyFactory = KeyFactory.getInstance(ALGORITHM);
+        this.random = new SecureRandom();
+    }
+
+    @Override
+    public KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(ALGORITHM);
+            keyPairGenerator.initialize(255, random);
+            return keyPairGenerator.generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Ed25519 is not available", e);
+        }
+    }
+
+    @Override
+    public byte[] sign(PrivateKey privateKey, byte[] message) throws InvalidKeyException, SignatureException {
+        Signature signature = signatures.get();
+        signature.initSign(privateKey);
+        signature.update(message);
+        return signature.sign();
+    }
+
+    @Override
+    public boolean verify(PublicKey publicKey, byte[] signature, byte[] expectedMessage) throws InvalidKeyException, SignatureException {
+        byte[] signatureBytes;
+
+        // Expecting a 64 byte EdDSA signature of a message
+        // Some EdDSA implementations append the message to the signature bytes - therefore cut this suffix if so
+        if (signature != null && signature.length > SIGNATURE_BYTE_COUNT) {
+            signatureBytes = Arrays.copyOfRange(signature, 0, SIGNATURE_BYTE_COUNT);
+        } else {
+            signatureBytes = signature;
+        }
+
+        Signature engine = signatures.get();
+        engine.initVerify(publicKey);
+        engine.update(expectedMessage);
+        return engine.verify(signatureBytes);
+    }
+
+    @Override
+    public byte[] generateRandomBytes(int byteCount) {
+        byte[] bytes = new byte[byteCount];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a valid Ed25519 public key, like the {@link EddsaCryptoProvider}
+     */
+    @Override
+    public PublicKey convertByteArrayToPublicKey(byte[] publicKeyBytes) {
+        if (publicKeyBytes == null || publicKeyBytes.length != PUBLIC_KEY_BYTE_COUNT) {
+            throw new IllegalArgumentException("public-key length is wrong");
+        }
+        // the JDK decodes the curve point only when verifying, invalid client ids must be rejected here already
+        if (!isValidPoint(publicKeyBytes)) {
+            throw new IllegalArgumentException("public-key is not a valid point");
+        }
+
+        byte[] encoded = Arrays.copyOf(X509_PREFIX, X509_PREFIX.length + PUBLIC_KEY_BYTE_COUNT);
+        System.arraycopy(publicKeyBytes, 0, encoded, X509_PREFIX.length, PUBLIC_KEY_BYTE_COUNT);
+        try {
+            return keyFactory.generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalArgumentException("public-key is not valid", e);
+        }
+    }
+
+    /**
+     * Checks whether the encoded point can be decompressed (RFC 8032, section 5.1.3): y must be reduced and
+     * x^2 = (y^2 - 1) / (d * y^2 + 1) must have a square root.
+     */
+    private static boolean isValidPoint(byte[] publicKeyBytes) {
+        boolean isXOdd = (publicKeyBytes[PUBLIC_KEY_BYTE_COUNT - 1] & 0x80) != 0;
+
+        // little endian y without the sign bit of x
+        byte[] yBytes = new byte[PUBLIC_KEY_BYTE_COUNT];
+        for (int i = 0; i < PUBLIC_KEY_BYTE_COUNT; i++) {
+            yBytes[i] = publicKeyBytes[PUBLIC_KEY_BYTE_COUNT - 1 - i];
+        }
+        yBytes[0] &= 0x7f;
+        BigInteger y = new BigInteger(1, yBytes);
+        if (y.compareTo(P) >= 0) {
+            return false;
+        }
+
+        BigInteger ySquare = y.multiply(y).mod(P);
+        BigInteger u = ySquare.subtract(BigInteger.ONE).mod(P);
+        BigInteger v = D.multiply(ySquare).add(BigInteger.ONE).mod(P);
+        BigInteger xSquare = u.multiply(v.modInverse(P)).mod(P);
+        if (xSquare.signum() == 0) {
+            return !isXOdd;
+        }
+        // Euler's criterion
+        return xSquare.modPow(P.subtract(BigInteger.ONE).shiftRight(1), P).equals(BigInteger.ONE);
+    }
+
+    private static Signature newSignature() {
+        try {
+            return Signature.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Ed25519 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ch.microfast.hivemq.smoker.crypto;
+
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.apache.commons.codec.binary.Base32;
+
+import java.security.PublicKey;
+import java.util.Optional;
+
+/**
+ * Bounded cache of the public keys encoded in SMOKER client ids (Base32 of the raw public key). Decoding a public key
+ * decompresses the curve point and precomputes its tables for the verification, the cached keys are ready to use.
+ * Shared by the authentication and the claim validation, a client therefore pays the decoding once for all its
+ * reconnects and claims.
+ *
+ * <p>
+ * Client ids which are not a valid public key are held in a separate negative cache, so they can't evict valid keys.
+ * </p>
+ */
+public class PublicKeyCache {
+
+    private final ICryptoProvider cryptoProvider;
+
+    private final Cache<String, PublicKey> publicKeys;
+
+    private final Cache<String, Boolean> invalidClientIds;
+
+    @Inject
+    public PublicKeyCache(
+            ICryptoProvider cryptoProvider,
+            @Named("crypto.public.key.cache.max.entries") long maxEntries,
+            @Named("crypto.public.key.negative.cache.max.entries") long maxInvalidEntries,
+            MetricRegistry metricRegistry
+    ) {
+        this.cryptoProvider = cryptoProvider;
+        this.publicKeys = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        this.invalidClientIds = Caffeine.newBuilder()
+                .maximumSize(maxInvalidEntries)
+                .build();
+
+        metricRegistry.gauge(SmokerMetrics.name("crypto", "public-key-cache", "hits"), () -> (Gauge<Long>) () -> publicKeys.stats().hitCount());
+        metricRegistry.gauge(SmokerMetrics.name("crypto", "public-key-cache", "misses"), () -> (Gauge<Long>) () -> publicKeys.stats().missCount());
+        metricRegistry.gauge(SmokerMetrics.name("crypto", "public-key-cache", "size"), () -> (Gauge<Long>) publicKeys::estimatedSize);
+        metricRegistry.gauge(SmokerMetrics.name("crypto", "public-key-cache", "invalid-size"), () -> (Gauge<Long>) invalidClientIds::estimatedSize);
+    }
+
+    /**
+     * @param clientId the Base32 encoded public key
+     * @return the decoded public key or empty if the client id is not a valid public key
+     */
+    public Optional<PublicKey> getPublicKey(String clientId) {
+        if (clientId == null || invalidClientIds.getIfPresent(clientId) != null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(publicKeys.get(clientId, this::decode));
+    }
+
+    private PublicKey decode(String clientId) {
+        try {
+            return cryptoProvider.convertByteArrayToPublicKey(new Base32().decode(clientId));
+        } catch (IllegalArgumentException e) {
+            invalidClientIds.put(clientId, Boolean.TRUE);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ch.microfast.hivemq.smoker.crypto;
+
+import java.security.PublicKey;
+
+/**
+ * A signature to be verified as part of a batch, see {@link ICryptoProvider#verifyBatch}
+ */
+public final class SignatureVerification {
+
+    private final PublicKey publicKey;
+
+    private final byte[] signature;
+
+    private final byte[] expectedMessage;
+
+    /**
+     * @param publicKey       the verifiying public key
+     * @param signature       the signature to be verified
+     * @param expectedMessage the expected messages which was signed
+     */
+    public SignatureVerification(PublicKey publicKey, byte[] signature, byte[] expectedMessage) {
+        this.publicKey = publicKey;
+        this.signature = signature;
+        this.expectedMessage = expectedMessage;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    public byte[] getExpectedMessage() {
+        return expectedMessage;
+    }
+}
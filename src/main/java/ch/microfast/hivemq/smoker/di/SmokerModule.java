@@ -1,32 +1,54 @@
 package ch.microfast.hivemq.smoker.di;
 
 import ch.microfast.hivemq.smoker.SmokerExtension;
+import ch.microfast.hivemq.smoker.audit.AuditLog;
+import ch.microfast.hivemq.smoker.authn.HandshakeAdmission;
+import ch.microfast.hivemq.smoker.authn.NoncePool;
+import ch.microfast.hivemq.smoker.authn.NonceRegistry;
+import ch.microfast.hivemq.smoker.authn.SmokerClientLifecycleEventListener;
 import ch.microfast.hivemq.smoker.authn.SmokerConnectInboundInterceptor;
+import ch.microfast.hivemq.smoker.authn.providers.SmokerClientLifecycleEventListenerProvider;
 import ch.microfast.hivemq.smoker.authn.providers.SmokerConnectInboundInterceptorProvider;
 import ch.microfast.hivemq.smoker.authn.providers.SmokerEnhancedAuthenticationProvider;
 import ch.microfast.hivemq.smoker.authn.SmokerEnhancedAuthenticator;
+import ch.microfast.hivemq.smoker.authz.persistance.CachingClaimStore;
 import ch.microfast.hivemq.smoker.authz.persistance.ChronicleMapDiskClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.WalClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.WriteBehindClaimStore;
 import ch.microfast.hivemq.smoker.authz.providers.SmokerAuthorizerProvider;
 import ch.microfast.hivemq.smoker.authz.SmokerClientInitializer;
 import ch.microfast.hivemq.smoker.authz.SmokerPublishInboundInterceptor;
+import ch.microfast.hivemq.smoker.authz.SmokerPublishOutboundInterceptor;
 import ch.microfast.hivemq.smoker.authz.SmokerPublishSubscribeAuthorizer;
 import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.authz.validation.BatchingClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.ClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
 import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
 import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.JdkEd25519CryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
 import ch.microfast.hivemq.smoker.authz.persistance.IClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.MeteredClaimStore;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionCache;
 import ch.microfast.hivemq.smoker.authz.services.AuthzService;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
+import ch.microfast.hivemq.smoker.authz.services.ClaimPipeline;
 import ch.microfast.hivemq.smoker.authz.services.IAuthzService;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
 import com.google.inject.name.Names;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
 import com.hivemq.extension.sdk.api.auth.Authorizer;
 import com.hivemq.extension.sdk.api.auth.EnhancedAuthenticator;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListener;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListenerProvider;
 import com.hivemq.extension.sdk.api.interceptor.connect.ConnectInboundInterceptor;
 import com.hivemq.extension.sdk.api.interceptor.connect.ConnectInboundInterceptorProvider;
 import com.hivemq.extension.sdk.api.interceptor.publish.PublishInboundInterceptor;
+import com.hivemq.extension.sdk.api.interceptor.publish.PublishOutboundInterceptor;
+import com.hivemq.extension.sdk.api.services.Services;
 import com.hivemq.extension.sdk.api.services.auth.provider.AuthorizerProvider;
 import com.hivemq.extension.sdk.api.services.auth.provider.EnhancedAuthenticatorProvider;
 import com.hivemq.extension.sdk.api.services.intializer.ClientInitializer;
@@ -35,6 +57,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * DI configuration for the SMOKER extension
@@ -44,10 +67,14 @@ public class SmokerModule extends AbstractModule {
 
     @Override
     protected void configure() {
+        Properties config = bindConfig();
+
         bind(SmokerJsonSerializer.class).in(Scopes.SINGLETON);
-        bind(IClaimStore.class).to(ChronicleMapDiskClaimStore.class).in(Scopes.SINGLETON);
+        bindClaimStore(config);
         bind(IClaimValidator.class).to(ClaimValidator.class);
-        bind(ICryptoProvider.class).to(EddsaCryptoProvider.class);
+        bind(BatchingClaimValidator.class).in(Scopes.SINGLETON);
+        bindCryptoProvider(config);
+        bind(PublicKeyCache.class).in(Scopes.SINGLETON);
         bind(ClientInitializer.class).to(SmokerClientInitializer.class);
         bind(ConnectInboundInterceptor.class).to(SmokerConnectInboundInterceptor.class);
         bind(ConnectInboundInterceptorProvider.class).to(SmokerConnectInboundInterceptorProvider.class);
@@ -55,23 +82,92 @@ public class SmokerModule extends AbstractModule {
         bind(AuthorizerProvider.class).to(SmokerAuthorizerProvider.class);
         bind(EnhancedAuthenticator.class).to(SmokerEnhancedAuthenticator.class);
         bind(EnhancedAuthenticatorProvider.class).to(SmokerEnhancedAuthenticationProvider.class);
+        bind(NoncePool.class).in(Scopes.SINGLETON);
+        bind(HandshakeAdmission.class).in(Scopes.SINGLETON);
+        bind(NonceRegistry.class).in(Scopes.SINGLETON);
+        bind(ClientLifecycleEventListener.class).to(SmokerClientLifecycleEventListener.class);
+        bind(ClientLifecycleEventListenerProvider.class).to(SmokerClientLifecycleEventListenerProvider.class);
         bind(PublishInboundInterceptor.class).to(SmokerPublishInboundInterceptor.class);
-        bind(IAuthzService.class).to(AuthzService.class);
+        bind(PublishOutboundInterceptor.class).to(SmokerPublishOutboundInterceptor.class);
+        bind(IAuthzService.class).to(AuthzService.class).in(Scopes.SINGLETON);
+        bind(AuthzDecisionCache.class).in(Scopes.SINGLETON);
+        bind(AuthzWarmStartIndex.class).in(Scopes.SINGLETON);
+        bind(ClaimPipeline.class).in(Scopes.SINGLETON);
+        bind(AuditLog.class).in(Scopes.SINGLETON);
+        bind(MetricRegistry.class).toInstance(Services.metricRegistry());
+        bind(ScheduledExecutorService.class).toInstance(Services.extensionExecutorService());
+    }
+
+    /**
+     * Binds the configured crypto provider, both providers are wire-compatible
+     */
+    private void bindCryptoProvider(Properties config) {
+        Class<? extends ICryptoProvider> providerClass;
+        String provider = config.getProperty("crypto.provider");
+        switch (String.valueOf(provider)) {
+            case "eddsa":
+                providerClass = EddsaCryptoProvider.class;
+                break;
+            case "jdk":
+                providerClass = JdkEd25519CryptoProvider.class;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown crypto.provider:=" + provider + ", expected eddsa or jdk");
+        }
+        bind(ICryptoProvider.class).to(providerClass).in(Scopes.SINGLETON);
+    }
+
+    /**
+     * Binds the configured claim store, optionally behind a write-behind queue and a read-through cache, all behind
+     * the metered store
+     */
+    private void bindClaimStore(Properties config) {
+        Class<? extends IClaimStore> storeClass;
+        String storeType = config.getProperty("store.type");
+        switch (String.valueOf(storeType)) {
+            case "chronicle":
+                storeClass = ChronicleMapDiskClaimStore.class;
+                break;
+            case "wal":
+                storeClass = WalClaimStore.class;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store.type:=" + storeType + ", expected chronicle or wal");
+        }
+
+        if (Boolean.parseBoolean(config.getProperty("store.write.behind.enabled"))) {
+            bind(IClaimStore.class).annotatedWith(Names.named(WriteBehindClaimStore.DURABLE_STORE)).to(storeClass).in(Scopes.SINGLETON);
+            storeClass = WriteBehindClaimStore.class;
+        }
+
+        if (Boolean.parseBoolean(config.getProperty("store.cache.enabled"))) {
+            bind(IClaimStore.class).annotatedWith(Names.named(CachingClaimStore.BACKING_STORE)).to(storeClass).in(Scopes.SINGLETON);
+            storeClass = CachingClaimStore.class;
+        }
 
-        bindConfig();
+        bind(IClaimStore.class).annotatedWith(Names.named(MeteredClaimStore.METERED_STORE)).to(storeClass).in(Scopes.SINGLETON);
+        bind(IClaimStore.class).to(MeteredClaimStore.class).in(Scopes.SINGLETON);
     }
 
     /**
-     * Load config file and bind it to the module
+     * Load config file and bind it to the module, a property of the config file is overridden by a system property of
+     * the same name
      */
-    private void bindConfig() {
+    private Properties bindConfig() {
+        Properties props = new Properties();
         try {
-            Properties props = new Properties();
             props.load(getClass().getResourceAsStream("/config/smive.properties"));
+            for (String name : props.stringPropertyNames()) {
+                String override = System.getProperty(name);
+                if (override != null) {
+                    props.setProperty(name, override);
+                }
+            }
             Names.bindProperties(binder(), props);
         } catch (IOException e) {
             log.error("Could not load config: ", e);
             System.exit(1);
         }
+        return props;
     }
 }
@@ -0,0 +1,38 @@
+package ch.microfast.hivemq.smoker.metrics;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Naming of the metrics this extension registers in the {@link MetricRegistry} of HiveMQ
+ */
+public final class SmokerMetrics {
+
+    /**
+     * Prefix of all metrics registered by this extension
+     */
+    public static final String METRIC_PREFIX = "ch.microfast.hivemq.smoker";
+
+    private SmokerMetrics() {
+    }
+
+    /**
+     * Builds the full metric name of the given name parts
+     *
+     * @param names the name parts, e.g. "authz", "decision-cache", "hits"
+     * @return the metric name prefixed with {@link #METRIC_PREFIX}
+     */
+    public static String name(String... names) {
+        return MetricRegistry.name(METRIC_PREFIX, names);
+    }
+
+    /**
+     * Removes all metrics of this extension. The registry of HiveMQ outlives the extension, the gauges would keep
+     * reading the instances of a stopped extension otherwise.
+     *
+     * @param metricRegistry the registry the metrics were registered in
+     */
+    public static void removeAll(MetricRegistry metricRegistry) {
+        metricRegistry.removeMatching(MetricFilter.startsWith(METRIC_PREFIX + "."));
+    }
+}
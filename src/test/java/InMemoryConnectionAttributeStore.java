@@ -0,0 +1,45 @@
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The attribute store of a single connection
+ */
+public class InMemoryConnectionAttributeStore implements ConnectionAttributeStore {
+
+    private final Map<String, ByteBuffer> attributes = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String key, ByteBuffer value) {
+        attributes.put(key, value);
+    }
+
+    @Override
+    public void putAsString(String key, String value) {
+        put(key, StandardCharsets.UTF_8.encode(value));
+    }
+
+    @Override
+    public Optional<ByteBuffer> get(String key) {
+        return Optional.ofNullable(attributes.get(key)).map(ByteBuffer::asReadOnlyBuffer);
+    }
+
+    @Override
+    public Optional<String> getAsString(String key) {
+        return get(key).map(value -> StandardCharsets.UTF_8.decode(value).toString());
+    }
+
+    @Override
+    public Optional<ByteBuffer> remove(String key) {
+        return Optional.ofNullable(attributes.remove(key));
+    }
+
+    @Override
+    public void clear() {
+        attributes.clear();
+    }
+}
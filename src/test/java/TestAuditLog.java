@@ -0,0 +1,128 @@
+import ch.microfast.hivemq.smoker.audit.AuditLog;
+import ch.microfast.hivemq.smoker.audit.AuditLogReader;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionReason;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAuditLog {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testRecordsToNdjson() throws IOException {
+        // Arrange
+        Path directory = temporaryFolder.getRoot().toPath();
+        AuditLog auditLog = new AuditLog(true, directory.toString(), 1 << 20, 4, 1024, 1000, 1, 1, new MetricRegistry());
+
+        // Act
+        auditLog.recordClaim("OWNER", "restricted/OWNER/topic");
+        auditLog.recordDecision("READER", "restricted/OWNER/topic", TopicPermission.MqttActivity.SUBSCRIBE, true, AuthzDecisionReason.WHITELIST);
+        auditLog.recordDecision("OTHER", "restricted/OWNER/topic", TopicPermission.MqttActivity.PUBLISH, false, AuthzDecisionReason.BLACKLIST);
+        auditLog.recordUnclaim("OWNER", "restricted/OWNER/topic");
+        auditLog.close();
+        List<JsonNode> records = readRecords(directory);
+
+        // Assert
+        assertEquals(4, records.size());
+        assertEquals("claim", records.get(0).get("type").asText());
+        assertEquals("OWNER", records.get(0).get("clientId").asText());
+        assertEquals("restricted/OWNER/topic", records.get(0).get("topic").asText());
+        assertEquals("decision", records.get(1).get("type").asText());
+        assertEquals("READER", records.get(1).get("clientId").asText());
+        assertEquals("subscribe", records.get(1).get("activity").asText());
+        assertTrue(records.get(1).get("allowed").asBoolean());
+        assertEquals("whitelist", records.get(1).get("reason").asText());
+        assertEquals("publish", records.get(2).get("activity").asText());
+        assertFalse(records.get(2).get("allowed").asBoolean());
+        assertEquals("blacklist", records.get(2).get("reason").asText());
+        assertEquals("unclaim", records.get(3).get("type").asText());
+    }
+
+    @Test
+    public void testSampling() throws IOException {
+        // Arrange
+        Path directory = temporaryFolder.getRoot().toPath();
+        AuditLog auditLog = new AuditLog(true, directory.toString(), 1 << 20, 4, 1024, 1000, 0, 1, new MetricRegistry());
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            auditLog.recordDecision("CLIENT", "topic/" + i, TopicPermission.MqttActivity.PUBLISH, i % 2 == 0, AuthzDecisionReason.UNRESTRICTED);
+        }
+        auditLog.close();
+        List<JsonNode> records = readRecords(directory);
+
+        // Assert
+        assertEquals(50, records.size());
+        assertTrue(records.stream().noneMatch(r -> r.get("allowed").asBoolean()));
+    }
+
+    @Test
+    public void testRollsFiles() throws IOException, InterruptedException {
+        // Arrange
+        Path directory = temporaryFolder.getRoot().toPath();
+        AuditLog auditLog = new AuditLog(true, directory.toString(), 1 << 20, 2, 1024, 1000, 1, 1, new MetricRegistry());
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            while (auditLog.getDepth() > 512) {
+                Thread.sleep(1);
+            }
+            auditLog.recordDecision("CLIENT", "topic/" + (i % 100), TopicPermission.MqttActivity.PUBLISH, true, AuthzDecisionReason.UNRESTRICTED);
+        }
+        auditLog.close();
+        List<Path> files = listFiles(directory);
+
+        // Assert
+        assertEquals(2, files.size());
+        assertTrue(files.get(1).getFileName().toString().compareTo(files.get(0).getFileName().toString()) > 0);
+        for (Path file : files) {
+            // every file defines its symbols
+            StringWriter writer = new StringWriter();
+            AuditLogReader.toNdjson(file, writer);
+            String firstLine = writer.toString().split("\n")[0];
+            assertEquals("CLIENT", objectMapper.readTree(firstLine).get("clientId").asText());
+            assertTrue(objectMapper.readTree(firstLine).get("topic").asText().startsWith("topic/"));
+        }
+    }
+
+    private List<JsonNode> readRecords(Path directory) throws IOException {
+        StringWriter writer = new StringWriter();
+        for (Path file : listFiles(directory)) {
+            AuditLogReader.toNdjson(file, writer);
+        }
+        List<JsonNode> records = new ArrayList<>();
+        for (String line : writer.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                records.add(objectMapper.readTree(line));
+            }
+        }
+        return records;
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
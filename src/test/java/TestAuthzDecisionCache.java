@@ -0,0 +1,94 @@
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecision;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionCache;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionReason;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAuthzDecisionCache {
+
+    private AuthzDecisionCache decisionCache;
+
+    private AtomicInteger evaluations;
+
+    @Before
+    public void SetUp() {
+        decisionCache = new AuthzDecisionCache(1000, new MetricRegistry());
+        evaluations = new AtomicInteger();
+    }
+
+    @Test
+    public void testCacheHit() {
+        // Arrange & Act
+        boolean first = evaluate("restricted/OWNER/topic", true);
+        boolean second = evaluate("restricted/OWNER/topic", false);
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        assertEquals(1, evaluations.get());
+        assertEquals(1, decisionCache.getHitCount());
+        assertEquals(1, decisionCache.getMissCount());
+    }
+
+    @Test
+    public void testInvalidateTopic() {
+        // Arrange
+        evaluate("restricted/OWNER/topic", true);
+        evaluate("restricted/OWNER/+", true);
+
+        // Act
+        decisionCache.invalidateTopic("restricted/OWNER/topic");
+
+        // Assert
+        assertFalse(evaluate("restricted/OWNER/topic", false));
+        assertFalse(evaluate("restricted/OWNER/+", false));
+        assertEquals(4, evaluations.get());
+    }
+
+    @Test
+    public void testFindCurrent() {
+        // Arrange
+        evaluate("restricted/OWNER/topic", true);
+
+        // Act
+        decisionCache.invalidateTopic("restricted/OWNER/other");
+        boolean isCurrentAfterOtherTopic = decisionCache.findCurrent("CLIENT", "restricted/OWNER/topic", TopicPermission.MqttActivity.PUBLISH, true).map(AuthzDecision::isAllowed).orElse(false);
+        decisionCache.invalidateTopic("restricted/OWNER/topic");
+
+        // Assert
+        assertTrue(isCurrentAfterOtherTopic);
+        assertFalse(decisionCache.findCurrent("CLIENT", "restricted/OWNER/topic", TopicPermission.MqttActivity.PUBLISH, true).isPresent());
+        assertFalse(decisionCache.findCurrent("CLIENT", "restricted/OWNER/unknown", TopicPermission.MqttActivity.PUBLISH, true).isPresent());
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    public void testCachedDecisionKeepsReason() {
+        // Arrange
+        decisionCache.getOrEvaluate("CLIENT", "restricted/OWNER/topic", TopicPermission.MqttActivity.PUBLISH, true, () -> AuthzDecision.of(AuthzDecisionReason.BLACKLIST, false));
+
+        // Act
+        AuthzDecision cachedDecision = decisionCache.getOrEvaluate("CLIENT", "restricted/OWNER/topic", TopicPermission.MqttActivity.PUBLISH, true, () -> AuthzDecision.of(AuthzDecisionReason.OWNER, true));
+        AuthzDecision currentDecision = decisionCache.findCurrent("CLIENT", "restricted/OWNER/topic", TopicPermission.MqttActivity.PUBLISH, true).get();
+
+        // Assert
+        assertEquals(AuthzDecisionReason.BLACKLIST, cachedDecision.getReason());
+        assertFalse(cachedDecision.isAllowed());
+        assertEquals(cachedDecision, currentDecision);
+    }
+
+    private boolean evaluate(String topic, boolean decision) {
+        return decisionCache.getOrEvaluate("CLIENT", topic, TopicPermission.MqttActivity.PUBLISH, true, () -> {
+            evaluations.incrementAndGet();
+            return AuthzDecision.of(AuthzDecisionReason.WHITELIST, decision);
+        }).isAllowed();
+    }
+}
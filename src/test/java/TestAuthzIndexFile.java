@@ -0,0 +1,107 @@
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionReason;
+import ch.microfast.hivemq.smoker.authz.services.AuthzIndexFile;
+import ch.microfast.hivemq.smoker.authz.services.ClaimPermissionTable;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAuthzIndexFile {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testFind() throws IOException {
+        // Arrange
+        List<ClaimPermissionTable> tables = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tables.add(ClaimPermissionTable.compile(TestClaims.createClaim("restricted/OWNER/topic/" + i, "READER_" + i, TopicPermission.MqttActivity.SUBSCRIBE)));
+        }
+        Path file = temporaryFolder.getRoot().toPath().resolve("authz.idx");
+
+        // Act
+        AuthzIndexFile.write(file, tables);
+        AuthzIndexFile indexFile = AuthzIndexFile.open(file);
+
+        // Assert
+        assertEquals(100, indexFile.size());
+        for (int i = 0; i < 100; i++) {
+            Optional<ClaimPermissionTable> table = indexFile.find("restricted/OWNER/topic/" + i);
+            assertTrue(table.isPresent());
+            assertEquals("restricted/OWNER/topic/" + i, table.get().getTopicName());
+            assertTrue(table.get().isGranted("OWNER", TopicPermission.MqttActivity.PUBLISH));
+            assertTrue(table.get().isGranted("READER_" + i, TopicPermission.MqttActivity.SUBSCRIBE));
+            assertFalse(table.get().isGranted("READER_" + i, TopicPermission.MqttActivity.PUBLISH));
+            assertFalse(table.get().isGranted("ANYONE", TopicPermission.MqttActivity.SUBSCRIBE));
+        }
+        assertFalse(indexFile.find("restricted/OWNER/topic/100").isPresent());
+        assertFalse(indexFile.find("restricted/A").isPresent());
+        assertFalse(indexFile.find("restricted/Z").isPresent());
+    }
+
+    @Test
+    public void testFindTopicsByPrefix() throws IOException {
+        // Arrange
+        List<ClaimPermissionTable> tables = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tables.add(ClaimPermissionTable.compile(TestClaims.createClaim("restricted/OWNER_A/topic/" + i, "*", TopicPermission.MqttActivity.SUBSCRIBE)));
+            tables.add(ClaimPermissionTable.compile(TestClaims.createClaim("restricted/OWNER_B/topic/" + i, "*", TopicPermission.MqttActivity.SUBSCRIBE)));
+        }
+        Path file = temporaryFolder.getRoot().toPath().resolve("authz.idx");
+
+        // Act
+        AuthzIndexFile.write(file, tables);
+        AuthzIndexFile indexFile = AuthzIndexFile.open(file);
+
+        // Assert
+        assertEquals(50, indexFile.findTopicsByPrefix("restricted/OWNER_A").size());
+        assertEquals(11, indexFile.findTopicsByPrefix("restricted/OWNER_B/topic/1").size());
+        assertEquals(100, indexFile.findTopicsByPrefix("").size());
+        assertEquals(0, indexFile.findTopicsByPrefix("restricted/OWNER_C").size());
+    }
+
+    @Test
+    public void testRestrictionTypeRoundTrip() throws IOException {
+        // Arrange
+        List<ClaimPermissionTable> tables = new ArrayList<>();
+        tables.add(ClaimPermissionTable.compile(TestClaims.createClaim("restricted/OWNER/blacklisted", RestrictionType.BLACKLIST, TestClaims.createPermission("READER", TopicPermission.MqttActivity.SUBSCRIBE))));
+        tables.add(ClaimPermissionTable.compile(TestClaims.createClaim("restricted/OWNER/whitelisted", RestrictionType.WHITELIST, TestClaims.createPermission("READER", TopicPermission.MqttActivity.SUBSCRIBE))));
+        Path file = temporaryFolder.getRoot().toPath().resolve("authz.idx");
+
+        // Act
+        AuthzIndexFile.write(file, tables);
+        AuthzIndexFile indexFile = AuthzIndexFile.open(file);
+
+        // Assert
+        assertEquals(AuthzDecisionReason.BLACKLIST, indexFile.find("restricted/OWNER/blacklisted").get().getReason("READER"));
+        assertEquals(AuthzDecisionReason.WHITELIST, indexFile.find("restricted/OWNER/whitelisted").get().getReason("READER"));
+        assertEquals(AuthzDecisionReason.OWNER, indexFile.find("restricted/OWNER/whitelisted").get().getReason("OWNER"));
+    }
+
+    @Test
+    public void testEmptyIndex() throws IOException {
+        // Arrange
+        Path file = temporaryFolder.getRoot().toPath().resolve("authz.idx");
+
+        // Act
+        AuthzIndexFile.write(file, new ArrayList<>());
+        AuthzIndexFile indexFile = AuthzIndexFile.open(file);
+
+        // Assert
+        assertEquals(0, indexFile.size());
+        assertFalse(indexFile.find("restricted/OWNER/topic").isPresent());
+        assertEquals(0, indexFile.findTopicsByPrefix("restricted").size());
+    }
+}
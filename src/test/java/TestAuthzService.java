@@ -1,19 +1,27 @@
+import ch.microfast.hivemq.smoker.audit.AuditLog;
 import ch.microfast.hivemq.smoker.authz.domain.Claim;
 import ch.microfast.hivemq.smoker.authz.domain.Permission;
 import ch.microfast.hivemq.smoker.authz.domain.Restriction;
 import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
 import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
 import ch.microfast.hivemq.smoker.authz.serialization.SmokerJsonSerializer;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionCache;
 import ch.microfast.hivemq.smoker.authz.services.AuthzService;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
 import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
 import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
 import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.MetricRegistry;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
 import org.apache.commons.codec.binary.Base64;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 
 import java.io.IOException;
@@ -21,8 +29,12 @@ import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestAuthzService extends TestBase {
 
@@ -33,10 +45,28 @@ public class TestAuthzService extends TestBase {
 
     private AuthzService _authzService;
 
+    private ScheduledExecutorService _executorService;
+
+    private MetricRegistry _metricRegistry;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
-    public void SetUp() throws NoSuchAlgorithmException {
+    public void SetUp() throws NoSuchAlgorithmException, IOException {
         _cryptoProvider = new EddsaCryptoProvider();
-        _authzService = new AuthzService(new MemoryClaimStore(_claimValidator));
+        _executorService = Executors.newSingleThreadScheduledExecutor();
+        _metricRegistry = new MetricRegistry();
+
+        MemoryClaimStore claimStore = new MemoryClaimStore(_claimValidator);
+        String indexFilePath = temporaryFolder.getRoot().toPath().resolve("authz.idx").toString();
+        _authzService = new AuthzService(claimStore, new AuthzDecisionCache(1000, new MetricRegistry()), new AuthzWarmStartIndex(indexFilePath, 300, 100, claimStore, _executorService),
+                new AuditLog(false, temporaryFolder.getRoot().toString(), 1 << 20, 1, 2, 1000, 1, 1, new MetricRegistry()), 1000, _metricRegistry);
+    }
+
+    @After
+    public void TearDown() {
+        _executorService.shutdownNow();
     }
 
     @Test
@@ -68,4 +98,110 @@ public class TestAuthzService extends TestBase {
         // Assert
         assertEquals(1, claims.size());
     }
+
+    @Test
+    public void testCheckAccessWildcardSubscription() throws InvalidClaimException {
+        // Arrange
+        Permission permission = new Permission();
+        permission.setClientId("SUBSCRIBER");
+        permission.setActivity(TopicPermission.MqttActivity.SUBSCRIBE);
+
+        _authzService.claim(TestClaims.createClaim("restricted/OWNER/room1/temp", RestrictionType.WHITELIST, permission));
+        _authzService.claim(TestClaims.createClaim("restricted/OWNER/room2/temp", RestrictionType.WHITELIST, permission));
+        _authzService.claim(TestClaims.createClaim("restricted/OWNER/room2/humidity", RestrictionType.WHITELIST));
+
+        // Act & Assert
+        assertTrue(_authzService.checkAccess("SUBSCRIBER", "restricted/OWNER/+/temp", TopicPermission.MqttActivity.SUBSCRIBE, true));
+        assertTrue(_authzService.checkAccess("OWNER", "restricted/OWNER/#", TopicPermission.MqttActivity.SUBSCRIBE, true));
+        assertFalse(_authzService.checkAccess("SUBSCRIBER", "restricted/OWNER/+/temp", TopicPermission.MqttActivity.SUBSCRIBE, false));
+        assertFalse(_authzService.checkAccess("SUBSCRIBER", "restricted/OWNER/#", TopicPermission.MqttActivity.SUBSCRIBE, true));
+        assertFalse(_authzService.checkAccess("SUBSCRIBER", "restricted/OWNER/+/pressure", TopicPermission.MqttActivity.SUBSCRIBE, true));
+        assertFalse(_authzService.checkAccess("SUBSCRIBER", "restricted/+/room1/temp", TopicPermission.MqttActivity.SUBSCRIBE, true));
+        assertFalse(_authzService.checkAccess("SUBSCRIBER", "#", TopicPermission.MqttActivity.SUBSCRIBE, true));
+    }
+
+    @Test
+    public void testCheckAccessAfterClaimAndUnclaim() throws InvalidClaimException {
+        // Arrange
+        Permission permission = new Permission();
+        permission.setClientId("PUBLISHER");
+        permission.setActivity(TopicPermission.MqttActivity.PUBLISH);
+        String topic = "restricted/OWNER/test/topic";
+
+        // 1. Act & Assert
+        assertFalse(_authzService.checkAccess("PUBLISHER", topic, TopicPermission.MqttActivity.PUBLISH, true));
+
+        // 2. Act & Assert
+        _authzService.claim(TestClaims.createClaim(topic, RestrictionType.WHITELIST, permission));
+        assertTrue(_authzService.checkAccess("PUBLISHER", topic, TopicPermission.MqttActivity.PUBLISH, true));
+        assertFalse(_authzService.checkAccess("OTHER", topic, TopicPermission.MqttActivity.PUBLISH, true));
+
+        // 3. Act & Assert
+        _authzService.claim(TestClaims.createClaim(topic, RestrictionType.BLACKLIST, permission));
+        assertFalse(_authzService.checkAccess("PUBLISHER", topic, TopicPermission.MqttActivity.PUBLISH, true));
+        assertTrue(_authzService.checkAccess("OTHER", topic, TopicPermission.MqttActivity.PUBLISH, true));
+
+        // 4. Act & Assert
+        _authzService.unclaim("OWNER", topic);
+        assertFalse(_authzService.checkAccess("OTHER", topic, TopicPermission.MqttActivity.PUBLISH, true));
+    }
+
+    @Test
+    public void testCheckAccessAfterPermissionTableEviction() throws InvalidClaimException, IOException {
+        // Arrange
+        MemoryClaimStore claimStore = new MemoryClaimStore(_claimValidator);
+        String indexFilePath = temporaryFolder.getRoot().toPath().resolve("evicting.idx").toString();
+        // neither decisions nor more than one permission table are cached
+        AuthzService authzService = new AuthzService(claimStore, new AuthzDecisionCache(0, new MetricRegistry()), new AuthzWarmStartIndex(indexFilePath, 300, 100, claimStore, _executorService),
+                new AuditLog(false, temporaryFolder.getRoot().toString(), 1 << 20, 1, 2, 1000, 1, 1, new MetricRegistry()), 1, new MetricRegistry());
+        Permission permission = new Permission();
+        permission.setClientId("PUBLISHER");
+        permission.setActivity(TopicPermission.MqttActivity.PUBLISH);
+        authzService.claim(TestClaims.createClaim("restricted/OWNER/white", RestrictionType.WHITELIST, permission));
+        authzService.claim(TestClaims.createClaim("restricted/OWNER/black", RestrictionType.BLACKLIST, permission));
+
+        // Act & Assert
+        for (int i = 0; i < 10; i++) {
+            assertTrue(authzService.checkAccess("PUBLISHER", "restricted/OWNER/white", TopicPermission.MqttActivity.PUBLISH, true));
+            assertFalse(authzService.checkAccess("PUBLISHER", "restricted/OWNER/black", TopicPermission.MqttActivity.PUBLISH, true));
+        }
+        authzService.unclaim("OWNER", "restricted/OWNER/white");
+        assertFalse(authzService.checkAccess("PUBLISHER", "restricted/OWNER/white", TopicPermission.MqttActivity.PUBLISH, true));
+    }
+
+    @Test
+    public void testDecisionsCountedByReason() throws InvalidClaimException {
+        // Arrange
+        Permission permission = new Permission();
+        permission.setClientId("PUBLISHER");
+        permission.setActivity(TopicPermission.MqttActivity.PUBLISH);
+        _authzService.claim(TestClaims.createClaim("restricted/OWNER/white", RestrictionType.WHITELIST, permission));
+        _authzService.claim(TestClaims.createClaim("restricted/OWNER/black", RestrictionType.BLACKLIST, permission));
+
+        // Act
+        _authzService.checkAccess("PUBLISHER", "restricted/OWNER/white", TopicPermission.MqttActivity.PUBLISH, true);
+        _authzService.checkAccess("OTHER", "restricted/OWNER/white", TopicPermission.MqttActivity.PUBLISH, true);
+        _authzService.checkAccess("PUBLISHER", "restricted/OWNER/black", TopicPermission.MqttActivity.PUBLISH, true);
+        _authzService.checkAccess("OWNER", "restricted/OWNER/black", TopicPermission.MqttActivity.PUBLISH, true);
+        _authzService.checkAccess("PUBLISHER", "restricted/OWNER/unclaimed", TopicPermission.MqttActivity.PUBLISH, true);
+        _authzService.checkAccess("PUBLISHER", "restricted/OWNER/white", TopicPermission.MqttActivity.PUBLISH, false);
+        _authzService.checkAccess("PUBLISHER", "public/topic", TopicPermission.MqttActivity.PUBLISH, false);
+        // served by the decision cache, counted by the reason it was evaluated by
+        _authzService.checkAccess("PUBLISHER", "public/topic", TopicPermission.MqttActivity.PUBLISH, false);
+        _authzService.findCachedAccess("PUBLISHER", "public/topic", TopicPermission.MqttActivity.PUBLISH, false);
+
+        // Assert
+        assertEquals(1, decisionCount("whitelist", "allowed"));
+        assertEquals(1, decisionCount("whitelist", "denied"));
+        assertEquals(1, decisionCount("blacklist", "denied"));
+        assertEquals(1, decisionCount("owner", "allowed"));
+        assertEquals(1, decisionCount("unclaimed", "denied"));
+        assertEquals(1, decisionCount("unauthenticated", "denied"));
+        assertEquals(3, decisionCount("unrestricted", "allowed"));
+        assertEquals(8, _metricRegistry.getTimers().get(SmokerMetrics.name("authz", "check-access")).getCount());
+    }
+
+    private long decisionCount(String reason, String decision) {
+        return _metricRegistry.getCounters().get(SmokerMetrics.name("authz", "decisions", reason, decision)).getCount();
+    }
 }
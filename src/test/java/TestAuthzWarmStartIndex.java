@@ -0,0 +1,97 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
+import ch.microfast.hivemq.smoker.authz.services.ClaimPermissionTable;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAuthzWarmStartIndex extends TestBase {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    private ScheduledExecutorService executorService;
+
+    private String indexFilePath;
+
+    @Before
+    public void SetUp() {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        indexFilePath = temporaryFolder.getRoot().toPath().resolve("authz.idx").toString();
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testWarmStart() throws Exception {
+        // Arrange: claims before and after the last index was written
+        MemoryClaimStore claimStore = new MemoryClaimStore(claimValidator);
+        AuthzWarmStartIndex previousIndex = new AuthzWarmStartIndex(indexFilePath, 300, 100, claimStore, executorService);
+        previousIndex.recordChange("restricted/OWNER/a", () -> claimStore.upsert(TestClaims.createClaim("restricted/OWNER/a", "READER", TopicPermission.MqttActivity.SUBSCRIBE)));
+        previousIndex.recordChange("restricted/OWNER/b", () -> claimStore.upsert(TestClaims.createClaim("restricted/OWNER/b", "READER", TopicPermission.MqttActivity.SUBSCRIBE)));
+        previousIndex.writeSnapshot();
+        previousIndex.recordChange("restricted/OWNER/b", () -> claimStore.upsert(TestClaims.createClaim("restricted/OWNER/b", "OTHER_READER", TopicPermission.MqttActivity.SUBSCRIBE)));
+        previousIndex.recordChange("restricted/OWNER/c", () -> claimStore.upsert(TestClaims.createClaim("restricted/OWNER/c", "READER", TopicPermission.MqttActivity.SUBSCRIBE)));
+
+        // the store of the restarted broker is not ready yet
+        AtomicInteger storeReads = new AtomicInteger();
+        CompletableFuture<Void> storeReady = new CompletableFuture<>();
+        MemoryClaimStore restartedStore = new MemoryClaimStore(claimValidator) {
+            @Override
+            public Optional<Claim> findByTopic(String topicName) {
+                storeReads.incrementAndGet();
+                return claimStore.findByTopic(topicName);
+            }
+
+            @Override
+            public CompletableFuture<Void> whenReady() {
+                return storeReady;
+            }
+        };
+
+        // Act
+        AuthzWarmStartIndex warmStartIndex = new AuthzWarmStartIndex(indexFilePath, 300, 100, restartedStore, executorService);
+
+        // 1. Assert: unchanged topics are served from the index
+        Optional<ClaimPermissionTable> table = warmStartIndex.findPermissionTable("restricted/OWNER/a");
+        assertTrue(table.isPresent());
+        assertTrue(table.get().isGranted("READER", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertEquals(0, storeReads.get());
+
+        // 2. Assert: changed topics are served from the store
+        table = warmStartIndex.findPermissionTable("restricted/OWNER/b");
+        assertTrue(table.isPresent());
+        assertFalse(table.get().isGranted("READER", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertTrue(table.get().isGranted("OTHER_READER", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertTrue(warmStartIndex.findPermissionTable("restricted/OWNER/c").isPresent());
+        assertEquals(3, warmStartIndex.findTopicsByTopicFilter("restricted/OWNER/#").size());
+
+        // 3. Assert: the index is not used anymore once the store is ready
+        storeReady.complete(null);
+        int readsBefore = storeReads.get();
+        assertTrue(warmStartIndex.findPermissionTable("restricted/OWNER/a").isPresent());
+        assertEquals(readsBefore + 1, storeReads.get());
+    }
+}
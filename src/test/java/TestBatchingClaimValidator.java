@@ -0,0 +1,107 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.validation.BatchingClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBatchingClaimValidator extends TestBase {
+
+    private ScheduledExecutorService executorService;
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    @Before
+    public void SetUp() {
+        executorService = Executors.newScheduledThreadPool(4);
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testValidateInBatches() throws Exception {
+        // Arrange
+        AtomicInteger validatedClaims = new AtomicInteger();
+        IClaimValidator batchValidator = new IClaimValidator() {
+            @Override
+            public void validateClaim(Claim claim) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<Claim, InvalidClaimException> validateClaims(List<Claim> claims) {
+                validatedClaims.addAndGet(claims.size());
+                Map<Claim, InvalidClaimException> invalidClaims = new HashMap<>();
+                claims.stream()
+                        .filter(claim -> claim.getSignature().equals("INVALID"))
+                        .forEach(claim -> invalidClaims.put(claim, new InvalidClaimException(Collections.singletonList("invalid"))));
+                return invalidClaims;
+            }
+        };
+        BatchingClaimValidator batchingClaimValidator = new BatchingClaimValidator(batchValidator, executorService, 16);
+        List<CompletableFuture<Claim>> validations = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 500; i++) {
+            validations.add(batchingClaimValidator.validate(TestClaims.createSignedClaim(i == 123 ? "INVALID" : "VALID", "restricted/OWNER/" + i, RestrictionType.WHITELIST)));
+        }
+
+        // Assert
+        for (int i = 0; i < validations.size(); i++) {
+            if (i == 123) {
+                try {
+                    validations.get(i).get(10, TimeUnit.SECONDS);
+                    fail("the claim must be invalid");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof InvalidClaimException);
+                }
+            } else {
+                assertEquals("restricted/OWNER/" + i, validations.get(i).get(10, TimeUnit.SECONDS).getRestriction().getTopicName());
+            }
+        }
+        assertEquals(500, validatedClaims.get());
+    }
+
+    @Test
+    public void testRejectedBatchTaskFailsValidation() throws Exception {
+        // Arrange
+        ScheduledExecutorService stoppedExecutorService = Executors.newSingleThreadScheduledExecutor();
+        stoppedExecutorService.shutdown();
+        BatchingClaimValidator batchingClaimValidator = new BatchingClaimValidator(claimValidator, stoppedExecutorService, 16);
+
+        // Act & Assert
+        // more claims than batch tasks may run, none of the rejected tasks must be left counted as active
+        for (int i = 0; i < 2 * Runtime.getRuntime().availableProcessors() + 1; i++) {
+            try {
+                batchingClaimValidator.validate(TestClaims.createSignedClaim("VALID", "restricted/OWNER/" + i, RestrictionType.WHITELIST)).get(10, TimeUnit.SECONDS);
+                fail("the validation must be rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+    }
+}
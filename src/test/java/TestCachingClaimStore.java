@@ -0,0 +1,76 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.persistance.CachingClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCachingClaimStore extends TestBase {
+
+    private static final String TOPIC = "restricted/OWNER/test/topic";
+
+    private CachingClaimStore cachingClaimStore;
+
+    private final AtomicInteger backingStoreReads = new AtomicInteger();
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    @Before
+    public void SetUp() {
+        MemoryClaimStore backingStore = new MemoryClaimStore(claimValidator) {
+            @Override
+            public Optional<Claim> findByTopic(String topicName) {
+                backingStoreReads.incrementAndGet();
+                return super.findByTopic(topicName);
+            }
+        };
+        cachingClaimStore = new CachingClaimStore(backingStore, 1000, new MetricRegistry());
+    }
+
+    @Test
+    public void testFindByTopicIsCached() throws InvalidClaimException {
+        // Arrange
+        Claim claim = TestClaims.createClaim(TOPIC, "PUBLISHER", TopicPermission.MqttActivity.ALL);
+        cachingClaimStore.upsert(claim);
+
+        // Act
+        Optional<Claim> first = cachingClaimStore.findByTopic(TOPIC);
+        Optional<Claim> second = cachingClaimStore.findByTopic(TOPIC);
+
+        // Assert
+        assertEquals(Optional.of(claim), first);
+        assertEquals(first, second);
+        assertEquals(1, backingStoreReads.get());
+    }
+
+    @Test
+    public void testWritesInvalidateCachedTopic() throws InvalidClaimException {
+        // 1. Act & Assert: unclaimed topic
+        assertFalse(cachingClaimStore.findByTopic(TOPIC).isPresent());
+
+        // 2. Act & Assert: claimed topic
+        cachingClaimStore.upsert(TestClaims.createClaim(TOPIC, "PUBLISHER", TopicPermission.MqttActivity.ALL));
+        assertTrue(cachingClaimStore.findByTopic(TOPIC).isPresent());
+
+        // 3. Act & Assert: re-claimed topic
+        Claim claim = TestClaims.createClaim(TOPIC, "SUBSCRIBER", TopicPermission.MqttActivity.ALL);
+        cachingClaimStore.upsert(claim);
+        assertEquals(Optional.of(claim), cachingClaimStore.findByTopic(TOPIC));
+
+        // 4. Act & Assert: unclaimed topic
+        cachingClaimStore.delete("OWNER", TOPIC);
+        assertFalse(cachingClaimStore.findByTopic(TOPIC).isPresent());
+    }
+}
@@ -0,0 +1,133 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.persistance.ChronicleMapDiskClaimStore;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import net.openhft.chronicle.map.ChronicleMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestChronicleMapDiskClaimStore extends TestBase {
+
+    private static final long EXPECTED_MAX_ENTRIES = 1000;
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScheduledExecutorService executorService;
+
+    private File storeFile;
+
+    @Before
+    public void SetUp() {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        storeFile = new File(temporaryFolder.getRoot(), "claims.dat");
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testMigrateLegacyStore() throws IOException, NoSuchAlgorithmException {
+        // Arrange
+        List<Claim> claims = List.of(
+                TestClaims.createClaim("restricted/OWNER/room1/temp", "SUBSCRIBER", TopicPermission.MqttActivity.SUBSCRIBE),
+                TestClaims.createClaim("restricted/OWNER/room2/temp", "SUBSCRIBER", TopicPermission.MqttActivity.SUBSCRIBE));
+        writeLegacyStore(storeFile, claims);
+
+        // Act
+        try (ChronicleMapDiskClaimStore store = createStore()) {
+
+            // Assert
+            assertEquals(2, store.count());
+            for (Claim claim : claims) {
+                assertEquals(claim, store.findByTopic(claim.getRestriction().getTopicName()).orElseThrow());
+            }
+        }
+        assertEquals("binary-v1", Files.readString(new File(storeFile.getPath() + ".format").toPath()));
+        assertTrue(new File(storeFile.getPath() + ".legacy").exists());
+    }
+
+    @Test
+    public void testResumeInterruptedMigration() throws IOException, NoSuchAlgorithmException {
+        // Arrange
+        List<Claim> claims = List.of(
+                TestClaims.createClaim("restricted/OWNER/room1/temp", "SUBSCRIBER", TopicPermission.MqttActivity.SUBSCRIBE),
+                TestClaims.createClaim("restricted/OWNER/room2/temp", "SUBSCRIBER", TopicPermission.MqttActivity.SUBSCRIBE));
+        // the store file was moved to the legacy file, the binary store was written partly without format marker
+        writeLegacyStore(new File(storeFile.getPath() + ".legacy"), claims);
+        Files.write(storeFile.toPath(), new byte[]{1, 2, 3});
+
+        // Act
+        try (ChronicleMapDiskClaimStore store = createStore()) {
+
+            // Assert
+            assertEquals(2, store.count());
+            for (Claim claim : claims) {
+                assertEquals(claim, store.findByTopic(claim.getRestriction().getTopicName()).orElseThrow());
+            }
+        }
+        assertTrue(new File(storeFile.getPath() + ".format").exists());
+        assertTrue(new File(storeFile.getPath() + ".legacy").exists());
+    }
+
+    @Test
+    public void testReopenMigratedStore() throws IOException, NoSuchAlgorithmException {
+        // Arrange
+        Claim claim = TestClaims.createClaim("restricted/OWNER/room1/temp", "SUBSCRIBER", TopicPermission.MqttActivity.SUBSCRIBE);
+        writeLegacyStore(storeFile, List.of(claim));
+        createStore().close();
+        // the legacy file may be removed once the store was migrated
+        Files.delete(new File(storeFile.getPath() + ".legacy").toPath());
+
+        // Act
+        try (ChronicleMapDiskClaimStore store = createStore()) {
+
+            // Assert
+            assertEquals(claim, store.findByTopic(claim.getRestriction().getTopicName()).orElseThrow());
+        }
+        assertFalse(new File(storeFile.getPath() + ".legacy").exists());
+    }
+
+    private ChronicleMapDiskClaimStore createStore() throws IOException, NoSuchAlgorithmException {
+        return new ChronicleMapDiskClaimStore(claimValidator, EXPECTED_MAX_ENTRIES, storeFile.getPath(), executorService, new MetricRegistry());
+    }
+
+    /**
+     * Writes the claims with java serialization, the storage format before the binary format was introduced
+     */
+    private static void writeLegacyStore(File file, List<Claim> claims) throws IOException {
+        try (ChronicleMap<String, Claim> legacyClaimMap = ChronicleMap
+                .of(String.class, Claim.class)
+                .name("smoker-topic-claims-map")
+                .averageKey(claims.get(0).getRestriction().getTopicName())
+                .averageValue(claims.get(0))
+                .entries(EXPECTED_MAX_ENTRIES)
+                .createPersistedTo(file)) {
+            for (Claim claim : claims) {
+                legacyClaimMap.put(claim.getRestriction().getTopicName(), claim);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.persistance.ClaimBytesMarshaller;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestClaimBytesMarshaller {
+
+    @Test
+    public void testWriteReadRawSignature() {
+        // Arrange
+        Claim claim = createClaim(Base64.getEncoder().encodeToString(new byte[64]));
+
+        // Act
+        Claim readClaim = writeRead(claim);
+
+        // Assert
+        assertEquals(claim, readClaim);
+    }
+
+    @Test
+    public void testWriteReadNonCanonicalSignature() {
+        // Arrange
+        Claim claim = createClaim("ABCDEFGH");
+
+        // Act
+        Claim readClaim = writeRead(claim);
+
+        // Assert
+        assertEquals(claim, readClaim);
+    }
+
+    @Test
+    public void testWriteReadMultipleClaims() {
+        // Arrange
+        Claim first = createClaim("AAAA");
+        Claim second = createClaim("not base64 ü");
+        Bytes bytes = Bytes.elasticByteBuffer();
+
+        // Act
+        ClaimBytesMarshaller.INSTANCE.write(bytes, first);
+        ClaimBytesMarshaller.INSTANCE.write(bytes, second);
+
+        // Assert
+        assertEquals(first, ClaimBytesMarshaller.INSTANCE.read(bytes, null));
+        assertEquals(second, ClaimBytesMarshaller.INSTANCE.read(bytes, new Claim()));
+    }
+
+    private static Claim writeRead(Claim claim) {
+        Bytes bytes = Bytes.elasticByteBuffer();
+        ClaimBytesMarshaller.INSTANCE.write(bytes, claim);
+        return ClaimBytesMarshaller.INSTANCE.read(bytes, null);
+    }
+
+    private static Claim createClaim(String signature) {
+        return TestClaims.createSignedClaim(signature, "restricted/OWNER_CLIENT_ID/test/tøpic", RestrictionType.WHITELIST,
+                TestClaims.createPermission("PUBLISHER", TopicPermission.MqttActivity.PUBLISH),
+                TestClaims.createPermission("*", TopicPermission.MqttActivity.SUBSCRIBE));
+    }
+}
@@ -0,0 +1,51 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.services.ClaimPermissionTable;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestClaimPermissionTable {
+
+    private static final String TOPIC = "restricted/OWNER/test/topic";
+
+    @Test
+    public void testWhitelist() {
+        // Arrange
+        Claim claim = TestClaims.createClaim(TOPIC, RestrictionType.WHITELIST,
+                TestClaims.createPermission("PUBLISHER", TopicPermission.MqttActivity.PUBLISH),
+                TestClaims.createPermission("*", TopicPermission.MqttActivity.SUBSCRIBE));
+
+        // Act
+        ClaimPermissionTable table = ClaimPermissionTable.compile(claim);
+
+        // Assert
+        assertTrue(table.isGranted("OWNER", TopicPermission.MqttActivity.PUBLISH));
+        assertTrue(table.isGranted("PUBLISHER", TopicPermission.MqttActivity.PUBLISH));
+        assertTrue(table.isGranted("PUBLISHER", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertTrue(table.isGranted("ANYONE", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertFalse(table.isGranted("ANYONE", TopicPermission.MqttActivity.PUBLISH));
+    }
+
+    @Test
+    public void testBlacklist() {
+        // Arrange
+        Claim claim = TestClaims.createClaim(TOPIC, RestrictionType.BLACKLIST,
+                TestClaims.createPermission("BLOCKED", TopicPermission.MqttActivity.ALL),
+                TestClaims.createPermission("READONLY", TopicPermission.MqttActivity.PUBLISH),
+                TestClaims.createPermission("OWNER", TopicPermission.MqttActivity.ALL));
+
+        // Act
+        ClaimPermissionTable table = ClaimPermissionTable.compile(claim);
+
+        // Assert
+        assertTrue(table.isGranted("OWNER", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertFalse(table.isGranted("BLOCKED", TopicPermission.MqttActivity.PUBLISH));
+        assertFalse(table.isGranted("BLOCKED", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertFalse(table.isGranted("READONLY", TopicPermission.MqttActivity.PUBLISH));
+        assertTrue(table.isGranted("READONLY", TopicPermission.MqttActivity.SUBSCRIBE));
+        assertTrue(table.isGranted("ANYONE", TopicPermission.MqttActivity.PUBLISH));
+    }
+}
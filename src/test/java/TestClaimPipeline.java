@@ -0,0 +1,104 @@
+import ch.microfast.hivemq.smoker.authz.services.ClaimPipeline;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestClaimPipeline extends TestBase {
+
+    private ScheduledExecutorService executorService;
+
+    @Before
+    public void SetUp() {
+        executorService = Executors.newScheduledThreadPool(4);
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testPersistsInOrderPerKey() throws Exception {
+        // Arrange
+        ClaimPipeline claimPipeline = new ClaimPipeline(executorService, 1000, new MetricRegistry());
+        List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            futures.add(claimPipeline.submit("OWNER", () -> {
+                // later submissions are often prepared first
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                return value;
+            }, CompletableFuture::completedFuture, persisted::add).get());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) persisted.get(i));
+        }
+        assertEquals(0, claimPipeline.getQueueDepth());
+    }
+
+    @Test
+    public void testFailureDoesNotStopSuccessors() throws Exception {
+        // Arrange
+        ClaimPipeline claimPipeline = new ClaimPipeline(executorService, 10, new MetricRegistry());
+        List<String> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        // Act
+        CompletableFuture<Void> failed = claimPipeline.<String>submit("OWNER", () -> {
+            throw new IOException("invalid payload");
+        }, CompletableFuture::completedFuture, persisted::add).get();
+        CompletableFuture<Void> succeeded = claimPipeline.submit("OWNER", () -> "valid", CompletableFuture::completedFuture, persisted::add).get();
+
+        // Assert
+        succeeded.get(10, TimeUnit.SECONDS);
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(Collections.singletonList("valid"), persisted);
+    }
+
+    @Test
+    public void testRejectsWhenSaturated() throws Exception {
+        // Arrange
+        ClaimPipeline claimPipeline = new ClaimPipeline(executorService, 2, new MetricRegistry());
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // Act
+        futures.add(claimPipeline.submit("OWNER", () -> "first", CompletableFuture::completedFuture, value -> blocked.await()).get());
+        futures.add(claimPipeline.submit("OTHER_OWNER", () -> "second", CompletableFuture::completedFuture, value -> blocked.await()).get());
+        Optional<CompletableFuture<Void>> rejected = claimPipeline.submit("THIRD_OWNER", () -> "third", CompletableFuture::completedFuture, value -> { });
+        blocked.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertFalse(rejected.isPresent());
+        assertTrue(claimPipeline.submit("THIRD_OWNER", () -> "third", CompletableFuture::completedFuture, value -> { }).isPresent());
+    }
+}
@@ -8,7 +8,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class TestClaimSerialization {
@@ -44,4 +46,27 @@ public class TestClaimSerialization {
         // Assert
         assertEquals(testClaim, claim);
     }
+
+    @Test
+    public void testReadClaim() throws IOException {
+        // Arrange
+        ByteBuffer payload = ByteBuffer.wrap(mapper.writeValueAsBytes(testClaim)).asReadOnlyBuffer();
+
+        // Act
+        Claim claim = mapper.readClaim(payload);
+
+        // Assert
+        assertEquals(testClaim, claim);
+        assertArrayEquals(mapper.writeValueAsBytes(testClaim.getRestriction()), claim.getSignedRestriction());
+        assertEquals(0, payload.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadClaimWithUnknownProperty() throws IOException {
+        // Arrange
+        ByteBuffer payload = ByteBuffer.wrap("{\"signature\":\"ABCDEFGH\",\"owner\":\"OWNER\"}".getBytes());
+
+        // Act
+        mapper.readClaim(payload);
+    }
 }
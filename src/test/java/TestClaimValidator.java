@@ -7,6 +7,8 @@ import ch.microfast.hivemq.smoker.authz.validation.ClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
 import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
 import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
@@ -16,6 +18,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -33,8 +36,8 @@ public class TestClaimValidator extends TestBase {
     @Before
     public void SetUp() throws NoSuchAlgorithmException {
         cryptoProvider = new EddsaCryptoProvider();
-        claimValidator = new ClaimValidator(cryptoProvider);
         jsonSerializer = new SmokerJsonSerializer();
+        claimValidator = new ClaimValidator(cryptoProvider, new PublicKeyCache(cryptoProvider, 1000, 1000, new MetricRegistry()), jsonSerializer, new MetricRegistry());
     }
 
     @Test
@@ -119,5 +122,67 @@ public class TestClaimValidator extends TestBase {
         claimValidator.validateClaim(invalidClaim);
     }
 
+    @Test
+    public void testValidateReceivedRestriction() throws IOException, SignatureException, InvalidKeyException, InvalidClaimException {
+        // Arrange
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+        String owner = new Base32().encodeAsString(((EdDSAPublicKey) keyPair.getPublic()).getAbyte());
+
+        // signed as sent: not in the form the serializer writes it
+        String restrictionJson = "{ \"topicName\": \"restricted/" + owner + "/test/topic\", \"restrictionType\": \"whitelist\",\n"
+                + "  \"permissions\": [ { \"clientId\": \"*\", \"activity\": \"PUBLISH\" } ] }";
+        byte[] signature = cryptoProvider.sign(keyPair.getPrivate(), restrictionJson.getBytes(StandardCharsets.UTF_8));
+        String claimJson = "{\"signature\": \"" + Base64.encodeBase64String(signature) + "\", \"restriction\": " + restrictionJson + "}";
+
+        // Act
+        Claim claim = jsonSerializer.readClaim(ByteBuffer.wrap(claimJson.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer());
+        claimValidator.validateClaim(claim);
+
+        // Assert
+        // if no exception is thrown the validation is OK
+    }
+
+    @Test
+    public void testValidateReserializedRestriction() throws IOException, SignatureException, InvalidKeyException, InvalidClaimException {
+        // Arrange
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+        String owner = new Base32().encodeAsString(((EdDSAPublicKey) keyPair.getPublic()).getAbyte());
+
+        Permission permission = new Permission();
+        permission.setClientId("*");
+        permission.setActivity(TopicPermission.MqttActivity.PUBLISH);
 
+        Restriction restriction = new Restriction();
+        restriction.setTopicName("restricted/" + owner + "/test/topic");
+        restriction.setRestrictionType(RestrictionType.BLACKLIST);
+        restriction.addPermission(permission);
+
+        // signed in the form the serializer writes it but sent in another form
+        byte[] signature = cryptoProvider.sign(keyPair.getPrivate(), jsonSerializer.writeValueAsBytes(restriction));
+        Claim signedClaim = new Claim();
+        signedClaim.setSignature(Base64.encodeBase64String(signature));
+        signedClaim.setRestriction(restriction);
+        byte[] payload = jsonSerializer.writerWithDefaultPrettyPrinter().writeValueAsBytes(signedClaim);
+
+        // Act
+        Claim claim = jsonSerializer.readClaim(ByteBuffer.wrap(payload));
+        claimValidator.validateClaim(claim);
+
+        // Assert
+        // if no exception is thrown the validation is OK
+    }
+
+    @Test(expected = InvalidClaimException.class)
+    public void testValidateTamperedRestriction() throws IOException, SignatureException, InvalidKeyException, InvalidClaimException {
+        // Arrange
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+        String owner = new Base32().encodeAsString(((EdDSAPublicKey) keyPair.getPublic()).getAbyte());
+
+        String restrictionJson = "{\"permissions\":[{\"activity\":\"PUBLISH\",\"clientId\":\"READER\"}],\"restrictionType\":\"WHITELIST\",\"topicName\":\"restricted/" + owner + "/test/topic\"}";
+        byte[] signature = cryptoProvider.sign(keyPair.getPrivate(), restrictionJson.getBytes(StandardCharsets.UTF_8));
+        String claimJson = "{\"restriction\":" + restrictionJson.replace("READER", "ATTACK") + ",\"signature\":\"" + Base64.encodeBase64String(signature) + "\"}";
+
+        // Act
+        claimValidator.validateClaim(jsonSerializer.readClaim(ByteBuffer.wrap(claimJson.getBytes(StandardCharsets.UTF_8))));
+    }
 }
@@ -0,0 +1,46 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.Restriction;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+
+/**
+ * Creates the claims and permissions of the tests, the signature of a claim is not verified by the stores.
+ */
+public final class TestClaims {
+
+    public static final String SIGNATURE = "ABCDEFGH";
+
+    private TestClaims() {
+    }
+
+    /**
+     * @return a whitelist claim of the topic granting the activity to the client
+     */
+    public static Claim createClaim(String topicName, String clientId, TopicPermission.MqttActivity activity) {
+        return createClaim(topicName, RestrictionType.WHITELIST, createPermission(clientId, activity));
+    }
+
+    public static Claim createClaim(String topicName, RestrictionType restrictionType, Permission... permissions) {
+        return createSignedClaim(SIGNATURE, topicName, restrictionType, permissions);
+    }
+
+    public static Claim createSignedClaim(String signature, String topicName, RestrictionType restrictionType, Permission... permissions) {
+        Restriction restriction = new Restriction();
+        restriction.setTopicName(topicName);
+        restriction.setRestrictionType(restrictionType);
+        restriction.addPermission(permissions);
+
+        Claim claim = new Claim();
+        claim.setSignature(signature);
+        claim.setRestriction(restriction);
+        return claim;
+    }
+
+    public static Permission createPermission(String clientId, TopicPermission.MqttActivity activity) {
+        Permission permission = new Permission();
+        permission.setClientId(clientId);
+        permission.setActivity(activity);
+        return permission;
+    }
+}
@@ -1,11 +1,18 @@
 import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
 import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.SignatureVerification;
 import net.i2p.crypto.eddsa.EdDSAPrivateKey;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.security.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -77,4 +84,58 @@ public class TestEddsaCryptoProvider {
         assertTrue(publicKey instanceof EdDSAPublicKey);
         assertTrue(verify);
     }
+
+    @Test
+    public void testVerifyBatch() throws SignatureException, InvalidKeyException {
+        // Arrange
+        List<SignatureVerification> verifications = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            KeyPair keyPair = cryptoProvider.generateKeyPair();
+            byte[] message = ("message " + i).getBytes();
+            verifications.add(new SignatureVerification(keyPair.getPublic(), cryptoProvider.sign(keyPair.getPrivate(), message), message));
+        }
+
+        // Act
+        boolean[] validResults = cryptoProvider.verifyBatch(verifications);
+        SignatureVerification valid = verifications.get(7);
+        verifications.set(7, new SignatureVerification(valid.getPublicKey(), valid.getSignature(), "wrong message".getBytes()));
+        verifications.set(42, new SignatureVerification(valid.getPublicKey(), new byte[64], valid.getExpectedMessage()));
+        boolean[] invalidResults = cryptoProvider.verifyBatch(verifications);
+
+        // Assert
+        for (int i = 0; i < verifications.size(); i++) {
+            assertTrue(validResults[i]);
+            assertEquals(i != 7 && i != 42, invalidResults[i]);
+        }
+    }
+
+    @Test
+    public void testSignVerifyConcurrently() throws Exception {
+        // Arrange
+        int threadCount = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            byte[] message = ("message " + i).getBytes();
+            tasks.add(() -> {
+                boolean isCorrect = true;
+                for (int j = 0; j < 50; j++) {
+                    KeyPair keyPair = cryptoProvider.generateKeyPair();
+                    byte[] signature = cryptoProvider.sign(keyPair.getPrivate(), message);
+                    isCorrect &= cryptoProvider.verify(keyPair.getPublic(), signature, message);
+                    isCorrect &= !cryptoProvider.verify(keyPair.getPublic(), signature, "wrong message".getBytes());
+                }
+                return isCorrect;
+            });
+        }
+
+        // Act
+        List<Future<Boolean>> results = executorService.invokeAll(tasks);
+        executorService.shutdown();
+
+        // Assert
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+    }
 }
@@ -0,0 +1,77 @@
+import ch.microfast.hivemq.smoker.authn.HandshakeAdmission;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestHandshakeAdmission {
+
+    @Test
+    public void testClientBucket() {
+        // Arrange
+        HandshakeAdmission handshakeAdmission = new HandshakeAdmission(10, 1000, 0, 0, 1, 2, 1000, new MetricRegistry());
+
+        // Act
+        OptionalLong first = handshakeAdmission.admitClient("client");
+        OptionalLong second = handshakeAdmission.admitClient("client");
+        OptionalLong delayed = handshakeAdmission.admitClient("client");
+        OptionalLong rejected = handshakeAdmission.admitClient("client");
+        OptionalLong otherClient = handshakeAdmission.admitClient("other client");
+
+        // Assert
+        assertEquals(0, first.getAsLong());
+        assertEquals(0, second.getAsLong());
+        assertTrue(delayed.getAsLong() > 0);
+        assertTrue(delayed.getAsLong() <= TimeUnit.SECONDS.toNanos(1));
+        assertFalse(rejected.isPresent());
+        assertEquals(0, otherClient.getAsLong());
+    }
+
+    @Test
+    public void testAddressBucket() throws Exception {
+        // Arrange
+        HandshakeAdmission handshakeAdmission = new HandshakeAdmission(10, 0, 1, 1, 0, 0, 1000, new MetricRegistry());
+        Optional<InetAddress> address = Optional.of(InetAddress.getByName("192.0.2.1"));
+
+        // Act
+        OptionalLong first = handshakeAdmission.admitAddress(address);
+        OptionalLong rejected = handshakeAdmission.admitAddress(address);
+        OptionalLong unknownAddress = handshakeAdmission.admitAddress(Optional.empty());
+        OptionalLong disabledClientBucket = handshakeAdmission.admitClient("client");
+
+        // Assert
+        assertEquals(0, first.getAsLong());
+        assertFalse(rejected.isPresent());
+        assertEquals(0, unknownAddress.getAsLong());
+        assertEquals(0, disabledClientBucket.getAsLong());
+    }
+
+    @Test
+    public void testInFlightLimit() {
+        // Arrange
+        HandshakeAdmission handshakeAdmission = new HandshakeAdmission(1, 1000, 0, 0, 0, 0, 1000, new MetricRegistry());
+        ConnectionAttributeStore first = new InMemoryConnectionAttributeStore();
+        ConnectionAttributeStore second = new InMemoryConnectionAttributeStore();
+
+        // Act
+        boolean isFirstAdmitted = handshakeAdmission.tryEnter(first);
+        boolean isSecondAdmitted = handshakeAdmission.tryEnter(second);
+        handshakeAdmission.leave(first);
+        handshakeAdmission.leave(first);
+        handshakeAdmission.leave(second);
+        int inFlightCount = handshakeAdmission.getInFlightCount();
+        boolean isSecondAdmittedAfterLeave = handshakeAdmission.tryEnter(second);
+
+        // Assert
+        assertTrue(isFirstAdmitted);
+        assertFalse(isSecondAdmitted);
+        assertEquals(0, inFlightCount);
+        assertTrue(isSecondAdmittedAfterLeave);
+    }
+}
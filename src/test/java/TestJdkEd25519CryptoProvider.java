@@ -0,0 +1,103 @@
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.JdkEd25519CryptoProvider;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.*;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNoException;
+
+public class TestJdkEd25519CryptoProvider {
+
+    private ICryptoProvider cryptoProvider;
+
+    private ICryptoProvider eddsaCryptoProvider;
+
+    @Before
+    public void SetUp() throws NoSuchAlgorithmException {
+        try {
+            cryptoProvider = new JdkEd25519CryptoProvider();
+        } catch (NoSuchAlgorithmException e) {
+            // Ed25519 is built into the JDK since Java 15
+            assumeNoException(e);
+        }
+        eddsaCryptoProvider = new EddsaCryptoProvider();
+    }
+
+    @Test
+    public void testSignVerify() throws SignatureException, InvalidKeyException {
+        // Arrange
+        String correctMessage = "this is my test message";
+        String wrongMessage = "worong message";
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+
+        // Act
+        byte[] signature = cryptoProvider.sign(keyPair.getPrivate(), correctMessage.getBytes());
+        boolean verifyCorrect = cryptoProvider.verify(keyPair.getPublic(), signature, correctMessage.getBytes());
+        boolean verifyWrong = cryptoProvider.verify(keyPair.getPublic(), signature, wrongMessage.getBytes());
+
+        // Assert
+        assertEquals(64, signature.length);
+        assertTrue(verifyCorrect);
+        assertFalse(verifyWrong);
+    }
+
+    @Test
+    public void testVerifyEddsaSignature() throws SignatureException, InvalidKeyException {
+        // Arrange
+        byte[] message = "this is my test message".getBytes();
+        KeyPair keyPair = eddsaCryptoProvider.generateKeyPair();
+        byte[] publicKeyBytes = ((EdDSAPublicKey) keyPair.getPublic()).getAbyte();
+        byte[] signature = eddsaCryptoProvider.sign(keyPair.getPrivate(), message);
+        byte[] signatureWithMessage = Arrays.copyOf(signature, signature.length + message.length);
+        System.arraycopy(message, 0, signatureWithMessage, signature.length, message.length);
+
+        // Act
+        PublicKey publicKey = cryptoProvider.convertByteArrayToPublicKey(publicKeyBytes);
+        boolean verify = cryptoProvider.verify(publicKey, signature, message);
+        boolean verifyWithMessage = cryptoProvider.verify(publicKey, signatureWithMessage, message);
+
+        // Assert
+        assertTrue(verify);
+        assertTrue(verifyWithMessage);
+    }
+
+    @Test
+    public void testEddsaVerifiesSignature() throws SignatureException, InvalidKeyException {
+        // Arrange
+        byte[] message = "this is my test message".getBytes();
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+        byte[] encoded = keyPair.getPublic().getEncoded();
+        byte[] publicKeyBytes = Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length);
+
+        // Act
+        byte[] signature = cryptoProvider.sign(keyPair.getPrivate(), message);
+        boolean verify = eddsaCryptoProvider.verify(eddsaCryptoProvider.convertByteArrayToPublicKey(publicKeyBytes), signature, message);
+
+        // Assert
+        assertTrue(verify);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertByteArrayOfWrongLengthToPublicKey() {
+        // Arrange
+        byte[] publicKeyBytes = new byte[31];
+
+        // Act
+        cryptoProvider.convertByteArrayToPublicKey(publicKeyBytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertByteArrayNotOnCurveToPublicKey() {
+        // Arrange
+        byte[] publicKeyBytes = new byte[32];
+        publicKeyBytes[0] = 2;
+
+        // Act
+        cryptoProvider.convertByteArrayToPublicKey(publicKeyBytes);
+    }
+}
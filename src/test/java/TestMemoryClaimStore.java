@@ -4,11 +4,22 @@ import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
 import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
 import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
 import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class TestMemoryClaimStore extends TestBase {
     private MemoryClaimStore memoryClaimStore;
@@ -58,6 +69,25 @@ public class TestMemoryClaimStore extends TestBase {
         assertEquals(1, memoryClaimStore.getAll().size());
     }
 
+    @Test
+    public void testUpsertValidatedDoesNotValidateAgain() throws InvalidClaimException {
+        // Arrange
+        Restriction restriction = new Restriction();
+        restriction.setTopicName("restricted/OWNER_CLIENT_ID/test/topic");
+        restriction.setRestrictionType(RestrictionType.BLACKLIST);
+
+        Claim claim = new Claim();
+        claim.setSignature("ABCDEFGH");
+        claim.setRestriction(restriction);
+
+        // Act
+        memoryClaimStore.upsertValidated(claim);
+
+        // Assert
+        assertEquals(1, memoryClaimStore.getAll().size());
+        verify(claimValidator, never()).validateClaim(claim);
+    }
+
     @Test
     public void testDelete() throws InvalidClaimException {
         // Arrange
@@ -77,4 +107,73 @@ public class TestMemoryClaimStore extends TestBase {
         memoryClaimStore.delete(claim.getRestriction().getOwner(), claim.getRestriction().getTopicName());
         assertEquals(0, memoryClaimStore.getAll().size());
     }
+
+    @Test
+    public void testFindByTopic() throws InvalidClaimException {
+        // Arrange
+        Restriction restriction = new Restriction();
+        restriction.setTopicName("restricted/OWNER_CLIENT_ID/test/topic");
+        restriction.setRestrictionType(RestrictionType.BLACKLIST);
+
+        Claim claim = new Claim();
+        claim.setSignature("ABCDEFGH");
+        claim.setRestriction(restriction);
+
+        // 1. Act & Assert
+        memoryClaimStore.upsert(claim);
+        assertEquals(claim, memoryClaimStore.findByTopic("restricted/OWNER_CLIENT_ID/test/topic").orElse(null));
+        assertFalse(memoryClaimStore.findByTopic("restricted/OWNER_CLIENT_ID/other/topic").isPresent());
+
+        // 2. Act & Assert
+        memoryClaimStore.delete(claim.getRestriction().getOwner(), claim.getRestriction().getTopicName());
+        assertTrue(memoryClaimStore.findByTopic("restricted/OWNER_CLIENT_ID/test/topic").isEmpty());
+    }
+
+    @Test
+    public void testFindByClient() throws InvalidClaimException {
+        // Arrange
+        memoryClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/owned/topic", RestrictionType.WHITELIST));
+        memoryClaimStore.upsert(TestClaims.createClaim("restricted/OTHER/granted/topic", RestrictionType.WHITELIST, TestClaims.createPermission("OWNER", TopicPermission.MqttActivity.ALL)));
+        memoryClaimStore.upsert(TestClaims.createClaim("restricted/OTHER/public/topic", RestrictionType.WHITELIST, TestClaims.createPermission("*", TopicPermission.MqttActivity.ALL)));
+        memoryClaimStore.upsert(TestClaims.createClaim("restricted/OTHER/private/topic", RestrictionType.WHITELIST, TestClaims.createPermission("SOMEONE", TopicPermission.MqttActivity.ALL)));
+
+        // 1. Act & Assert
+        assertEquals(3, memoryClaimStore.findByClient("OWNER").size());
+        assertEquals(2, memoryClaimStore.findByClient("SOMEONE").size());
+
+        // 2. Act & Assert
+        memoryClaimStore.upsert(TestClaims.createClaim("restricted/OTHER/granted/topic", RestrictionType.WHITELIST, TestClaims.createPermission("SOMEONE", TopicPermission.MqttActivity.ALL)));
+        assertEquals(2, memoryClaimStore.findByClient("OWNER").size());
+        assertEquals(3, memoryClaimStore.findByClient("SOMEONE").size());
+    }
+
+    @Test
+    public void testConcurrentUpsert() throws Exception {
+        // Arrange
+        int threadCount = 8;
+        int claimsPerThread = 500;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < claimsPerThread; i++) {
+                    memoryClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/" + thread + "/" + i, RestrictionType.WHITELIST, TestClaims.createPermission("*", TopicPermission.MqttActivity.ALL)));
+                    memoryClaimStore.getAll().forEach(Claim::getRestriction);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Assert
+        assertEquals(threadCount * claimsPerThread, memoryClaimStore.getAll().size());
+        assertEquals(threadCount * claimsPerThread, memoryClaimStore.findByClient("OWNER").size());
+        assertEquals(claimsPerThread, memoryClaimStore.findByTopicFilter("restricted/OWNER/3/+").size());
+    }
 }
@@ -0,0 +1,85 @@
+import ch.microfast.hivemq.smoker.authn.NoncePool;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class TestNoncePool {
+
+    private NoncePool noncePool;
+
+    @Before
+    public void SetUp() {
+        noncePool = new NoncePool(64, new MetricRegistry());
+    }
+
+    @After
+    public void TearDown() {
+        noncePool.close();
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        // Arrange
+        awaitOccupancy(noncePool.getCapacity());
+
+        // Act
+        for (int i = 0; i < noncePool.getCapacity(); i++) {
+            noncePool.next();
+        }
+
+        // Assert
+        awaitOccupancy(noncePool.getCapacity());
+        assertEquals(noncePool.getCapacity(), noncePool.getOccupancy());
+    }
+
+    @Test
+    public void testNoncesAreUniqueWhenRingRunsDry() throws Exception {
+        // Arrange
+        int threadCount = 8;
+        int noncesPerThread = 1000;
+        Set<ByteBuffer> nonces = ConcurrentHashMap.newKeySet();
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < noncesPerThread; j++) {
+                    byte[] nonce = noncePool.next();
+                    assertEquals(NoncePool.NONCE_BYTE_COUNT, nonce.length);
+                    nonces.add(ByteBuffer.wrap(nonce));
+                }
+                return null;
+            });
+        }
+
+        // Act
+        executorService.invokeAll(tasks).forEach(task -> {
+            try {
+                task.get();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        executorService.shutdown();
+
+        // Assert
+        assertEquals(threadCount * noncesPerThread, nonces.size());
+    }
+
+    private void awaitOccupancy(int occupancy) throws InterruptedException {
+        for (int i = 0; i < 100 && noncePool.getOccupancy() < occupancy; i++) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import ch.microfast.hivemq.smoker.authn.NoncePool;
+import ch.microfast.hivemq.smoker.authn.NonceRegistry;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TestNonceRegistry {
+
+    private NoncePool noncePool;
+
+    private NonceRegistry nonceRegistry;
+
+    @Before
+    public void SetUp() {
+        noncePool = new NoncePool(64, new MetricRegistry());
+        nonceRegistry = new NonceRegistry(noncePool, 60000, 1000, new MetricRegistry());
+    }
+
+    @After
+    public void TearDown() {
+        noncePool.close();
+    }
+
+    @Test
+    public void testConsumeOnce() {
+        // Arrange
+        ConnectionAttributeStore connection = new InMemoryConnectionAttributeStore();
+        byte[] nonce = nonceRegistry.issue(connection);
+
+        // Act
+        Optional<byte[]> first = nonceRegistry.consume(connection);
+        Optional<byte[]> second = nonceRegistry.consume(connection);
+
+        // Assert
+        assertEquals(32, nonce.length);
+        assertArrayEquals(nonce, first.get());
+        assertFalse(second.isPresent());
+    }
+
+    @Test
+    public void testConsumeWithoutIssue() {
+        // Arrange
+        ConnectionAttributeStore connection = new InMemoryConnectionAttributeStore();
+
+        // Act
+        Optional<byte[]> nonce = nonceRegistry.consume(connection);
+
+        // Assert
+        assertFalse(nonce.isPresent());
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        // Arrange
+        nonceRegistry = new NonceRegistry(noncePool, 50, 1000, new MetricRegistry());
+        ConnectionAttributeStore connection = new InMemoryConnectionAttributeStore();
+        nonceRegistry.issue(connection);
+
+        // Act
+        Thread.sleep(200);
+        Optional<byte[]> nonce = nonceRegistry.consume(connection);
+
+        // Assert
+        assertFalse(nonce.isPresent());
+    }
+
+    @Test
+    public void testEvict() {
+        // Arrange
+        ConnectionAttributeStore connection = new InMemoryConnectionAttributeStore();
+        nonceRegistry.issue(connection);
+
+        // Act
+        nonceRegistry.evict(connection);
+        Optional<byte[]> nonce = nonceRegistry.consume(connection);
+
+        // Assert
+        assertFalse(nonce.isPresent());
+        assertEquals(0, nonceRegistry.getSize());
+    }
+
+    @Test
+    public void testConcurrentHandshakes() throws Exception {
+        // Arrange
+        int connectionCount = 500;
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> handshakes = new ArrayList<>();
+        for (int i = 0; i < connectionCount; i++) {
+            handshakes.add(() -> {
+                ConnectionAttributeStore connection = new InMemoryConnectionAttributeStore();
+                byte[] nonce = nonceRegistry.issue(connection);
+                Thread.yield();
+                return nonceRegistry.consume(connection).map(consumed -> consumed == nonce).orElse(false);
+            });
+        }
+
+        // Act
+        List<Future<Boolean>> results = executorService.invokeAll(handshakes);
+        executorService.shutdown();
+
+        // Assert
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
+import com.codahale.metrics.MetricRegistry;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.apache.commons.codec.binary.Base32;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class TestPublicKeyCache {
+
+    private ICryptoProvider cryptoProvider;
+
+    private PublicKeyCache publicKeyCache;
+
+    @Before
+    public void SetUp() throws NoSuchAlgorithmException {
+        cryptoProvider = new EddsaCryptoProvider();
+        publicKeyCache = new PublicKeyCache(cryptoProvider, 1000, 1000, new MetricRegistry());
+    }
+
+    @Test
+    public void testGetPublicKey() {
+        // Arrange
+        KeyPair keyPair = cryptoProvider.generateKeyPair();
+        byte[] publicKeyBytes = ((EdDSAPublicKey) keyPair.getPublic()).getAbyte();
+        String clientId = new Base32().encodeAsString(publicKeyBytes);
+
+        // Act
+        PublicKey first = publicKeyCache.getPublicKey(clientId).get();
+        PublicKey second = publicKeyCache.getPublicKey(clientId).get();
+
+        // Assert
+        assertArrayEquals(publicKeyBytes, ((EdDSAPublicKey) first).getAbyte());
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testGetInvalidPublicKey() {
+        // Arrange & Act & Assert
+        assertFalse(publicKeyCache.getPublicKey("NOT_A_PUBLIC_KEY").isPresent());
+        assertFalse(publicKeyCache.getPublicKey("NOT_A_PUBLIC_KEY").isPresent());
+        assertFalse(publicKeyCache.getPublicKey(null).isPresent());
+    }
+}
@@ -0,0 +1,186 @@
+import ch.microfast.hivemq.smoker.authn.HandshakeAdmission;
+import ch.microfast.hivemq.smoker.authn.NoncePool;
+import ch.microfast.hivemq.smoker.authn.NonceRegistry;
+import ch.microfast.hivemq.smoker.authn.SmokerEnhancedAuthenticator;
+import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
+import ch.microfast.hivemq.smoker.crypto.EddsaCryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.ICryptoProvider;
+import ch.microfast.hivemq.smoker.crypto.PublicKeyCache;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.EnhancedAuthConnectInput;
+import com.hivemq.extension.sdk.api.auth.parameter.EnhancedAuthInput;
+import com.hivemq.extension.sdk.api.auth.parameter.EnhancedAuthOutput;
+import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionInformation;
+import com.hivemq.extension.sdk.api.packets.auth.AuthPacket;
+import com.hivemq.extension.sdk.api.packets.connect.ConnectPacket;
+import com.hivemq.extension.sdk.api.packets.general.DisconnectedReasonCode;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.apache.commons.codec.binary.Base32;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestSmokerEnhancedAuthenticator extends TestBase {
+
+    @Mock
+    private EnhancedAuthConnectInput connectInput;
+
+    @Mock
+    private EnhancedAuthInput authInput;
+
+    @Mock
+    private ConnectPacket connectPacket;
+
+    @Mock
+    private AuthPacket authPacket;
+
+    @Mock
+    private ClientInformation clientInformation;
+
+    @Mock
+    private ConnectionInformation connectionInformation;
+
+    @Mock
+    private EnhancedAuthOutput connectOutput;
+
+    @Mock
+    private EnhancedAuthOutput authOutput;
+
+    @Mock
+    private EnhancedAuthOutput reAuthOutput;
+
+    @Mock
+    private EnhancedAuthOutput reAuthResponseOutput;
+
+    private ICryptoProvider cryptoProvider;
+
+    private KeyPair keyPair;
+
+    private NoncePool noncePool;
+
+    private ScheduledExecutorService executorService;
+
+    private SmokerEnhancedAuthenticator authenticator;
+
+    @Before
+    public void SetUp() throws NoSuchAlgorithmException {
+        cryptoProvider = new EddsaCryptoProvider();
+        keyPair = cryptoProvider.generateKeyPair();
+        noncePool = new NoncePool(64, new MetricRegistry());
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        authenticator = createAuthenticator(new HandshakeAdmission(10, 1000, 0, 0, 0, 0, 1000, new MetricRegistry()));
+
+        String clientId = new Base32().encodeAsString(((EdDSAPublicKey) keyPair.getPublic()).getAbyte());
+        when(connectionInformation.getConnectionAttributeStore()).thenReturn(new InMemoryConnectionAttributeStore());
+        when(clientInformation.getClientId()).thenReturn(clientId);
+        when(connectPacket.getClientId()).thenReturn(clientId);
+        when(connectPacket.getAuthenticationMethod()).thenReturn(Optional.of(AuthenticationConsts.SMOKER_AUTH_METHOD));
+        when(connectInput.getConnectPacket()).thenReturn(connectPacket);
+        when(connectInput.getClientInformation()).thenReturn(clientInformation);
+        when(connectInput.getConnectionInformation()).thenReturn(connectionInformation);
+        when(authPacket.getAuthenticationMethod()).thenReturn(AuthenticationConsts.SMOKER_AUTH_METHOD);
+        when(authInput.getAuthPacket()).thenReturn(authPacket);
+        when(authInput.getClientInformation()).thenReturn(clientInformation);
+        when(authInput.getConnectionInformation()).thenReturn(connectionInformation);
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+        noncePool.close();
+    }
+
+    @Test
+    public void testReAuthRoundTrip() throws InvalidKeyException, SignatureException {
+        // Arrange
+        byte[] nonce = connect();
+
+        // Act
+        when(authInput.isReAuthentication()).thenReturn(true);
+        authenticator.onReAuth(authInput, reAuthOutput);
+        ArgumentCaptor<byte[]> reAuthNonce = ArgumentCaptor.forClass(byte[].class);
+        verify(reAuthOutput).continueAuthentication(reAuthNonce.capture());
+        when(authPacket.getAuthenticationDataAsArray()).thenReturn(Optional.of(cryptoProvider.sign(keyPair.getPrivate(), reAuthNonce.getValue())));
+        authenticator.onAuth(authInput, reAuthResponseOutput);
+
+        // Assert
+        assertFalse(Arrays.equals(nonce, reAuthNonce.getValue()));
+        verify(reAuthResponseOutput).authenticateSuccessfully();
+        verify(reAuthResponseOutput, never()).failAuthentication(any(DisconnectedReasonCode.class), anyString());
+    }
+
+    @Test
+    public void testReAuthRejectsSignatureOfPreviousChallenge() throws InvalidKeyException, SignatureException {
+        // Arrange
+        byte[] nonce = connect();
+
+        // Act
+        when(authInput.isReAuthentication()).thenReturn(true);
+        authenticator.onReAuth(authInput, reAuthOutput);
+        when(authPacket.getAuthenticationDataAsArray()).thenReturn(Optional.of(cryptoProvider.sign(keyPair.getPrivate(), nonce)));
+        authenticator.onAuth(authInput, reAuthResponseOutput);
+
+        // Assert
+        verify(reAuthResponseOutput).failAuthentication(any(DisconnectedReasonCode.class), anyString());
+        verify(reAuthResponseOutput, never()).authenticateSuccessfully();
+    }
+
+    @Test
+    public void testServerBusyDoesNotConsumeTheTokenOfTheClient() {
+        // Arrange - one handshake in flight and a single token per client which is not refilled in time
+        HandshakeAdmission handshakeAdmission = new HandshakeAdmission(1, 0, 0, 0, 0.001, 1, 1000, new MetricRegistry());
+        authenticator = createAuthenticator(handshakeAdmission);
+        InMemoryConnectionAttributeStore otherConnection = new InMemoryConnectionAttributeStore();
+        handshakeAdmission.tryEnter(otherConnection);
+
+        // Act
+        authenticator.onConnect(connectInput, connectOutput);
+        handshakeAdmission.leave(otherConnection);
+        authenticator.onConnect(connectInput, authOutput);
+
+        // Assert
+        verify(connectOutput).failAuthentication(DisconnectedReasonCode.SERVER_BUSY, "Too many handshakes in progress - retry later");
+        verify(authOutput).continueAuthentication(any(byte[].class));
+        verify(authOutput, never()).failAuthentication(any(DisconnectedReasonCode.class), anyString());
+    }
+
+    private SmokerEnhancedAuthenticator createAuthenticator(HandshakeAdmission handshakeAdmission) {
+        return new SmokerEnhancedAuthenticator(cryptoProvider, new PublicKeyCache(cryptoProvider, 1000, 1000, new MetricRegistry()),
+                new NonceRegistry(noncePool, 60000, 1000, new MetricRegistry()), handshakeAdmission, executorService, new MetricRegistry());
+    }
+
+    /**
+     * Runs the initial handshake
+     *
+     * @return the nonce signed by the client
+     */
+    private byte[] connect() throws InvalidKeyException, SignatureException {
+        authenticator.onConnect(connectInput, connectOutput);
+        ArgumentCaptor<byte[]> nonce = ArgumentCaptor.forClass(byte[].class);
+        verify(connectOutput).continueAuthentication(nonce.capture());
+
+        when(authPacket.getAuthenticationDataAsArray()).thenReturn(Optional.of(cryptoProvider.sign(keyPair.getPrivate(), nonce.getValue())));
+        authenticator.onAuth(authInput, authOutput);
+        verify(authOutput).authenticateSuccessfully();
+        return nonce.getValue();
+    }
+}
@@ -0,0 +1,27 @@
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestSmokerMetrics {
+
+    @Test
+    public void testRemoveAll() {
+        // Arrange
+        MetricRegistry metricRegistry = new MetricRegistry();
+        metricRegistry.timer(SmokerMetrics.name("authz", "check-access"));
+        metricRegistry.gauge(SmokerMetrics.name("store", "claims"), () -> (Gauge<Long>) () -> 1L);
+        metricRegistry.counter("com.hivemq.messages.incoming.total.count");
+        metricRegistry.counter(SmokerMetrics.METRIC_PREFIX + "-other.count");
+
+        // Act
+        SmokerMetrics.removeAll(metricRegistry);
+
+        // Assert
+        assertEquals(2, metricRegistry.getNames().size());
+        assertTrue(metricRegistry.getNames().stream().noneMatch(name -> name.startsWith(SmokerMetrics.METRIC_PREFIX + ".")));
+    }
+}
@@ -0,0 +1,137 @@
+import ch.microfast.hivemq.smoker.audit.AuditLog;
+import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
+import ch.microfast.hivemq.smoker.authz.SmokerPublishOutboundInterceptor;
+import ch.microfast.hivemq.smoker.authz.domain.Permission;
+import ch.microfast.hivemq.smoker.authz.domain.RestrictionType;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionCache;
+import ch.microfast.hivemq.smoker.authz.services.AuthzService;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.authz.validation.InvalidClaimException;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionInformation;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundOutput;
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestSmokerPublishOutboundInterceptor extends TestBase {
+
+    private static final String SUBSCRIBER = "SUBSCRIBER";
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    @Mock
+    private PublishOutboundInput publishOutboundInput;
+
+    @Mock
+    private PublishOutboundOutput publishOutboundOutput;
+
+    @Mock
+    private PublishPacket publishPacket;
+
+    @Mock
+    private ClientInformation clientInformation;
+
+    @Mock
+    private ConnectionInformation connectionInformation;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScheduledExecutorService executorService;
+
+    private AuthzService authzService;
+
+    private SmokerPublishOutboundInterceptor interceptor;
+
+    @Before
+    public void SetUp() throws IOException {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+
+        MemoryClaimStore claimStore = new MemoryClaimStore(claimValidator);
+        String indexFilePath = temporaryFolder.getRoot().toPath().resolve("authz.idx").toString();
+        authzService = new AuthzService(claimStore, new AuthzDecisionCache(1000, new MetricRegistry()), new AuthzWarmStartIndex(indexFilePath, 300, 100, claimStore, executorService),
+                new AuditLog(false, temporaryFolder.getRoot().toString(), 1 << 20, 1, 2, 1000, 1, 1, new MetricRegistry()), 1000, new MetricRegistry());
+        interceptor = new SmokerPublishOutboundInterceptor(authzService);
+
+        InMemoryConnectionAttributeStore connectionAttributeStore = new InMemoryConnectionAttributeStore();
+        connectionAttributeStore.putAsString(AuthenticationConsts.IS_SMOKER_AUTH_ATTRIBUTE_KEY, Boolean.TRUE.toString());
+        when(connectionInformation.getConnectionAttributeStore()).thenReturn(connectionAttributeStore);
+        when(clientInformation.getClientId()).thenReturn(SUBSCRIBER);
+        when(publishOutboundInput.getConnectionInformation()).thenReturn(connectionInformation);
+        when(publishOutboundInput.getClientInformation()).thenReturn(clientInformation);
+        when(publishOutboundInput.getPublishPacket()).thenReturn(publishPacket);
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testDeliversGrantedTopic() throws InvalidClaimException {
+        // Arrange
+        authzService.claim(TestClaims.createClaim("restricted/OWNER/room1/temp", RestrictionType.WHITELIST, subscribePermission()));
+        when(publishPacket.getTopic()).thenReturn("restricted/OWNER/room1/temp");
+
+        // Act
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        // Assert
+        verify(publishOutboundOutput, never()).preventPublishDelivery();
+    }
+
+    @Test
+    public void testDeliversUnrestrictedTopic() {
+        // Arrange
+        when(publishPacket.getTopic()).thenReturn("public/topic");
+
+        // Act
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        // Assert
+        verify(publishOutboundOutput, never()).preventPublishDelivery();
+    }
+
+    @Test
+    public void testPreventsDeliveryOfTopicClaimedAfterWildcardSubscription() throws InvalidClaimException {
+        // Arrange
+        authzService.claim(TestClaims.createClaim("restricted/OWNER/room1/temp", RestrictionType.WHITELIST, subscribePermission()));
+        assertTrue(authzService.checkAccess(SUBSCRIBER, "restricted/OWNER/#", TopicPermission.MqttActivity.SUBSCRIBE, true));
+        // claimed after the wildcard subscription was granted, the subscriber is excluded
+        authzService.claim(TestClaims.createClaim("restricted/OWNER/room2/secret", RestrictionType.WHITELIST));
+        when(publishPacket.getTopic()).thenReturn("restricted/OWNER/room2/secret");
+
+        // Act
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        // Assert
+        verify(publishOutboundOutput).preventPublishDelivery();
+    }
+
+    private static Permission subscribePermission() {
+        Permission permission = new Permission();
+        permission.setClientId(SUBSCRIBER);
+        permission.setActivity(TopicPermission.MqttActivity.SUBSCRIBE);
+        return permission;
+    }
+}
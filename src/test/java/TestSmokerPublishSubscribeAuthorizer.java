@@ -0,0 +1,293 @@
+import ch.microfast.hivemq.smoker.audit.AuditLog;
+import ch.microfast.hivemq.smoker.audit.AuditLogReader;
+import ch.microfast.hivemq.smoker.authn.common.AuthenticationConsts;
+import ch.microfast.hivemq.smoker.authz.SmokerPublishSubscribeAuthorizer;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import ch.microfast.hivemq.smoker.authz.services.AuthzDecisionCache;
+import ch.microfast.hivemq.smoker.authz.services.AuthzService;
+import ch.microfast.hivemq.smoker.authz.services.AuthzWarmStartIndex;
+import ch.microfast.hivemq.smoker.authz.services.IAuthzService;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import ch.microfast.hivemq.smoker.metrics.SmokerMetrics;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
+import com.hivemq.extension.sdk.api.auth.parameter.PublishAuthorizerInput;
+import com.hivemq.extension.sdk.api.auth.parameter.PublishAuthorizerOutput;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionInformation;
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestSmokerPublishSubscribeAuthorizer extends TestBase {
+
+    private static final String CLIENT_ID = "CLIENT";
+
+    private static final String TOPIC = "restricted/OWNER/topic";
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    private static final long VERIFY_TIMEOUT_MILLIS = 5000;
+
+    @Mock
+    private IAuthzService authzService;
+
+    @Mock
+    private PublishAuthorizerInput publishAuthorizerInput;
+
+    @Mock
+    private PublishAuthorizerOutput publishAuthorizerOutput;
+
+    @Mock
+    private Async<PublishAuthorizerOutput> async;
+
+    @Mock
+    private PublishPacket publishPacket;
+
+    @Mock
+    private ClientInformation clientInformation;
+
+    @Mock
+    private ConnectionInformation connectionInformation;
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScheduledExecutorService executorService;
+
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void SetUp() {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        metricRegistry = new MetricRegistry();
+
+        InMemoryConnectionAttributeStore connectionAttributeStore = new InMemoryConnectionAttributeStore();
+        connectionAttributeStore.putAsString(AuthenticationConsts.IS_SMOKER_AUTH_ATTRIBUTE_KEY, Boolean.TRUE.toString());
+        when(connectionInformation.getConnectionAttributeStore()).thenReturn(connectionAttributeStore);
+        when(clientInformation.getClientId()).thenReturn(CLIENT_ID);
+        when(publishPacket.getTopic()).thenReturn(TOPIC);
+        when(publishAuthorizerInput.getConnectionInformation()).thenReturn(connectionInformation);
+        when(publishAuthorizerInput.getClientInformation()).thenReturn(clientInformation);
+        when(publishAuthorizerInput.getPublishPacket()).thenReturn(publishPacket);
+        when(publishAuthorizerOutput.async(any(Duration.class), any(TimeoutFallback.class))).thenReturn(async);
+        when(async.getStatus()).thenReturn(Async.Status.RUNNING);
+        when(authzService.findCachedAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenReturn(Optional.empty());
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testCachedDecisionIsAppliedRightAway() {
+        // Arrange
+        when(authzService.findCachedAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenReturn(Optional.of(true));
+
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput).authorizeSuccessfully();
+        verify(publishAuthorizerOutput, never()).async(any(Duration.class), any(TimeoutFallback.class));
+        verify(authzService, never()).checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true);
+    }
+
+    @Test
+    public void testSyncModeEvaluatesOnTheCallingThread() {
+        // Arrange
+        when(authzService.checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenReturn(false);
+
+        // Act
+        createAuthorizer(false, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput).nextExtensionOrDefault();
+        verify(publishAuthorizerOutput, never()).async(any(Duration.class), any(TimeoutFallback.class));
+    }
+
+    @Test
+    public void testAsyncModeEvaluatesOnTheExecutor() {
+        // Arrange
+        when(authzService.checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenReturn(true);
+
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput, timeout(VERIFY_TIMEOUT_MILLIS)).authorizeSuccessfully();
+        verify(async, timeout(VERIFY_TIMEOUT_MILLIS)).resume();
+    }
+
+    @Test
+    public void testTimeoutFailsIfFailClosed() {
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput).async(Duration.ofMillis(TIMEOUT_MILLIS), TimeoutFallback.FAILURE);
+    }
+
+    @Test
+    public void testTimeoutFallsBackToDefaultPermissionsIfFailOpen() {
+        // Act
+        createAuthorizer(true, false).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput).async(Duration.ofMillis(TIMEOUT_MILLIS), TimeoutFallback.SUCCESS);
+    }
+
+    @Test
+    public void testDecisionIsNotAppliedAfterTimeout() {
+        // Arrange
+        when(async.getStatus()).thenReturn(Async.Status.CANCELED);
+        when(authzService.checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenReturn(true);
+
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(async, timeout(VERIFY_TIMEOUT_MILLIS)).resume();
+        verify(publishAuthorizerOutput, never()).authorizeSuccessfully();
+        verify(publishAuthorizerOutput, never()).nextExtensionOrDefault();
+    }
+
+    @Test
+    public void testEvaluatedLatencyIsRecordedIfDecisionFails() {
+        // Arrange
+        when(authzService.checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenReturn(true);
+        doThrow(new IllegalStateException("already decided")).when(publishAuthorizerOutput).authorizeSuccessfully();
+
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(async, timeout(VERIFY_TIMEOUT_MILLIS)).resume();
+        assertEquals(1, metricRegistry.timer(SmokerMetrics.name("authz", "authorizer", "evaluated")).getCount());
+    }
+
+    @Test
+    public void testEvaluationFailureFailsIfFailClosed() {
+        // Arrange
+        when(authzService.checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenThrow(new IllegalStateException("store failure"));
+
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput, timeout(VERIFY_TIMEOUT_MILLIS)).failAuthorization();
+        verify(async, timeout(VERIFY_TIMEOUT_MILLIS)).resume();
+        verify(publishAuthorizerOutput, never()).nextExtensionOrDefault();
+    }
+
+    @Test
+    public void testEvaluationFailureFallsBackToDefaultPermissionsIfFailOpen() {
+        // Arrange
+        when(authzService.checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true)).thenThrow(new IllegalStateException("store failure"));
+
+        // Act
+        createAuthorizer(true, false).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput, timeout(VERIFY_TIMEOUT_MILLIS)).nextExtensionOrDefault();
+        verify(async, timeout(VERIFY_TIMEOUT_MILLIS)).resume();
+        verify(publishAuthorizerOutput, never()).failAuthorization();
+    }
+
+    @Test
+    public void testRejectedEvaluationFailsIfFailClosed() {
+        // Arrange
+        executorService.shutdown();
+
+        // Act
+        createAuthorizer(true, true).authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+
+        // Assert
+        verify(publishAuthorizerOutput).failAuthorization();
+        verify(async).resume();
+        verify(authzService, never()).checkAccess(CLIENT_ID, TOPIC, TopicPermission.MqttActivity.PUBLISH, true);
+    }
+
+    @Test
+    public void testCachedDecisionIsAudited() throws IOException {
+        // Arrange
+        Path auditDirectory = temporaryFolder.newFolder("audit").toPath();
+        AuditLog auditLog = new AuditLog(true, auditDirectory.toString(), 1 << 20, 4, 1024, 1000, 1, 1, new MetricRegistry());
+        MemoryClaimStore claimStore = new MemoryClaimStore(claimValidator);
+        String indexFilePath = temporaryFolder.getRoot().toPath().resolve("authz.idx").toString();
+        AuthzService service = new AuthzService(claimStore, new AuthzDecisionCache(1000, new MetricRegistry()),
+                new AuthzWarmStartIndex(indexFilePath, 300, 100, claimStore, executorService), auditLog, 1000, new MetricRegistry());
+        SmokerPublishSubscribeAuthorizer authorizer = new SmokerPublishSubscribeAuthorizer(service, executorService, false, TIMEOUT_MILLIS, true, new MetricRegistry());
+
+        // Act
+        authorizer.authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+        // served by the decision cache, audited with the reason it was evaluated by
+        authorizer.authorizePublish(publishAuthorizerInput, publishAuthorizerOutput);
+        auditLog.close();
+        List<JsonNode> records = readAuditRecords(auditDirectory);
+
+        // Assert
+        assertEquals(2, records.size());
+        assertEquals("unclaimed", records.get(0).get("reason").asText());
+        assertEquals("decision", records.get(1).get("type").asText());
+        assertEquals(CLIENT_ID, records.get(1).get("clientId").asText());
+        assertEquals(TOPIC, records.get(1).get("topic").asText());
+        assertFalse(records.get(1).get("allowed").asBoolean());
+        assertEquals("unclaimed", records.get(1).get("reason").asText());
+    }
+
+    private static List<JsonNode> readAuditRecords(Path directory) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().collect(Collectors.toList())) {
+                AuditLogReader.toNdjson(file, writer);
+            }
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<JsonNode> records = new ArrayList<>();
+        for (String line : writer.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                records.add(objectMapper.readTree(line));
+            }
+        }
+        return records;
+    }
+
+    private SmokerPublishSubscribeAuthorizer createAuthorizer(boolean isAsync, boolean isFailClosed) {
+        return new SmokerPublishSubscribeAuthorizer(authzService, executorService, isAsync, TIMEOUT_MILLIS, isFailClosed, metricRegistry);
+    }
+}
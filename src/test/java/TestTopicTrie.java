@@ -0,0 +1,65 @@
+import ch.microfast.hivemq.smoker.authz.common.TopicTrie;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestTopicTrie {
+
+    private TopicTrie topicTrie;
+
+    @Before
+    public void SetUp() {
+        topicTrie = new TopicTrie();
+        topicTrie.add("restricted/OWNER/room1/temp");
+        topicTrie.add("restricted/OWNER/room2/temp");
+        topicTrie.add("restricted/OWNER/room2/humidity");
+        topicTrie.add("restricted/OWNER");
+        topicTrie.add("restricted/OTHER/room1/temp");
+    }
+
+    @Test
+    public void testMatchExactTopic() {
+        // Arrange & Act
+        Collection<String> matches = topicTrie.match("restricted/OWNER/room1/temp");
+
+        // Assert
+        assertEquals(List.of("restricted/OWNER/room1/temp"), matches);
+    }
+
+    @Test
+    public void testMatchSingleLevelWildcard() {
+        // Arrange & Act
+        Collection<String> matches = topicTrie.match("restricted/OWNER/+/temp");
+
+        // Assert
+        assertEquals(Set.of("restricted/OWNER/room1/temp", "restricted/OWNER/room2/temp"), Set.copyOf(matches));
+    }
+
+    @Test
+    public void testMatchMultiLevelWildcard() {
+        // Arrange & Act
+        Collection<String> matches = topicTrie.match("restricted/OWNER/#");
+
+        // Assert
+        // '#' also matches the parent level
+        assertEquals(Set.of("restricted/OWNER", "restricted/OWNER/room1/temp", "restricted/OWNER/room2/temp", "restricted/OWNER/room2/humidity"), Set.copyOf(matches));
+    }
+
+    @Test
+    public void testRemovePrunesTopic() {
+        // Arrange & Act
+        topicTrie.remove("restricted/OWNER/room2/humidity");
+        topicTrie.remove("restricted/OWNER/not/existing");
+
+        // Assert
+        assertEquals(4, topicTrie.size());
+        assertFalse(topicTrie.contains("restricted/OWNER/room2/humidity"));
+        assertTrue(topicTrie.contains("restricted/OWNER/room2/temp"));
+        assertTrue(topicTrie.match("restricted/OWNER/room2/humidity").isEmpty());
+    }
+}
@@ -0,0 +1,170 @@
+import ch.microfast.hivemq.smoker.authz.persistance.WalClaimStore;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestWalClaimStore extends TestBase {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    private ScheduledExecutorService executorService;
+
+    @Before
+    public void SetUp() {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void TearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testRecoverFromLog() throws Exception {
+        // Arrange
+        WalClaimStore walClaimStore = createStore(WalClaimStore.FsyncPolicy.ALWAYS);
+        for (int i = 0; i < 100; i++) {
+            walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/" + i, "READER", TopicPermission.MqttActivity.ALL));
+        }
+        walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/0", "OTHER_READER", TopicPermission.MqttActivity.ALL));
+        walClaimStore.delete("OWNER", "restricted/OWNER/topic/1");
+        walClaimStore.delete("NOT_THE_OWNER", "restricted/OWNER/topic/2");
+        walClaimStore.close();
+
+        // Act
+        WalClaimStore recoveredStore = createStore(WalClaimStore.FsyncPolicy.ALWAYS);
+
+        // Assert
+        assertEquals(99, recoveredStore.getAll().size());
+        assertEquals("OTHER_READER", recoveredStore.findByTopic("restricted/OWNER/topic/0").get().getRestriction().getPermissions().iterator().next().getClientId());
+        assertFalse(recoveredStore.findByTopic("restricted/OWNER/topic/1").isPresent());
+        assertTrue(recoveredStore.findByTopic("restricted/OWNER/topic/2").isPresent());
+        assertEquals(99, recoveredStore.findByClient("READER").size() + recoveredStore.findByClient("OTHER_READER").size());
+        assertEquals(99, recoveredStore.findByTopicFilter("restricted/OWNER/topic/+").size());
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndLog() throws Exception {
+        // Arrange
+        WalClaimStore walClaimStore = createStore(WalClaimStore.FsyncPolicy.INTERVAL);
+        for (int i = 0; i < 50; i++) {
+            walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/" + i, "READER", TopicPermission.MqttActivity.ALL));
+        }
+        walClaimStore.compact();
+        for (int i = 50; i < 100; i++) {
+            walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/" + i, "READER", TopicPermission.MqttActivity.ALL));
+        }
+        walClaimStore.delete("OWNER", "restricted/OWNER/topic/0");
+        walClaimStore.close();
+
+        // Act
+        WalClaimStore recoveredStore = createStore(WalClaimStore.FsyncPolicy.INTERVAL);
+
+        // Assert
+        assertEquals(99, recoveredStore.getAll().size());
+        assertFalse(recoveredStore.findByTopic("restricted/OWNER/topic/0").isPresent());
+        assertTrue(recoveredStore.findByTopic("restricted/OWNER/topic/99").isPresent());
+    }
+
+    @Test
+    public void testCompactWithoutNewRecords() throws Exception {
+        // Arrange
+        WalClaimStore walClaimStore = createStore(WalClaimStore.FsyncPolicy.ALWAYS);
+        walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/0", "READER", TopicPermission.MqttActivity.ALL));
+        walClaimStore.close();
+        walClaimStore = createStore(WalClaimStore.FsyncPolicy.ALWAYS);
+
+        // Act
+        // right after the recovery and twice in a row, the current segment holds no record
+        walClaimStore.compact();
+        walClaimStore.compact();
+        walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/1", "READER", TopicPermission.MqttActivity.ALL));
+        walClaimStore.close();
+
+        // Assert
+        assertEquals(2, createStore(WalClaimStore.FsyncPolicy.ALWAYS).getAll().size());
+    }
+
+    @Test
+    public void testConcurrentGroupCommit() throws Exception {
+        // Arrange
+        WalClaimStore walClaimStore = createStore(WalClaimStore.FsyncPolicy.GROUP);
+        int threadCount = 8;
+        int claimsPerThread = 100;
+        ExecutorService writers = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            futures.add(writers.submit(() -> {
+                for (int i = 0; i < claimsPerThread; i++) {
+                    walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/" + thread + "/" + i, "*", TopicPermission.MqttActivity.ALL));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        writers.shutdown();
+        walClaimStore.close();
+
+        // Assert
+        assertEquals(threadCount * claimsPerThread, createStore(WalClaimStore.FsyncPolicy.GROUP).getAll().size());
+    }
+
+    @Test
+    public void testCloseAwaitsCompaction() throws Exception {
+        // Arrange
+        // compacts every few records
+        WalClaimStore walClaimStore = createStore(WalClaimStore.FsyncPolicy.INTERVAL, 1024);
+        for (int i = 0; i < 200; i++) {
+            walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/" + i, "READER", TopicPermission.MqttActivity.ALL));
+        }
+
+        // Act
+        walClaimStore.close();
+
+        // Assert
+        try (Stream<Path> files = Files.list(temporaryFolder.getRoot().toPath())) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().endsWith(".tmp")));
+        }
+        assertEquals(200, createStore(WalClaimStore.FsyncPolicy.INTERVAL).getAll().size());
+        exceptionRule.expect(IllegalStateException.class);
+        walClaimStore.upsert(TestClaims.createClaim("restricted/OWNER/topic/closed", "READER", TopicPermission.MqttActivity.ALL));
+    }
+
+    private WalClaimStore createStore(WalClaimStore.FsyncPolicy fsyncPolicy) throws IOException {
+        return createStore(fsyncPolicy, 1024 * 1024);
+    }
+
+    private WalClaimStore createStore(WalClaimStore.FsyncPolicy fsyncPolicy, long compactionThreshold) throws IOException {
+        // small segments to roll the log several times
+        return new WalClaimStore(claimValidator, temporaryFolder.getRoot().getAbsolutePath(), 4096, compactionThreshold, fsyncPolicy, 10, executorService);
+    }
+}
@@ -0,0 +1,141 @@
+import ch.microfast.hivemq.smoker.authz.domain.Claim;
+import ch.microfast.hivemq.smoker.authz.persistance.MemoryClaimStore;
+import ch.microfast.hivemq.smoker.authz.persistance.WriteBehindClaimStore;
+import ch.microfast.hivemq.smoker.authz.validation.IClaimValidator;
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestWriteBehindClaimStore extends TestBase {
+
+    @Mock
+    private IClaimValidator claimValidator;
+
+    @Test
+    public void testWritesAreVisibleBeforeFlush() throws Exception {
+        // Arrange
+        MemoryClaimStore durableStore = new MemoryClaimStore(claimValidator);
+        durableStore.upsert(TestClaims.createClaim("restricted/OWNER/deleted", "READER", TopicPermission.MqttActivity.ALL));
+        WriteBehindClaimStore claimStore = createStore(durableStore, WriteBehindClaimStore.Durability.QUEUED);
+
+        // Act
+        claimStore.upsert(TestClaims.createClaim("restricted/OWNER/added", "READER", TopicPermission.MqttActivity.ALL));
+        claimStore.delete("OWNER", "restricted/OWNER/deleted");
+        claimStore.delete("NOT_THE_OWNER", "restricted/OWNER/added");
+
+        // Assert
+        assertTrue(claimStore.findByTopic("restricted/OWNER/added").isPresent());
+        assertFalse(claimStore.findByTopic("restricted/OWNER/deleted").isPresent());
+        assertEquals(1, claimStore.findByTopicFilter("restricted/OWNER/#").size());
+        assertEquals(1, claimStore.findByClient("READER").size());
+        assertEquals(1, claimStore.getAll().size());
+
+        claimStore.flush();
+        assertTrue(durableStore.findByTopic("restricted/OWNER/added").isPresent());
+        assertFalse(durableStore.findByTopic("restricted/OWNER/deleted").isPresent());
+        claimStore.close();
+    }
+
+    @Test
+    public void testConcurrentWritesAreFlushed() throws Exception {
+        // Arrange
+        MemoryClaimStore durableStore = new MemoryClaimStore(claimValidator);
+        WriteBehindClaimStore claimStore = createStore(durableStore, WriteBehindClaimStore.Durability.FLUSHED);
+        int threadCount = 8;
+        int claimsPerThread = 100;
+        ExecutorService writers = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            futures.add(writers.submit(() -> {
+                for (int i = 0; i < claimsPerThread; i++) {
+                    claimStore.upsert(TestClaims.createClaim("restricted/OWNER/" + thread + "/" + i, "*", TopicPermission.MqttActivity.ALL));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        writers.shutdown();
+
+        // Assert
+        // durable as soon as the writes returned
+        assertEquals(threadCount * claimsPerThread, durableStore.getAll().size());
+        claimStore.close();
+    }
+
+    @Test
+    public void testFailedWritesAreRetried() throws Exception {
+        // Arrange
+        FailingClaimStore durableStore = new FailingClaimStore(claimValidator, "restricted/OWNER/failing", 3);
+        WriteBehindClaimStore claimStore = createStore(durableStore, WriteBehindClaimStore.Durability.QUEUED);
+
+        // Act
+        claimStore.upsert(TestClaims.createClaim("restricted/OWNER/failing", "READER", TopicPermission.MqttActivity.ALL));
+        claimStore.upsert(TestClaims.createClaim("restricted/OWNER/other", "READER", TopicPermission.MqttActivity.ALL));
+
+        // Assert
+        // visible while the durable store fails
+        assertTrue(claimStore.findByTopic("restricted/OWNER/failing").isPresent());
+        claimStore.flush();
+        assertEquals(0, durableStore.remainingFailures);
+        assertTrue(durableStore.findByTopic("restricted/OWNER/failing").isPresent());
+        assertTrue(durableStore.findByTopic("restricted/OWNER/other").isPresent());
+        claimStore.close();
+    }
+
+    @Test
+    public void testFlushedWriteReturnsOnceDurable() throws Exception {
+        // Arrange
+        FailingClaimStore durableStore = new FailingClaimStore(claimValidator, "restricted/OWNER/failing", 3);
+        WriteBehindClaimStore claimStore = createStore(durableStore, WriteBehindClaimStore.Durability.FLUSHED);
+
+        // Act
+        claimStore.upsert(TestClaims.createClaim("restricted/OWNER/failing", "READER", TopicPermission.MqttActivity.ALL));
+
+        // Assert
+        assertTrue(durableStore.findByTopic("restricted/OWNER/failing").isPresent());
+        claimStore.close();
+    }
+
+    private WriteBehindClaimStore createStore(MemoryClaimStore durableStore, WriteBehindClaimStore.Durability durability) {
+        return new WriteBehindClaimStore(durableStore, claimValidator, durability, 64, 16, new MetricRegistry());
+    }
+
+    /**
+     * Fails the first upserts of a topic
+     */
+    private static class FailingClaimStore extends MemoryClaimStore {
+        private final String failingTopic;
+        private volatile int remainingFailures;
+
+        private FailingClaimStore(IClaimValidator claimValidator, String failingTopic, int failures) {
+            super(claimValidator);
+            this.failingTopic = failingTopic;
+            this.remainingFailures = failures;
+        }
+
+        @Override
+        public void upsertValidated(Claim claim) {
+            if (claim.getRestriction().getTopicName().equals(failingTopic) && remainingFailures > 0) {
+                remainingFailures--;
+                throw new IllegalStateException("Durable store failure");
+            }
+            super.upsertValidated(claim);
+        }
+    }
+}